@@ -0,0 +1,82 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+Reads outputs back out of an archive written by ArchiveWriter. Entries are looked up by name in the archive's central directory,
+so extracting one game only reads the directory and that game's entry, however large the archive is.
+*/
+public class ArchiveReader implements Closeable
+{
+	private ZipFile zip;
+
+	public ArchiveReader(String path) throws IOException
+	{
+		this.zip = new ZipFile(path);
+	}
+
+	/**
+	Checks if the archive holds the output with a given extension (eg: "zrf") for the game called name.
+	*/
+	public boolean contains(String name, String extension)
+	{
+		return zip.getEntry(ArchiveWriter.entryName(name, extension)) != null;
+	}
+
+	/**
+	Copies the output with a given extension for the game called name to out.
+	*/
+	public void extract(String name, String extension, OutputStream out) throws IOException
+	{
+		ZipEntry entry = zip.getEntry(ArchiveWriter.entryName(name, extension));
+		if (entry == null)
+			throw new FileNotFoundException("No " + extension + " output for " + name + " in " + zip.getName());
+
+		InputStream in = zip.getInputStream(entry);
+		try
+		{
+			byte[] chunk = new byte[8192];
+			for (int read = in.read(chunk); read >= 0; read = in.read(chunk))
+				out.write(chunk, 0, read);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	Returns the output with a given extension for the game called name.
+	*/
+	public byte[] read(String name, String extension) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		extract(name, extension, out);
+		return out.toByteArray();
+	}
+
+	/**
+	Returns the names of all games with an output of a given extension in the archive.
+	*/
+	public ArrayList<String> getNames(String extension)
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		String prefix = ModelWriter.directoryOf(extension) + "/";
+		String suffix = "." + extension;
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while (entries.hasMoreElements())
+		{
+			String entryName = entries.nextElement().getName();
+			if (entryName.startsWith(prefix) && entryName.endsWith(suffix))
+				names.add(entryName.substring(prefix.length(), entryName.length() - suffix.length()));
+		}
+		return names;
+	}
+
+	public void close() throws IOException
+	{
+		zip.close();
+	}
+}
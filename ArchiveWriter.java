@@ -0,0 +1,98 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+Bundles the outputs of a batch into a single zip archive instead of one small file per output. Entries are streamed into the
+archive one after another as they are added, and the zip's central directory (its index of entries) is written when the archive
+is closed, so ArchiveReader can later find any one entry without reading the rest of the archive.
+Outputs are stored at the same paths Driver writes them to otherwise (eg: zrf/checkers.zrf, json/checkers.json,
+models/checkers.model; see ModelWriter.directoryOf()).
+*/
+public class ArchiveWriter implements Closeable
+{
+	private ZipOutputStream zip;
+	private HashSet<String> entryNames; // zip entries must have unique names
+	private Path target; // the file the archive is moved to when closed, or null if writing to a caller's stream
+	private Path temp;
+
+	/**
+	Writes an archive to a stream supplied by the caller; closing the archive closes the stream.
+	*/
+	public ArchiveWriter(OutputStream out)
+	{
+		this.zip = new ZipOutputStream(new BufferedOutputStream(out));
+		this.entryNames = new HashSet<String>();
+	}
+
+	/**
+	Writes an archive to a file at path. The archive is written to a temporary file first, which replaces path when the archive is
+	closed, so path never holds a partial archive.
+	*/
+	public ArchiveWriter(String path) throws IOException
+	{
+		this.target = Paths.get(path).toAbsolutePath();
+		Files.createDirectories(target.getParent());
+		this.temp = TextBuffer.createTempFileNextTo(target);
+		this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+		this.entryNames = new HashSet<String>();
+	}
+
+	/**
+	Adds an entry to the archive holding the contents of a buffer.
+	*/
+	public synchronized void add(String entryName, TextBuffer content) throws IOException
+	{
+		if (!entryNames.add(entryName))
+			throw new IOException("Duplicate archive entry: " + entryName);
+		zip.putNextEntry(new ZipEntry(entryName));
+		content.writeTo(zip);
+		zip.closeEntry();
+	}
+
+	/**
+	Adds the output of a writer to the archive, as <directory>/<name>.<extension> (see entryName()).
+	*/
+	public void add(ModelWriter writer) throws IOException
+	{
+		add(entryName(writer.getModel().getName(), writer.getExtension()), writer.render());
+	}
+
+	/**
+	Returns the name of the entry holding the output with a given extension for the game called name, which is its path outside of
+	archives (see ModelWriter.directoryOf()).
+	*/
+	public static String entryName(String name, String extension)
+	{
+		return ModelWriter.directoryOf(extension) + "/" + name + "." + extension;
+	}
+
+	/**
+	Writes the central directory and, if writing to a file, moves the finished archive into place.
+	*/
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			zip.close();
+			if (target != null)
+			{
+				try
+				{
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				}
+				catch (AtomicMoveNotSupportedException e)
+				{
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		}
+		finally
+		{
+			if (temp != null)
+				Files.deleteIfExists(temp); // only still exists if writing or moving failed
+		}
+	}
+}
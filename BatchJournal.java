@@ -0,0 +1,213 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+An append-only record of the rulesets a batch has finished converting, so that a batch that is restarted after a crash (or simply
+run again) can skip every ruleset whose text hasn't changed since it was converted, and only convert the rest.
+
+Each finished ruleset is one line: its file name, the hash of its text, the options of the batch that converted it (which outputs
+it asked for), and the path and hash of each of its outputs, all separated by tabs, preceded by a CRC-32 of the rest of the line.
+A crash can leave the last line half-written; its CRC won't match, so it is ignored when the journal is loaded, and the ruleset is
+simply converted again. A ruleset is only skipped if the batch asks for the same outputs as the one that converted it, and each
+of its outputs still holds what was recorded, so a batch run again with more outputs (eg: with --json) converts every ruleset
+again, and an output that was edited or damaged since is regenerated. Rulesets whose conversion ran out of time aren't recorded,
+as their outputs are partial, so they are converted again (eg: with a longer --timeout) by the next run.
+
+Syncing the journal to disk after every ruleset would cost a disk flush per ruleset, so records are buffered and synced in batches:
+whenever batchSize records are waiting, and otherwise at least every flushMillis milliseconds. A crash therefore loses at most
+the records of the last flushMillis milliseconds, besides the rulesets that were still being converted.
+*/
+public class BatchJournal implements Closeable
+{
+	//syncs journals that have records waiting; one daemon thread is enough for every journal
+	private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable ->
+	{
+		Thread thread = new Thread(runnable, "journal-flusher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private FileChannel channel;
+	private HashMap<String,Entry> entries; // the latest record of each ruleset, by file name
+	private String options; // the outputs this batch asks for (eg: "model,zrf,json"), recorded with every ruleset
+	private TextBuffer buffer; // records not yet written to the journal; guarded by this
+	private int waiting; // the number of records in buffer
+	private int batchSize;
+	private ScheduledFuture<?> flusher;
+	private List<String> skipped; // the rulesets isFinished() has found could be skipped
+
+	/**
+	Loads the journal at path, or starts an empty one if there is no such file, and opens it for appending. options describes the
+	outputs this batch asks for (without tabs or line breaks); rulesets recorded with other options are converted again.
+	*/
+	public BatchJournal(String path, String options, int batchSize, long flushMillis) throws IOException
+	{
+		this.entries = new HashMap<String,Entry>();
+		this.options = options;
+		this.skipped = new ArrayList<String>();
+		this.buffer = new TextBuffer();
+		Path file = Paths.get(path);
+		if (Files.exists(file))
+		{
+			byte[] contents = Files.readAllBytes(file);
+			for (String line: new String(contents, StandardCharsets.UTF_8).split("\n"))
+			{
+				Entry entry = parse(line);
+				if (entry != null)
+					entries.put(entry.fileName, entry);
+			}
+			//end a half-written last line, so the next record isn't appended to it
+			if (contents.length > 0 && contents[contents.length - 1] != '\n')
+				buffer.newLine();
+		}
+
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.batchSize = batchSize;
+		this.flusher = timer.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static Entry parse(String line)
+	{
+		String[] fields = line.split("\t");
+		//lines written before options were recorded have an odd number of fields; their rulesets are converted again
+		if (fields.length < 4 || fields.length % 2 == 1 || !fields[0].equals(checksum(line.substring(fields[0].length() + 1))))
+			return null;
+		Entry entry = new Entry(fields[1], fields[2], fields[3]);
+		for (int i = 4; i + 1 < fields.length; i += 2)
+			entry.outputs.put(fields[i], fields[i + 1]);
+		return entry;
+	}
+
+	private static String checksum(String text)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(text.getBytes(StandardCharsets.UTF_8));
+		return Long.toHexString(crc.getValue());
+	}
+
+	/**
+	Checks if the ruleset in fileName was converted with exactly this text (whose hash is contentHash) by a batch with the same
+	options, and all of its outputs are still there with the contents recorded. If so, the ruleset can be skipped, and getOutputs()
+	returns the outputs it had. Outputs are small next to what converting their ruleset costs, so reading them back to check their
+	hashes costs little.
+	*/
+	public synchronized boolean isFinished(String fileName, String contentHash)
+	{
+		Entry entry = entries.get(fileName);
+		if (entry == null || !entry.contentHash.equals(contentHash) || !entry.options.equals(options))
+			return false;
+		for (Map.Entry<String,String> output: entry.outputs.entrySet())
+		{
+			Path file = Paths.get(output.getKey());
+			try
+			{
+				if (!Files.exists(file) || !ContentHash.of(Files.readAllBytes(file)).equals(output.getValue()))
+					return false;
+			}
+			catch (IOException e)
+			{
+				return false;
+			}
+		}
+		skipped.add(fileName);
+		return true;
+	}
+
+	/**
+	Returns the paths and hashes of the outputs recorded for the ruleset in fileName.
+	*/
+	public synchronized Map<String,String> getOutputs(String fileName)
+	{
+		Entry entry = entries.get(fileName);
+		return entry == null ? Collections.<String,String>emptyMap() : entry.outputs;
+	}
+
+	/**
+	Records that the ruleset in fileName, with text whose hash is contentHash, has been converted into outputs (a map from the path
+	of each output to the hash of its contents). The record reaches the disk with the next batch.
+	*/
+	public synchronized void record(String fileName, String contentHash, Map<String,String> outputs) throws IOException
+	{
+		Entry entry = new Entry(fileName, contentHash, options);
+		entry.outputs.putAll(outputs);
+		entries.put(fileName, entry);
+
+		StringBuilder line = new StringBuilder();
+		line.append(fileName).append('\t').append(contentHash).append('\t').append(options);
+		for (Map.Entry<String,String> output: outputs.entrySet())
+			line.append('\t').append(output.getKey()).append('\t').append(output.getValue());
+		buffer.append(checksum(line.toString())).append('\t').append(line).newLine();
+
+		if (++waiting >= batchSize)
+			flush();
+	}
+
+	/**
+	Writes every waiting record to the journal and syncs it to disk.
+	*/
+	public synchronized void flush() throws IOException
+	{
+		if (waiting == 0)
+			return;
+		buffer.writeTo(channel);
+		channel.force(false);
+		buffer.clear();
+		waiting = 0;
+	}
+
+	private void flushQuietly()
+	{
+		try
+		{
+			flush();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace(); // the records stay waiting, and are written with the next batch
+		}
+	}
+
+	/**
+	Returns the rulesets isFinished() has found could be skipped.
+	*/
+	public synchronized List<String> getSkipped()
+	{
+		return new ArrayList<String>(skipped);
+	}
+
+	public synchronized void close() throws IOException
+	{
+		flusher.cancel(false);
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	private static class Entry
+	{
+		private String fileName;
+		private String contentHash;
+		private String options;
+		private TreeMap<String,String> outputs; // the hash of each output, by path
+
+		private Entry(String fileName, String contentHash, String options)
+		{
+			this.fileName = fileName;
+			this.contentHash = contentHash;
+			this.options = options;
+			this.outputs = new TreeMap<String,String>();
+		}
+	}
+}
@@ -0,0 +1,478 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+Converts a batch of rulesets as a pipeline of four stages, each with its own threads:
+read (loads the text of each ruleset; I/O bound), annotate (runs CoreNLP; CPU and memory bound), extract (runs the board, piece
+and end parsers and compiles the GameModel; light) and write (renders and publishes the outputs; I/O bound).
+Each stage gets its own number of threads, so the annotators can be kept busy while files are read and written around them,
+instead of every document going through every step in turn.
+
+The stages are connected by bounded queues. When a stage falls behind, the queue in front of it fills up and the stage before it
+blocks until there is room, so no more than a few documents' worth of annotations (which are large) are ever held in memory,
+however many documents are in the batch.
+
+Documents with the same text that reach the annotators at the same time (eg: copies of a ruleset under different names) are
+annotated once: the others wait for that annotation and are extracted from its features (see SingleFlight and
+RulesParser.fromFeatures()), as the requests of a ConversionServer share a parse.
+
+A failure in one document (an unreadable file, a parser exception or Error, a deadline expiring) is recorded in the report and
+only that document is dropped; the rest of the batch carries on.
+*/
+public class BatchPipeline
+{
+	/**
+	Where the extracted GameModels go. Called from the write threads; implementations must be thread-safe if there is more than one.
+	*/
+	public interface Output
+	{
+		/**
+		Writes the outputs of a model, and returns the path and hash of each output written to a file of its own, for the journal.
+		*/
+		Map<String,String> write(String fileName, GameModel model) throws IOException;
+	}
+
+	private static final Document END = new Document(null); // passed down the queues once there are no more documents
+
+	private Stage[] stages;
+	private int queueCapacity;
+	private long timeoutMillis;
+	private BatchJournal journal; // the record of finished rulesets, or null to convert every ruleset
+	private boolean lowMemory;
+	private BlockingQueue<Document> input; // the readers' queue, which run() fills
+	private SentenceCache sentenceCache;
+	private NearDuplicateIndex nearDuplicates; // or null to convert every ruleset, however similar to others
+	private PrintStream debugOutput; // where the parsers print what they find, or null
+	private SingleFlight<RulesetFeatures> annotations; // the annotation running for each text, keyed by the hash of the text
+
+	private AtomicInteger completed;
+	private AtomicInteger skipped;
+	private AtomicInteger reused;
+	private AtomicInteger partial;
+	private AtomicInteger failed;
+	private List<String> problems; // one line per failed, partial or reused document; guarded by itself
+
+	/**
+	queueCapacity is the number of documents that may wait between two stages. timeoutMillis, if positive, limits the parsing of
+	each document, from the start of its annotation (time spent waiting in queues doesn't count).
+	*/
+	public BatchPipeline(int readers, int annotators, int extractors, int writers, int queueCapacity, long timeoutMillis)
+	{
+		this.stages = new Stage[] {
+			new Stage("read", readers, this::read),
+			new Stage("annotate", annotators, this::annotate),
+			new Stage("extract", extractors, this::extract),
+			new Stage("write", writers, null) };
+		this.queueCapacity = queueCapacity;
+		this.timeoutMillis = timeoutMillis;
+		this.annotations = new SingleFlight<RulesetFeatures>();
+	}
+
+	/**
+	Sets whether documents drop their annotations right after annotation (see RulesParser.setLowMemory()), so that the documents
+	waiting to be extracted take a fraction of the memory.
+	*/
+	public void setLowMemory(boolean lowMemory)
+	{
+		this.lowMemory = lowMemory;
+	}
+
+	/**
+	Sets a SentenceCache for every document to be annotated through (see RulesParser.setSentenceCache()).
+	*/
+	public void setSentenceCache(SentenceCache sentenceCache)
+	{
+		this.sentenceCache = sentenceCache;
+	}
+
+	/**
+	Sets an index of the rulesets converted so far, so that a ruleset that is a near-duplicate of one of them reuses its model
+	instead of being converted (see NearDuplicateIndex.Match.getModel()). Near-duplicates that have to be converted still only
+	have their new sentences annotated if there is a SentenceCache.
+	*/
+	public void setNearDuplicates(NearDuplicateIndex nearDuplicates)
+	{
+		this.nearDuplicates = nearDuplicates;
+	}
+
+	/**
+	Sets where the parsers print what they find in every document (see RulesParser.setDebugOutput()); null (the default) prints
+	nothing. The lines of documents extracted at the same time are interleaved.
+	*/
+	public void setDebugOutput(PrintStream debugOutput)
+	{
+		this.debugOutput = debugOutput;
+	}
+
+	/**
+	Sets a journal to skip the rulesets it records as finished and record the rest once they are written.
+	*/
+	public void setJournal(BatchJournal journal)
+	{
+		this.journal = journal;
+	}
+
+	/**
+	Converts every file, passing each GameModel to output, and returns once every document has been written or has failed.
+	*/
+	public void run(List<String> fileNames, Output output) throws InterruptedException
+	{
+		run(fileNames, Collections.<String>emptyList(), output);
+	}
+
+	/**
+	Converts every file, then every ruleset in the archives of a corpus (see CorpusReader) as they are read, passing each
+	GameModel to output, and returns once every document has been written or has failed. The archives are read in turn on the
+	calling thread, and no further than the documents the pipeline has room for, so only a few documents' text is ever held in
+	memory, however large the corpus. An archive that can't be read (or is truncated) is recorded as a failure, and the rulesets
+	read from it until then are still converted.
+	*/
+	public void run(List<String> fileNames, List<String> corpora, final Output output) throws InterruptedException
+	{
+		List<Thread> threads = start(output);
+		for (String fileName: fileNames)
+			input.put(new Document(fileName)); //blocks while the readers are behind
+		for (String corpus: corpora)
+		{
+			try (CorpusReader reader = new CorpusReader(corpus))
+			{
+				for (CorpusReader.Entry entry = reader.next(); entry != null; entry = reader.next())
+				{
+					Document document = new Document(entry.getName());
+					document.text = entry.getText();
+					document.gameName = entry.getGameName();
+					input.put(document);
+				}
+			}
+			catch (IOException e)
+			{
+				fail(new Document(corpus), stages[0], e);
+			}
+		}
+		input.put(END);
+		for (Thread thread: threads)
+			thread.join();
+	}
+
+	//starts the threads of every stage, leaving input for the caller to fill
+	private List<Thread> start(final Output output)
+	{
+		completed = new AtomicInteger();
+		skipped = new AtomicInteger();
+		reused = new AtomicInteger();
+		partial = new AtomicInteger();
+		failed = new AtomicInteger();
+		problems = new ArrayList<String>();
+		stages[3].step = document ->
+		{
+			Map<String,String> outputs = output.write(document.fileName, document.model);
+			//a partial model is left unrecorded, so that the ruleset is converted again (eg: with a longer timeout) next time
+			if (journal != null && !document.model.isPartial())
+				journal.record(document.fileName, document.contentHash, outputs);
+			completed.incrementAndGet();
+			return true;
+		};
+
+		input = new ArrayBlockingQueue<Document>(queueCapacity);
+		BlockingQueue<Document> queue = input;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < stages.length; i++)
+		{
+			BlockingQueue<Document> next = i + 1 < stages.length ? new ArrayBlockingQueue<Document>(queueCapacity) : null;
+			threads.addAll(stages[i].start(queue, next));
+			queue = next;
+		}
+		return threads;
+	}
+
+	private boolean read(Document document) throws IOException
+	{
+		if (document.text != null) //read from a corpus already
+		{
+			document.parser = RulesParser.fromText(document.fileName, document.text);
+			document.parser.setGameName(document.gameName);
+			document.text = null;
+		}
+		else
+			document.parser = new RulesParser(document.fileName);
+		document.parser.setLowMemory(lowMemory);
+		document.parser.setSentenceCache(sentenceCache);
+		document.parser.setDebugOutput(debugOutput);
+		document.parser.loadText();
+		if (journal != null)
+		{
+			document.contentHash = ContentHash.of(document.parser.getText());
+			if (journal.isFinished(document.fileName, document.contentHash))
+			{
+				skipped.incrementAndGet();
+				return false;
+			}
+		}
+		if (nearDuplicates != null)
+		{
+			document.match = nearDuplicates.add(document.fileName, document.parser.getText());
+			GameModel original = document.match.getModel();
+			if (original != null)
+			{
+				//annotate() and extract() pass the document straight on
+				document.model = original.withName(document.parser.getGameName());
+				document.parser = null;
+				reused.incrementAndGet();
+				problem(document, String.format("near-duplicate of %s (similarity %.2f), its model was reused",
+					document.match.getOriginal(), document.match.getSimilarity()));
+			}
+		}
+		return true;
+	}
+
+	private boolean annotate(Document document) throws Exception
+	{
+		if (document.model != null)
+			return true;
+		RulesParser parser = document.parser;
+		if (timeoutMillis > 0)
+			parser.setDeadline(Deadline.after(timeoutMillis));
+		if (document.contentHash == null)
+			document.contentHash = ContentHash.of(parser.getText());
+		RulesetFeatures features;
+		try
+		{
+			features = annotations.run(document.contentHash, () ->
+			{
+				parser.annotate();
+				return parser.getFeatures();
+			});
+		}
+		catch (ExecutionException e) //thrown by annotate(), in this document or the one annotating the same text
+		{
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw (Exception) e.getCause();
+		}
+
+		if (features != parser.getFeatures()) //annotated for another document with the same text
+		{
+			document.parser = RulesParser.fromFeatures(document.fileName, features);
+			document.parser.setGameName(parser.getGameName());
+			document.parser.setDebugOutput(debugOutput);
+			if (timeoutMillis > 0)
+				document.parser.setDeadline(Deadline.after(timeoutMillis));
+		}
+		return true;
+	}
+
+	private boolean extract(Document document)
+	{
+		if (document.model != null)
+			return true;
+		document.parser.extract();
+		document.model = document.parser.getGameModel();
+		document.parser = null; //the annotations aren't needed any more; don't hold them while the document waits to be written
+		if (nearDuplicates != null)
+			nearDuplicates.setModel(document.match, document.model);
+		if (document.model.isPartial())
+		{
+			partial.incrementAndGet();
+			problem(document, "ran out of time, outputs are partial");
+		}
+		return true;
+	}
+
+	private void fail(Document document, Stage stage, Throwable e)
+	{
+		failed.incrementAndGet();
+		if (e instanceof DeadlineExceededException)
+			problem(document, e.getMessage() + ", skipped");
+		else
+			problem(document, "failed in " + stage.name + ": " + e);
+	}
+
+	private void problem(Document document, String message)
+	{
+		synchronized (problems)
+		{
+			problems.add(document.fileName + ": " + message);
+		}
+	}
+
+	public int getCompletedCount()
+	{
+		return completed.get();
+	}
+
+	public int getSkippedCount()
+	{
+		return skipped.get();
+	}
+
+	public int getReusedCount()
+	{
+		return reused.get();
+	}
+
+	public int getPartialCount()
+	{
+		return partial.get();
+	}
+
+	public int getFailedCount()
+	{
+		return failed.get();
+	}
+
+	/**
+	Returns the problems with individual documents (and the documents whose model was reused), one per line, followed by a summary
+	of the run: the number of documents written, partial, reused from a near-duplicate (see setNearDuplicates()), annotated along
+	with another with the same text, skipped (see setJournal()) and failed, and for each stage its thread count and the total time its threads spent working (as opposed to
+	waiting on their queues), which shows which stage is the bottleneck.
+	*/
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+		synchronized (problems)
+		{
+			for (String problem: problems)
+				report.append(problem).append('\n');
+		}
+		report.append(completed.get()).append(" written (").append(partial.get()).append(" partial, ");
+		report.append(reused.get()).append(" reused from near-duplicates, ");
+		report.append(annotations.getSharedCount()).append(" sharing the annotation of the same text), ");
+		report.append(skipped.get()).append(" already finished, ");
+		report.append(failed.get()).append(" failed\n");
+		for (Stage stage: stages)
+		{
+			report.append(stage.name).append(": ").append(stage.threadCount).append(" threads, ");
+			report.append(stage.documents.get()).append(" documents, ").append(stage.busyNanos.get() / 1000000).append(" ms busy\n");
+		}
+		return report.toString();
+	}
+
+	private interface Step
+	{
+		/**
+		Processes a document, returning whether it should be passed on to the next stage.
+		*/
+		boolean process(Document document) throws Exception;
+	}
+
+	private class Stage
+	{
+		private String name;
+		private int threadCount;
+		private Step step;
+		private AtomicInteger running; // threads still working; the last one to finish ends the next stage
+		private AtomicInteger documents;
+		private AtomicLong busyNanos;
+
+		private Stage(String name, int threadCount, Step step)
+		{
+			this.name = name;
+			this.threadCount = Math.max(1, threadCount);
+			this.step = step;
+		}
+
+		private List<Thread> start(BlockingQueue<Document> in, BlockingQueue<Document> out)
+		{
+			running = new AtomicInteger(threadCount);
+			documents = new AtomicInteger();
+			busyNanos = new AtomicLong();
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < threadCount; i++)
+			{
+				Thread thread = new Thread(() -> work(in, out), "pipeline-" + name + "-" + i);
+				thread.start();
+				threads.add(thread);
+			}
+			return threads;
+		}
+
+		private void work(BlockingQueue<Document> in, BlockingQueue<Document> out)
+		{
+			//whatever happens to this thread, the next stage has to be ended once every thread of this one is done, or run() would
+			//wait for it forever
+			try
+			{
+				while (true)
+				{
+					Document document = in.take();
+					if (document == END)
+					{
+						in.put(END); //leave it for the other threads of this stage
+						break;
+					}
+
+					long start = System.nanoTime();
+					boolean forward;
+					try
+					{
+						forward = step.process(document);
+					}
+					catch (Throwable e) //including Errors (eg: a StackOverflowError in a parser), which only the document dies of
+					{
+						fail(document, this, e);
+						forward = false;
+					}
+					busyNanos.addAndGet(System.nanoTime() - start);
+					documents.incrementAndGet();
+
+					if (forward && out != null)
+						out.put(document); //blocks while the next stage is behind
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				if (running.decrementAndGet() == 0 && out != null)
+					end(out);
+			}
+		}
+
+		//puts END on the next stage's queue, even if this thread has been interrupted
+		private void end(BlockingQueue<Document> out)
+		{
+			boolean interrupted = Thread.interrupted();
+			while (true)
+			{
+				try
+				{
+					out.put(END);
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class Document
+	{
+		private String fileName;
+		private RulesParser parser;
+		private GameModel model;
+		private String text; // the text of a ruleset read from a corpus, until it is handed to its parser
+		private String gameName; // the name of the game of a ruleset read from a corpus (see CorpusReader.Entry.getGameName())
+		private String contentHash; // the hash of the text, once it has been read (with a journal) or annotated
+		private NearDuplicateIndex.Match match; // what the near-duplicate index knows about the ruleset, if there is one
+
+		private Document(String fileName)
+		{
+			this.fileName = fileName;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+import java.io.*;
+
+/**
+Writes a GameModel in its compact binary format (see GameModel.write()), which GameModel.load() reads back by memory-mapping the
+file, so consumers get every piece, direction, zone and end condition without parsing any text.
+*/
+public class BinaryModelWriter extends ModelWriter
+{
+	public BinaryModelWriter(GameModel model)
+	{
+		this(model, new TextBuffer());
+	}
+
+	public BinaryModelWriter(GameModel model, TextBuffer buffer)
+	{
+		super(model, buffer);
+	}
+
+	protected void writeModel()
+	{
+		try
+		{
+			model.write(out.asOutputStream());
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e); // never happens, as the stream only writes into memory
+		}
+	}
+
+	public String getExtension()
+	{
+		return "model";
+	}
+}
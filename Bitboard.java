@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+A set of squares on a board, stored as one bit per square (square i*columns+j being the square in row i and column j).
+Boards of up to 64 squares fit in a single long; larger boards use an array of longs.
+*/
+public class Bitboard
+{
+	private final int size; // number of squares on the board
+	private long word; // holds all the squares when size <= 64
+	private long[] words; // holds all the squares when size > 64 (square k is bit k%64 of words[k/64]); null otherwise
+
+	public Bitboard(int size)
+	{
+		this.size = size;
+		if (size > 64)
+			words = new long[(size + 63) / 64];
+	}
+
+	/**
+	Creates a Bitboard from the array returned by toWords() of another Bitboard of the same size.
+	*/
+	public static Bitboard fromWords(int size, long[] words)
+	{
+		Bitboard b = new Bitboard(size);
+		if (b.words == null)
+			b.word = words.length > 0 ? words[0] : 0L;
+		else
+			System.arraycopy(words, 0, b.words, 0, Math.min(words.length, b.words.length));
+		return b;
+	}
+
+	/**
+	Returns the number of squares on the board this Bitboard represents.
+	*/
+	public int size()
+	{
+		return size;
+	}
+
+	public void set(int square)
+	{
+		if (words == null)
+			word |= 1L << square;
+		else
+			words[square >>> 6] |= 1L << square;
+	}
+
+	public void clear(int square)
+	{
+		if (words == null)
+			word &= ~(1L << square);
+		else
+			words[square >>> 6] &= ~(1L << square);
+	}
+
+	public boolean get(int square)
+	{
+		if (words == null)
+			return (word & (1L << square)) != 0;
+		else
+			return (words[square >>> 6] & (1L << square)) != 0;
+	}
+
+	/**
+	Adds every square of another Bitboard of the same size to this one.
+	*/
+	public void or(Bitboard other)
+	{
+		if (words == null)
+			word |= other.word;
+		else
+		{
+			for (int i = 0; i < words.length; i++)
+				words[i] |= other.words[i];
+		}
+	}
+
+	/**
+	Returns the first square at or after fromSquare that is in this set, or -1 if there is none. 
+	Squares are returned in row-major order, so the usual loop is:
+	for (int sq = b.nextSetBit(0); sq >= 0; sq = b.nextSetBit(sq+1))
+	*/
+	public int nextSetBit(int fromSquare)
+	{
+		if (fromSquare >= size)
+			return -1;
+		if (words == null)
+		{
+			long remaining = word & (-1L << fromSquare);
+			return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+		}
+		int i = fromSquare >>> 6;
+		long remaining = words[i] & (-1L << fromSquare);
+		while (remaining == 0)
+		{
+			if (++i == words.length)
+				return -1;
+			remaining = words[i];
+		}
+		return i*64 + Long.numberOfTrailingZeros(remaining);
+	}
+
+	/**
+	Returns the number of squares in this set.
+	*/
+	public int cardinality()
+	{
+		if (words == null)
+			return Long.bitCount(word);
+		int count = 0;
+		for (long w: words)
+			count += Long.bitCount(w);
+		return count;
+	}
+
+	public boolean isEmpty()
+	{
+		if (words == null)
+			return word == 0;
+		for (long w: words)
+		{
+			if (w != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	Returns a copy of the underlying words (a single word for boards of up to 64 squares).
+	*/
+	public long[] toWords()
+	{
+		if (words == null)
+			return new long[] {word};
+		return Arrays.copyOf(words, words.length);
+	}
+}
@@ -0,0 +1,137 @@
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+Geometry of the board, along with everything parsed about it: which squares each player's pieces start on, and the 
+transition zones of each player for each transition piece. Both are stored as Bitboards rather than as per-square Strings.
+Squares are numbered in row-major order: the square in row i and column j is square i*columns+j.
+*/
+public class Board
+{
+	public static final int NUM_PLAYERS = 2; 
+	/* number of players is assumed to be 2, as most zrf games are 2-player (human vs. computer).
+	players are numbered from 1 (P1 starts from the top of the board, P2 from the bottom) */
+
+	private int rows;
+	private int columns;
+
+	private Bitboard[] occupancy; 
+	/* occupancy[playerNum-1] holds the squares occupied by the pieces of player playerNum in the initial setup.
+	(Only the default piece is ever placed in the initial setup, so occupancy is not kept separately per piece type.) */
+	private LinkedHashMap<String,Bitboard[]> zones; 
+	/* maps the name of each transition piece to its transition zones: zones.get(name)[playerNum-1] holds the squares on which
+	a piece of player playerNum becomes the piece called name. Pieces are kept in the order their zones were first parsed. */
+
+	public Board(int rows, int columns)
+	{
+		this.rows = rows;
+		this.columns = columns;
+
+		occupancy = new Bitboard[NUM_PLAYERS];
+		for (int i = 0; i < NUM_PLAYERS; i++)
+			occupancy[i] = new Bitboard(rows*columns);
+		zones = new LinkedHashMap<String,Bitboard[]>();
+	}
+
+	public int getRows()
+	{
+		return rows;
+	}
+
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	Returns the number of the square in row i and column j.
+	*/
+	public int square(int i, int j)
+	{
+		return i*columns + j;
+	}
+
+	/**
+	Returns the row of a square.
+	*/
+	public int row(int square)
+	{
+		return square / columns;
+	}
+
+	/**
+	Returns the column of a square.
+	*/
+	public int column(int square)
+	{
+		return square % columns;
+	}
+
+	/**
+	Places a piece of player playerNum on the square in row i and column j in the initial setup.
+	*/
+	public void setOccupant(int playerNum, int i, int j)
+	{
+		for (Bitboard b: occupancy)
+			b.clear(square(i,j)); // a square can only hold one piece
+		occupancy[playerNum-1].set(square(i,j));
+	}
+
+	/**
+	Returns the squares occupied by the pieces of player playerNum in the initial setup.
+	*/
+	public Bitboard getOccupancy(int playerNum)
+	{
+		return occupancy[playerNum-1];
+	}
+
+	/**
+	Adds an entire row to the transition zone of player playerNum for the piece called pieceName.
+	*/
+	public void addZoneRow(String pieceName, int playerNum, int row)
+	{
+		Bitboard zone = getOrCreateZones(pieceName)[playerNum-1];
+		for (int j = 0; j < columns; j++)
+			zone.set(square(row, j));
+	}
+
+	/**
+	Adds a single square to the transition zone of player playerNum for the piece called pieceName.
+	*/
+	public void addZoneSquare(String pieceName, int playerNum, int square)
+	{
+		getOrCreateZones(pieceName)[playerNum-1].set(square);
+	}
+
+	/**
+	Returns the transition zone of player playerNum for the piece called pieceName (an empty Bitboard if none was parsed).
+	*/
+	public Bitboard getZone(String pieceName, int playerNum)
+	{
+		Bitboard[] pieceZones = zones.get(pieceName);
+		if (pieceZones == null)
+			return new Bitboard(rows*columns);
+		return pieceZones[playerNum-1];
+	}
+
+	/**
+	Returns the names of all the pieces that have a transition zone.
+	*/
+	public Set<String> getZonePieces()
+	{
+		return zones.keySet();
+	}
+
+	private Bitboard[] getOrCreateZones(String pieceName)
+	{
+		Bitboard[] pieceZones = zones.get(pieceName);
+		if (pieceZones == null)
+		{
+			pieceZones = new Bitboard[NUM_PLAYERS];
+			for (int i = 0; i < NUM_PLAYERS; i++)
+				pieceZones[i] = new Bitboard(rows*columns);
+			zones.put(pieceName, pieceZones);
+		}
+		return pieceZones;
+	}
+}
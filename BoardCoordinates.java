@@ -0,0 +1,98 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+The names ZRF uses for the squares of a board of a given size. Columns are named with letters like spreadsheet columns
+(a, b, ..., z, aa, ab, ..., zz, aaa, ...), so boards of any width can be named, and rows are numbered from 1.
+In the ZRF, column names run from a on the left of the board (as printed in the ZRF) to the right, while Board column 0 is on the
+right, so the square at Board row i, column j is named columnName(columns-j-1) followed by i+1.
+
+Only the column names are stored (never a String per square), and the names for each board size are computed once and shared by
+every writer through get(), so writing the positions of a very large board costs no more than writing its digits.
+*/
+public final class BoardCoordinates
+{
+	//coordinates of every board size requested so far, keyed by rows << 32 | columns
+	private static final ConcurrentHashMap<Long,BoardCoordinates> cache = new ConcurrentHashMap<Long,BoardCoordinates>();
+
+	private final int rows;
+	private final int columns;
+	private final String[] columnNames; // columnNames[j] holds the name of the jth column from the left of the ZRF board
+
+	private BoardCoordinates(int rows, int columns)
+	{
+		this.rows = rows;
+		this.columns = columns;
+		this.columnNames = new String[columns];
+		for (int j = 0; j < columns; j++)
+			columnNames[j] = columnName(j);
+	}
+
+	/**
+	Returns the (shared) coordinates of a board with the given dimensions.
+	*/
+	public static BoardCoordinates get(int rows, int columns)
+	{
+		return cache.computeIfAbsent(((long) rows << 32) | columns, key -> new BoardCoordinates(rows, columns));
+	}
+
+	/**
+	Returns the name of the jth column from the left of the ZRF board: a, ..., z, aa, ..., az, ba, ..., zz, aaa, ...
+	*/
+	public static String columnName(int j)
+	{
+		StringBuilder name = new StringBuilder();
+		for (int n = j + 1; n > 0; n = (n - 1) / 26)
+			name.append((char) ('a' + (n - 1) % 26));
+		return name.reverse().toString();
+	}
+
+	public int getRows()
+	{
+		return rows;
+	}
+
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	Returns the name of the jth column from the left of the ZRF board.
+	*/
+	public String getColumnName(int j)
+	{
+		return columnNames[j];
+	}
+
+	/**
+	Appends the ZRF name of the square at Board row i, column j.
+	*/
+	public void appendSquare(TextBuffer out, int i, int j)
+	{
+		out.append(columnNames[columns-j-1]).append(i+1);
+	}
+
+	/**
+	Appends the ZRF name of a square as numbered by Board.square() (and the bits of a Bitboard).
+	*/
+	public void appendSquare(TextBuffer out, int square)
+	{
+		appendSquare(out, square / columns, square % columns);
+	}
+
+	/**
+	Returns the ZRF name of the square at Board row i, column j.
+	*/
+	public String getSquareName(int i, int j)
+	{
+		return columnNames[columns-j-1] + (i+1);
+	}
+
+	/**
+	Checks if the square at Board row i, column j is black in the alternating black and white pattern of a checkerboard.
+	*/
+	public static boolean isBlack(int i, int j)
+	{
+		return (i+j) % 2 != 0;
+	}
+}
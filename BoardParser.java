@@ -1,28 +1,28 @@
 import java.util.ArrayList;
-import java.util.List;
 
 import edu.stanford.nlp.ling.*;
-import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.util.*;
 
 public class BoardParser
 {
 	private RulesParser parent;
-	private List<CoreMap> sentences;
+	private RulesetFeatures features; //everything the parser needs from the annotations of the text
 	private String[][] lemmas; //lemmas[i][j] holds the lemma of the jth word in the ith sentence of the text
 	private String[][] partsOfSpeech; //partsOfSpeech[i][j] holds the POS of the jth word in the ith sentence of the text
+	private Deadline deadline; //checked once per sentence, so that a conversion that runs out of time stops promptly
+	private ConceptTagger concepts; //concepts of each word of the text
 
 	private int[] dimensions;
-	private String[][] initialBoard;
-	private String[][] transitionZones;
+	private Board board;
 
-	public BoardParser(RulesParser parent, List<CoreMap> sentences, String[][] lemmas, String[][] partsOfSpeech)
+	public BoardParser(RulesParser parent, RulesetFeatures features, String[][] lemmas, String[][] partsOfSpeech)
 	{
 		this.parent = parent;
-		this.sentences = sentences;
+		this.features = features;
 		this.lemmas = lemmas;
 		this.partsOfSpeech = partsOfSpeech;
+		this.concepts = parent.getConceptTagger();
+		this.deadline = parent.getDeadline();
 
 		this.dimensions = new int[2];
 	}
@@ -33,21 +33,16 @@ public class BoardParser
 		parseInitialSetup();
 	}
 
-	public String[][] getInitialBoard()
+	public Board getBoard()
 	{
-		return initialBoard;
-	}
-
-	public String[][] getTransitionZones()
-	{
-		return transitionZones;
+		return board;
 	}
 
 	public void parseDimensions()
 	{
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			CoreMap sentence = sentences.get(i);
+			deadline.check();
 
 			ArrayList<Integer> indicesOfBoard = new ArrayList<Integer>(1);
 			int numberIndex = -1;
@@ -59,7 +54,7 @@ public class BoardParser
 				String lemma = lemmas[i][j];
 				/*any number that is dominated by a synonym or hyponym of "board" potentially denotes dimensions,
 				so we have to determine the indices within sentence i of all synonyms/hyponyms of "board" */
-				if (RulesParser.isSynonymOf("board", lemma) || RulesParser.isHypernymOf("board", lemma))
+				if (concepts.has(i, j, ConceptTagger.BOARD))
 					indicesOfBoard.add(new Integer(j));
 
 				//search for any word of the form MxN where M and N are integers
@@ -96,9 +91,7 @@ public class BoardParser
 			columns is used (eg, in the sentence "The board consists of 64 squares, alternating between 32 black and 32 red squares"
 			only "64 squares" is used, not "32 squares"). */
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-				SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 
 			int squareValue = -1;
@@ -114,8 +107,7 @@ public class BoardParser
 
 				if (d.contains("nummod("))
 				{
-					String number2 = sentence.get(CoreAnnotations.TokensAnnotation.class).get(index2).get(
-						CoreAnnotations.NormalizedNamedEntityTagAnnotation.class);
+					String number2 = features.getNumber(i, index2);
 					if (number2 != null) // if NER has recognized the second word in the dependency to be a number value
 					{
 						try
@@ -198,19 +190,18 @@ public class BoardParser
 		if (dimensions[1] == 0)
 			dimensions[1] = 8;
 
-		System.out.println("rows: " + dimensions[0] + ", columns: " + dimensions[1]); //debugging
-		initialBoard = new String[dimensions[0]][dimensions[1]];
-		transitionZones = new String[dimensions[0]][dimensions[1]];
+		parent.debug("rows: " + dimensions[0] + ", columns: " + dimensions[1]); //debugging
+		board = new Board(dimensions[0], dimensions[1]);
 	}
 
 	public void parseInitialSetup()
 	{
 		//TODO: THIS IS ALL HARDCODED - PLACEHOLDERS! Must be replaced with actual parsing from ruleset.
 		for (int i = 0; i < 3; i++)
-			for (int j = (i+1)%2; j < initialBoard[i].length; j+=2)
-				initialBoard[i][j] = "P1";
-		for (int i = initialBoard.length-1; i > initialBoard.length-4; i--)
-			for (int j = (i+1)%2; j < initialBoard[i].length; j+=2)
-				initialBoard[i][j] = "P2";
+			for (int j = (i+1)%2; j < board.getColumns(); j+=2)
+				board.setOccupant(1, i, j);
+		for (int i = board.getRows()-1; i > board.getRows()-4; i--)
+			for (int j = (i+1)%2; j < board.getColumns(); j+=2)
+				board.setOccupant(2, i, j);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,223 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.stanford.nlp.trees.*;
+
+/**
+Stamps every word of the text with a bitmask of the concepts it denotes, so that the parsers can test for a concept with a
+single mask test instead of calling WordNet or walking the dependency graph every time they look at a word.
+
+Most concepts depend only on the lemma (eg: whether it is a synonym of "opponent"); these are computed once per distinct lemma
+and cached for the lifetime of the program, as WordNet never changes. The remaining concepts depend on the word's place in the
+sentence (eg: whether it is negated, or whether it is a noun modified by "other") and are computed from the dependency graph of
+each sentence right after annotation. PIECE_NAME is stamped separately by tagPieceNames(), once the piece names are known.
+*/
+public class ConceptTagger
+{
+	/* lemma concepts: */
+	public static final int OPPONENT = 1; // any synonym of "opponent"
+	public static final int PLAYER = 1 << 1; // any synonym of "player"
+	public static final int GAME_PLAYER = 1 << 2; // any synonym of "player" in the sense related to gameplay (WordNet 3.0 sense 0)
+	public static final int BOARD = 1 << 3; // any synonym or hyponym of "board"
+	public static final int DIRECTION_DIAGONAL = 1 << 4;
+	public static final int DIRECTION_FORWARD = 1 << 5;
+	public static final int DIRECTION_BACKWARD = 1 << 6;
+	public static final int DIRECTION_LEFT = 1 << 7;
+	public static final int DIRECTION_RIGHT = 1 << 8;
+	public static final int ROW_FAR = 1 << 9; // any synonym of "furthest", "opposite", "far", "last", or the word "top"
+	public static final int ROW_NEAR = 1 << 10; // any synonym of "own", "nearest", or "first"
+	public static final int OTHER = 1 << 11; // exactly the word "other" or "opposing"
+	public static final int OTHER_SYNONYM = 1 << 12; // any synonym of "other" or "opposing"
+	public static final int OPPOSITE = 1 << 13; // exactly the word "opposite"
+	public static final int MOVE_HYPONYM = 1 << 14; // any hyponym of the verb "move"
+	public static final int REACH = 1 << 15; // any synonym of "reach"
+	public static final int BECOME = 1 << 16; // any synonym of "become"
+	public static final int PREVENT = 1 << 17; // any synonym of "prevent"
+	public static final int BLOCK = 1 << 18; // any synonym of "block"
+	public static final int GOAL = 1 << 19; // any synonym of "objective" or "goal"
+	public static final int TIE = 1 << 20; // any synonym of "tie" in the sense related to games (WordNet 3.0 sense 5)
+	public static final int END = 1 << 21; // any synonym of "end"
+
+	/* word concepts: */
+	public static final int NEGATION = 1 << 22; // the word is a negation modifier of another word
+	public static final int NEGATED = 1 << 23; // the word directly governs a negation modifier
+	public static final int OTHER_MODIFIED = 1 << 24; // the word is a noun modified by an adjective tagged OTHER (eg: "other player")
+	public static final int PIECE_NAME = 1 << 25; // the word is any name of any parsed piece, or the word "piece"
+
+	//concepts of every lemma looked up so far
+	private static ConcurrentHashMap<String,Integer> lemmaCache = new ConcurrentHashMap<String,Integer>();
+
+	private String[][] lemmas; //lemmas[i][j] holds the lemma of the jth word in the ith sentence of the text
+	private String[][] partsOfSpeech; //partsOfSpeech[i][j] holds the POS of the jth word in the ith sentence of the text
+	private int[][] tags; //tags[i][j] holds the concepts of the jth word in the ith sentence of the text
+
+	public ConceptTagger(String[][] lemmas, String[][] partsOfSpeech)
+	{
+		this.lemmas = lemmas;
+		this.partsOfSpeech = partsOfSpeech;
+
+		tags = new int[lemmas.length][];
+		for (int i = 0; i < lemmas.length; i++)
+			tags[i] = new int[lemmas[i].length];
+	}
+
+	/**
+	Stamps every word of every sentence with its lemma concepts and word concepts, reading the dependency graph of each sentence
+	from features.
+	*/
+	public void tag(RulesetFeatures features)
+	{
+		String negation = UniversalEnglishGrammaticalRelations.NEGATION_MODIFIER.toString();
+		String adjectivalModifier = UniversalEnglishGrammaticalRelations.ADJECTIVAL_MODIFIER.toString();
+		for (int i = 0; i < features.getSentenceCount(); i++)
+		{
+			for (int j = 0; j < lemmas[i].length; j++)
+				tags[i][j] = lemmaConcepts(lemmas[i][j]);
+
+			for (int j = 0; j < lemmas[i].length; j++)
+			{
+				for (int negator: features.getChildren(i, j, negation))
+				{
+					tags[i][j] |= NEGATED;
+					tags[i][negator] |= NEGATION;
+				}
+			}
+
+			//propagate "other"/"opposing" to the nouns they modify
+			for (int j = 0; j < lemmas[i].length; j++)
+			{
+				if (partsOfSpeech[i][j].charAt(0) != 'N')
+					continue;
+				for (int adjective: features.getChildren(i, j, adjectivalModifier))
+				{
+					if ((tags[i][adjective] & OTHER) != 0)
+						tags[i][j] |= OTHER_MODIFIED;
+				}
+			}
+		}
+	}
+
+	/**
+	Stamps PIECE_NAME on every word that is any name of any piece in pieceIndex, or the word "piece".
+	Clears any PIECE_NAME tags from a previous call first, so this can be called again whenever the index is rebuilt.
+	*/
+	public void tagPieceNames(PieceIndex pieceIndex)
+	{
+		for (int i = 0; i < tags.length; i++)
+		{
+			for (int j = 0; j < tags[i].length; j++)
+			{
+				if (pieceIndex.isPieceName(i, j) || lemmas[i][j].equals("piece"))
+					tags[i][j] |= PIECE_NAME;
+				else
+					tags[i][j] &= ~PIECE_NAME;
+			}
+		}
+	}
+
+	/**
+	Returns all the concepts of the jth word of the ith sentence.
+	*/
+	public int get(int sentenceIndex, int wordIndex)
+	{
+		return tags[sentenceIndex][wordIndex];
+	}
+
+	/**
+	Checks if the jth word of the ith sentence has any of the concepts in a mask.
+	*/
+	public boolean has(int sentenceIndex, int wordIndex, int concepts)
+	{
+		return (tags[sentenceIndex][wordIndex] & concepts) != 0;
+	}
+
+	/**
+	Checks if a lemma that is not necessarily a word of the text (eg: an antecedent determined by RulesParser) has any of the
+	lemma concepts in a mask.
+	*/
+	public static boolean lemmaHas(String lemma, int concepts)
+	{
+		return (lemmaConcepts(lemma) & concepts) != 0;
+	}
+
+	/**
+	Returns the lemma concepts of a lemma, looking them up in WordNet the first time the lemma is seen.
+	*/
+	public static int lemmaConcepts(String lemma)
+	{
+		Integer concepts = lemmaCache.get(lemma);
+		if (concepts == null)
+		{
+			concepts = lookUpConcepts(lemma);
+			lemmaCache.put(lemma, concepts);
+		}
+		return concepts;
+	}
+
+	private static int lookUpConcepts(String lemma)
+	{
+		if (lemma.isEmpty())
+			return 0;
+
+		int concepts = 0;
+		if (RulesParser.isSynonymOf("opponent", lemma))
+			concepts |= OPPONENT;
+		if (RulesParser.isSynonymOf("player", lemma))
+			concepts |= PLAYER;
+		//0 is the index of the Wordnet 3.0 definition of "player" related to gameplay
+		if (RulesParser.isSynonymOf("player", lemma, 0))
+			concepts |= GAME_PLAYER;
+		if (RulesParser.isSynonymOf("board", lemma) || RulesParser.isHypernymOf("board", lemma))
+			concepts |= BOARD;
+
+		/*ALL of the following specifications of indices are specific to the WordNet 3.0 database!
+		They must be changed for future versions of WordNet, as the indices of definitions change. */
+		//5,6 are the indices in Wordnet 3.0 of the definitions of "diagonal" that denote direction
+		if (RulesParser.isSynonymOf("diagonal", lemma, 5, 6) || RulesParser.isSynonymOf("diagonally", lemma))
+			concepts |= DIRECTION_DIAGONAL;
+		//3,6,7,9,11 are the indices in Wordnet 3.0 of the definitions of "forward" that denote direction
+		if (RulesParser.isSynonymOf("forward", lemma, 3, 6, 7, 9, 11))
+			concepts |= DIRECTION_FORWARD;
+		//0,2,3 are the indices in Wordnet 3.0 of the definitions of "backward" that denote direction
+		if (RulesParser.isSynonymOf("backward", lemma, 0, 2, 3))
+			concepts |= DIRECTION_BACKWARD;
+		//19 is the index in Wordnet 3.0 of the definitions of "left" that denote direction
+		if (RulesParser.isSynonymOf("left", lemma, 19))
+			concepts |= DIRECTION_LEFT;
+		//12,20 are the indices in Wordnet 3.0 of the definitions of "right" that denote direction
+		if (RulesParser.isSynonymOf("right", lemma, 12, 20))
+			concepts |= DIRECTION_RIGHT;
+
+		if (RulesParser.isSynonymOf("furthest", lemma) || RulesParser.isSynonymOf("opposite", lemma) ||
+			RulesParser.isSynonymOf("far", lemma) || RulesParser.isSynonymOf("last", lemma) || lemma.equals("top"))
+			concepts |= ROW_FAR;
+		if (RulesParser.isSynonymOf("own", lemma) || RulesParser.isSynonymOf("nearest", lemma) ||
+			RulesParser.isSynonymOf("first", lemma))
+			concepts |= ROW_NEAR;
+		if (lemma.equals("other") || lemma.equals("opposing"))
+			concepts |= OTHER;
+		if (RulesParser.isSynonymOf("other", lemma) || RulesParser.isSynonymOf("opposing", lemma))
+			concepts |= OTHER_SYNONYM;
+		if (lemma.equals("opposite"))
+			concepts |= OPPOSITE;
+
+		if (RulesParser.isHypernymOf("move", lemma))
+			concepts |= MOVE_HYPONYM;
+		if (RulesParser.isSynonymOf("reach", lemma))
+			concepts |= REACH;
+		if (RulesParser.isSynonymOf("become", lemma))
+			concepts |= BECOME;
+		if (RulesParser.isSynonymOf("prevent", lemma))
+			concepts |= PREVENT;
+		if (RulesParser.isSynonymOf("block", lemma))
+			concepts |= BLOCK;
+		if (RulesParser.isSynonymOf("objective", lemma) || RulesParser.isSynonymOf("goal", lemma))
+			concepts |= GOAL;
+		//5 is the wordnet index of "tie" relating to games
+		if (RulesParser.isSynonymOf("tie", lemma, 5))
+			concepts |= TIE;
+		if (RulesParser.isSynonymOf("end", lemma))
+			concepts |= END;
+
+		return concepts;
+	}
+}
@@ -0,0 +1,57 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+Hex SHA-256 hashes of contents, used wherever outputs or inputs are identified by their contents rather than their names
+(OutputManifest, SingleFlight keys).
+*/
+public final class ContentHash
+{
+	private ContentHash()
+	{
+	}
+
+	public static String of(TextBuffer content)
+	{
+		MessageDigest digest = newDigest();
+		content.update(digest);
+		return toHex(digest.digest());
+	}
+
+	public static String of(byte[] content)
+	{
+		return toHex(newDigest().digest(content));
+	}
+
+	/**
+	Returns the hash of the UTF-8 encoding of text.
+	*/
+	public static String of(String text)
+	{
+		return of(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e); // every Java platform is required to support SHA-256
+		}
+	}
+
+	private static String toHex(byte[] hash)
+	{
+		StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b: hash)
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,262 @@
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.stanford.nlp.ling.*;
+import edu.stanford.nlp.pipeline.*;
+import edu.stanford.nlp.util.*;
+
+/**
+Runs conversion jobs on a fixed number of worker threads, shortest expected job first, so that a few long documents can't hold up
+many short ones behind them.
+
+The cost of a job is estimated from the text before it is queued (see estimateCost()). To keep long jobs from starving under a
+steady stream of short ones, a job's priority improves the longer it waits: a job that has waited agingMillis milliseconds is
+ordered as if its cost were one unit lower. Since every queued job ages at the same rate, this is the same as ordering jobs by
+cost + enqueueTime/agingMillis, which never changes once a job is queued, so jobs can be kept in an ordinary priority queue.
+
+The queue is bounded: once capacity jobs are waiting, submit() rejects new jobs immediately (with a RejectedExecutionException)
+instead of letting the backlog and its memory grow without bound; callers are expected to retry later or report that they are busy.
+Jobs cancelled before they start leave the queue at once.
+*/
+public class ConversionScheduler
+{
+	private static StanfordCoreNLP tokenizer; // tokenization and sentence splitting only, for estimating costs
+
+	private PriorityQueue<Job<?>> queue;
+	private ReentrantLock lock;
+	private Condition notEmpty;
+	private int capacity;
+	private double agingMillis;
+	private long startTime; // enqueue times are measured from here, to keep priorities small enough for exact arithmetic
+	private Thread[] workers;
+	private volatile boolean shutdown;
+	private long sequence; // breaks ties between jobs of equal priority in the order they were submitted
+
+	//metrics, all guarded by lock
+	private int running;
+	private long submitted;
+	private long rejected;
+	private long completed;
+	private long totalWaitMillis; // sum of the time every started job spent queued
+	private long maxWaitMillis;
+
+	public ConversionScheduler(int workerCount, int capacity, double agingMillis)
+	{
+		this.queue = new PriorityQueue<Job<?>>();
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.capacity = capacity;
+		this.agingMillis = agingMillis;
+		this.startTime = System.currentTimeMillis();
+
+		workers = new Thread[workerCount];
+		for (int i = 0; i < workerCount; i++)
+		{
+			workers[i] = new Thread(this::work, "conversion-worker-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	Estimates the relative cost of parsing a text. Only tokenization and sentence splitting are run, which take a tiny fraction of
+	the time of the full pipeline. Parsing dominates the full pipeline and grows much faster than linearly with sentence length, so
+	each sentence costs its token count squared (plus one per token for the linear annotators).
+	*/
+	public static long estimateCost(String text)
+	{
+		Annotation annotation = new Annotation(text);
+		getTokenizer().annotate(annotation);
+		long cost = 0;
+		List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+		for (CoreMap sentence: sentences)
+		{
+			long tokens = sentence.get(CoreAnnotations.TokensAnnotation.class).size();
+			cost += tokens * tokens + tokens;
+		}
+		return cost;
+	}
+
+	private static synchronized StanfordCoreNLP getTokenizer()
+	{
+		if (tokenizer == null)
+		{
+			Properties annotators = new Properties();
+			annotators.put("annotators", "tokenize, ssplit");
+			tokenizer = new StanfordCoreNLP(annotators);
+		}
+		return tokenizer;
+	}
+
+	/**
+	Queues work with a given estimated cost. Throws a RejectedExecutionException if the queue is full or the scheduler is shut down.
+	*/
+	public <V> Future<V> submit(long cost, Callable<V> work)
+	{
+		lock.lock();
+		try
+		{
+			if (shutdown || queue.size() >= capacity)
+			{
+				rejected++;
+				throw new RejectedExecutionException("Conversion queue is full (" + queue.size() + " jobs waiting)");
+			}
+			long now = System.currentTimeMillis();
+			Job<V> job = new Job<V>(work, cost + (now - startTime) / agingMillis, now, sequence++);
+			queue.add(job);
+			submitted++;
+			notEmpty.signal();
+			return job;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	Queues the parse of a text, with its cost estimated by estimateCost().
+	*/
+	public <V> Future<V> submit(String text, Callable<V> work)
+	{
+		return submit(estimateCost(text), work);
+	}
+
+	private void work()
+	{
+		while (true)
+		{
+			Job<?> job;
+			lock.lock();
+			try
+			{
+				while (queue.isEmpty() && !shutdown)
+					notEmpty.awaitUninterruptibly();
+				if (shutdown && queue.isEmpty())
+					return;
+				job = queue.poll();
+				long waited = System.currentTimeMillis() - job.enqueueTime;
+				totalWaitMillis += waited;
+				maxWaitMillis = Math.max(maxWaitMillis, waited);
+				running++;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			job.run(); // a FutureTask catches and records anything the work throws
+			//a job cancelled while running (eg: by ConversionServer when its request is interrupted) leaves its worker interrupted,
+			//which would interrupt the next job the moment it started
+			Thread.interrupted();
+
+			lock.lock();
+			try
+			{
+				running--;
+				completed++;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	Stops accepting jobs; the workers exit once every queued job has run.
+	*/
+	public void shutdown()
+	{
+		lock.lock();
+		try
+		{
+			shutdown = true;
+			notEmpty.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	public int getQueueDepth()
+	{
+		lock.lock();
+		try
+		{
+			return queue.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	Returns a one-line summary of the scheduler's metrics: queued and running jobs, jobs submitted, rejected and completed so far,
+	and the mean and maximum time jobs waited in the queue before starting.
+	*/
+	public String getMetrics()
+	{
+		lock.lock();
+		try
+		{
+			long started = completed + running;
+			long meanWait = started == 0 ? 0 : totalWaitMillis / started;
+			return "queued=" + queue.size() + " running=" + running + " submitted=" + submitted + " rejected=" + rejected +
+				" completed=" + completed + " meanWaitMs=" + meanWait + " maxWaitMs=" + maxWaitMillis;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	//drops a cancelled job from the queue, so that it stops counting against capacity
+	private void remove(Job<?> job)
+	{
+		lock.lock();
+		try
+		{
+			queue.remove(job);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private class Job<V> extends FutureTask<V> implements Comparable<Job<?>>
+	{
+		private double priority; // lower runs first
+		private long enqueueTime;
+		private long sequence;
+
+		private Job(Callable<V> work, double priority, long enqueueTime, long sequence)
+		{
+			super(work);
+			this.priority = priority;
+			this.enqueueTime = enqueueTime;
+			this.sequence = sequence;
+		}
+
+		protected void done()
+		{
+			if (isCancelled())
+				remove(this); //nothing to remove if it was already running
+		}
+
+		public int compareTo(Job<?> other)
+		{
+			int byPriority = Double.compare(priority, other.priority);
+			if (byPriority != 0)
+				return byPriority;
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
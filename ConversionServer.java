@@ -0,0 +1,275 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+Long-running local conversion daemon: loads the CoreNLP pipeline and WordNet once, then converts ruleset text sent to it over
+loopback HTTP, so callers (editors, build systems) pay neither JVM startup nor model loading per conversion.
+
+POST /convert?name=<game name>&format=zrf|json|model with the ruleset text (UTF-8) as the body
+  responds with the output of the requested format (zrf by default). If the parse ran out of time after annotation, the output
+  is partial and the response has the header X-Partial-Result: true; if it ran out during annotation, the response is 504.
+GET /metrics
+  responds with the ConversionScheduler's queue depth, job counts and wait times, and the share of sentences re-annotated
+GET /health
+  responds "ok" (followed by how many conversions parsed their text and how many shared another's parse) once the pipeline is loaded
+
+Each request is handled on its own thread: a virtual thread where the JVM supports them (Java 21+), otherwise a thread from a
+cached pool. Waiting on the network costs nothing, but annotation is CPU-bound, so the parsing itself is confined to the fixed pool
+of platform threads of a ConversionScheduler (one per core by default), which runs the cheapest queued documents first. When its
+queue is full, requests are turned away with 503 Service Unavailable rather than queued without bound.
+Requests for the same text that arrive while it is being parsed share that parse (see SingleFlight) instead of queueing their own.
+The server remembers the annotations of the last version of each game it converted, so when an edited version of a game is sent,
+only the sentences that changed are annotated again (see IncrementalAnnotator). Only the games converted most recently are
+remembered, up to REMEMBERED_SENTENCES sentences in all, as the names of games come from clients.
+*/
+public class ConversionServer
+{
+	public static final List<String> FORMATS = Arrays.asList("zrf", "json", "model"); // the formats makeWriter() knows
+	private static final int REMEMBERED_SENTENCES = 100000; // sentences kept by the IncrementalAnnotator, over all games
+
+	private HttpServer server;
+	private ExecutorService requestThreads; // runs each request, from reading its body to writing the response
+	private ConversionScheduler scheduler; // runs RulesParser.parse() for every request, on parseThreadCount threads
+	private SingleFlight<GameModel> parses; // the parse running for each text, keyed by the hash of the text
+	private long timeoutMillis; // time limit of each parse (see Deadline), or 0 for none
+	private IncrementalAnnotator annotator; // the annotations of the last version of each game, by name
+
+	public ConversionServer(int port, int parseThreadCount) throws IOException
+	{
+		this(port, parseThreadCount, parseThreadCount * 16, 1.0, 0);
+	}
+
+	/**
+	queueCapacity and agingMillis are passed to the ConversionScheduler. Each parse is limited to timeoutMillis milliseconds from
+	when it starts running (0 for no limit); see RulesParser.parse() for what happens when a parse runs out of time.
+	*/
+	public ConversionServer(int port, int parseThreadCount, int queueCapacity, double agingMillis, long timeoutMillis)
+		throws IOException
+	{
+		this.timeoutMillis = timeoutMillis;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		requestThreads = newRequestExecutor();
+		scheduler = new ConversionScheduler(parseThreadCount, queueCapacity, agingMillis);
+		parses = new SingleFlight<GameModel>();
+		annotator = new IncrementalAnnotator(REMEMBERED_SENTENCES);
+
+		server.setExecutor(requestThreads);
+		server.createContext("/convert", this::handleConvert);
+		server.createContext("/health", this::handleHealth);
+		server.createContext("/metrics", this::handleMetrics);
+	}
+
+	/**
+	Loads the pipeline (so the first request doesn't pay for it) and starts accepting requests.
+	*/
+	public void start()
+	{
+		RulesParser.getPipeline();
+		server.start();
+	}
+
+	public void stop()
+	{
+		server.stop(0);
+		requestThreads.shutdown();
+		scheduler.shutdown();
+	}
+
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	Parses ruleset text on one of the parsing threads and returns its GameModel, waiting as long as it takes.
+	If the same text is already being parsed for another request, waits for that parse instead of starting another.
+	Throws a RejectedExecutionException if the text would have to be queued and the scheduler's queue is full.
+	*/
+	public GameModel convert(String name, String text) throws IOException
+	{
+		try
+		{
+			//the model of the shared parse is named after whichever request started it, so it is renamed for this request
+			return parses.run(ContentHash.of(text), () -> parse(name, text)).withName(name);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing " + name);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof ExecutionException) //thrown by parse(), wrapping whatever the parser threw
+				cause = cause.getCause();
+			if (cause instanceof RejectedExecutionException) //the queue was full
+				throw (RejectedExecutionException) cause;
+			if (cause instanceof DeadlineExceededException) //the parse ran out of time before there was anything to return
+				throw (DeadlineExceededException) cause;
+			throw new IOException("Failed to parse " + name, cause);
+		}
+	}
+
+	private GameModel parse(String name, String text) throws ExecutionException, InterruptedException
+	{
+		Future<GameModel> result = scheduler.submit(text, () ->
+		{
+			RulesParser parser = RulesParser.fromText(name, text);
+			parser.setIncrementalAnnotator(annotator);
+			if (timeoutMillis > 0)
+				parser.setDeadline(Deadline.after(timeoutMillis));
+			parser.parse();
+			return parser.getGameModel();
+		});
+		try
+		{
+			return result.get();
+		}
+		catch (InterruptedException e)
+		{
+			result.cancel(true);
+			throw e;
+		}
+	}
+
+	/**
+	Returns the number of conversions that ran their own parse, and the number that shared another conversion's parse.
+	*/
+	public long getParseCount()
+	{
+		return parses.getComputedCount();
+	}
+
+	public long getSharedParseCount()
+	{
+		return parses.getSharedCount();
+	}
+
+	/**
+	Returns the writer for a format name (as used in the format parameter of /convert), or null if there is no such format.
+	*/
+	public static ModelWriter makeWriter(String format, GameModel model, TextBuffer buffer)
+	{
+		switch (format)
+		{
+			case "zrf":
+				return new ZRFWriter(model, buffer);
+			case "json":
+				return new JSONWriter(model, buffer);
+			case "model":
+				return new BinaryModelWriter(model, buffer);
+			default:
+				return null;
+		}
+	}
+
+	private void handleConvert(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			if (!exchange.getRequestMethod().equals("POST"))
+			{
+				respond(exchange, 405, "Use POST");
+				return;
+			}
+			HashMap<String,String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			String name = query.getOrDefault("name", "game");
+			String format = query.getOrDefault("format", "zrf");
+			if (!FORMATS.contains(format))
+			{
+				respond(exchange, 400, "Unknown format: " + format);
+				return;
+			}
+
+			String text = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			GameModel model = convert(name, text);
+
+			TextBuffer output = makeWriter(format, model, new TextBuffer()).render();
+			if (model.isPartial())
+				exchange.getResponseHeaders().set("X-Partial-Result", "true");
+			exchange.sendResponseHeaders(200, output.length());
+			OutputStream body = exchange.getResponseBody();
+			output.writeTo(body);
+			body.close();
+		}
+		catch (RejectedExecutionException e)
+		{
+			respond(exchange, 503, e.getMessage());
+		}
+		catch (DeadlineExceededException e)
+		{
+			respond(exchange, 504, e.getMessage());
+		}
+		catch (IOException e)
+		{
+			respond(exchange, 500, String.valueOf(e.getCause() != null ? e.getCause() : e));
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private void handleHealth(HttpExchange exchange) throws IOException
+	{
+		respond(exchange, 200, "ok " + getParseCount() + " parsed, " + getSharedParseCount() + " shared");
+		exchange.close();
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException
+	{
+		respond(exchange, 200, scheduler.getMetrics() + "\n" + annotator.getReport());
+		exchange.close();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String message) throws IOException
+	{
+		byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream body = exchange.getResponseBody();
+		body.write(bytes);
+		body.close();
+	}
+
+	private static HashMap<String,String> parseQuery(String rawQuery)
+	{
+		HashMap<String,String> query = new HashMap<String,String>();
+		if (rawQuery == null)
+			return query;
+		for (String pair: rawQuery.split("&"))
+		{
+			int equals = pair.indexOf('=');
+			if (equals > 0)
+				query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+		}
+		return query;
+	}
+
+	/**
+	Returns an executor that starts a virtual thread per task if the JVM has them (looked up reflectively, so this still compiles and
+	runs on JVMs without them), or else a cached pool of platform threads.
+	*/
+	private static ExecutorService newRequestExecutor()
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return Executors.newCachedThreadPool();
+		}
+	}
+}
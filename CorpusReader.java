@@ -0,0 +1,343 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+Reads the rulesets in an archive of a corpus (a zip, tar, or gzipped tar file) one entry at a time, straight from the archive's
+stream, without extracting anything to disk or reading more than one entry into memory.
+
+Only entries that look like text (.txt, .text, .html, .htm, .xhtml, .php, .shtml, .asp or no extension) are returned, so a corpus
+may hold images, PDFs and the like alongside its pages. HTML pages are reduced to their text as they are read (see HtmlText),
+so their markup and boilerplate never reach the parser. Every entry is read as UTF-8.
+
+Each ruleset is named after the archive and the entry (eg: corpus.zip/pages/checkers.html), so that rulesets from different
+archives don't share names. Its game is named after the whole path of the entry too (corpus-pages-checkers), as scraped corpora
+are full of entries that only differ by their directory (eg: site1/index.html and site2/index.html), and the outputs of games
+named after their file alone would overwrite each other.
+*/
+public class CorpusReader implements Closeable
+{
+	private static final String[] TEXT_EXTENSIONS = {".txt", ".text", ".html", ".htm", ".xhtml", ".php", ".shtml", ".asp"};
+
+	private String path;
+	private InputStream in;
+	private ZipInputStream zip; // if the archive is a zip
+	private byte[] header; // if the archive is a tar, one tar block
+	private int skipped; // entries that weren't text
+
+	public CorpusReader(String path) throws IOException
+	{
+		this.path = path;
+		this.in = new BufferedInputStream(new FileInputStream(path), 65536);
+		String lowerPath = path.toLowerCase(Locale.ROOT);
+		if (lowerPath.endsWith(".zip"))
+			zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+		else if (lowerPath.endsWith(".tar.gz") || lowerPath.endsWith(".tgz"))
+		{
+			in = new BufferedInputStream(new GZIPInputStream(in, 65536), 65536);
+			header = new byte[512];
+		}
+		else if (lowerPath.endsWith(".tar"))
+			header = new byte[512];
+		else
+		{
+			in.close();
+			throw new IOException(path + " is not a zip, tar or gzipped tar archive");
+		}
+	}
+
+	/**
+	Checks if a path names an archive CorpusReader can read.
+	*/
+	public static boolean isCorpus(String path)
+	{
+		String lowerPath = path.toLowerCase(Locale.ROOT);
+		return lowerPath.endsWith(".zip") || lowerPath.endsWith(".tar") || lowerPath.endsWith(".tar.gz") ||
+			lowerPath.endsWith(".tgz");
+	}
+
+	/**
+	Returns the next ruleset in the archive, or null once there are no more.
+	*/
+	public Entry next() throws IOException
+	{
+		while (true)
+		{
+			String name;
+			InputStream entry;
+			if (zip != null)
+			{
+				ZipEntry zipEntry = zip.getNextEntry();
+				if (zipEntry == null)
+					return null;
+				if (zipEntry.isDirectory())
+					continue;
+				name = zipEntry.getName();
+				entry = new FilterInputStream(zip)
+				{
+					public void close()
+					{
+						//the entry ends where the zip's stream says it does; the zip itself stays open
+					}
+				};
+			}
+			else
+			{
+				TarEntry tarEntry = nextTarEntry();
+				if (tarEntry == null)
+					return null;
+				if (!tarEntry.isFile)
+				{
+					skipFully(in, padded(tarEntry.size));
+					continue;
+				}
+				name = tarEntry.name;
+				entry = new BoundedInputStream(in, tarEntry.size);
+			}
+
+			if (!isText(name))
+			{
+				skipped++;
+				drain(entry);
+				continue;
+			}
+			Reader reader = new BufferedReader(new InputStreamReader(entry, StandardCharsets.UTF_8));
+			String text;
+			if (HtmlText.isHtml(name, ""))
+				text = HtmlText.extract(reader);
+			else
+			{
+				StringBuilder builder = new StringBuilder();
+				char[] chunk = new char[8192];
+				for (int read = reader.read(chunk); read >= 0; read = reader.read(chunk))
+					builder.append(chunk, 0, read);
+				text = builder.toString();
+				if (HtmlText.isHtml(name, text)) //eg: a page saved without an extension
+					text = HtmlText.extract(new StringReader(text));
+			}
+			drain(entry); //HtmlText may stop before the end of a page, and a tar entry is followed by padding
+			return new Entry(path + "/" + name, gameName(name), text);
+		}
+	}
+
+	/**
+	Returns the number of entries skipped so far because they weren't text.
+	*/
+	public int getSkippedCount()
+	{
+		return skipped;
+	}
+
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	//the name of the game of an entry: the archive's file name and the entry's path, without extensions, joined by '-'
+	private String gameName(String name)
+	{
+		String archive = path.substring(path.lastIndexOf('/') + 1);
+		archive = archive.substring(0, archive.indexOf('.') > 0 ? archive.indexOf('.') : archive.length()); //eg: corpus.tar.gz
+		String entry = name.replaceAll("^(\\./|/)+", "");
+		if (entry.lastIndexOf('.') > entry.lastIndexOf('/') + 1)
+			entry = entry.substring(0, entry.lastIndexOf('.'));
+		//the name becomes the name of every output file, so anything that isn't safe in a file name is replaced
+		return (archive + "/" + entry).replaceAll("[^\\p{L}\\p{N}._-]+", "-");
+	}
+
+	private static boolean isText(String name)
+	{
+		String lowerName = name.toLowerCase(Locale.ROOT);
+		String fileName = lowerName.substring(lowerName.lastIndexOf('/') + 1);
+		if (!fileName.contains("."))
+			return true;
+		for (String extension: TEXT_EXTENSIONS)
+		{
+			if (fileName.endsWith(extension))
+				return true;
+		}
+		return false;
+	}
+
+	private void drain(InputStream entry) throws IOException
+	{
+		byte[] chunk = new byte[8192];
+		while (entry.read(chunk) >= 0)
+			;
+		if (entry instanceof BoundedInputStream)
+			skipFully(in, padded(((BoundedInputStream) entry).size) - ((BoundedInputStream) entry).size);
+	}
+
+	//reads the header of the next tar entry, following GNU long names; returns null at the end of the archive
+	private TarEntry nextTarEntry() throws IOException
+	{
+		String longName = null;
+		while (true)
+		{
+			if (!readBlock())
+				return null;
+			if (header[0] == 0) //the archive ends with two empty blocks
+				return null;
+			long size = parseOctal(header, 124, 12);
+			char type = (char) header[156];
+			if (type == 'L') //the data of this entry is the name of the next one
+			{
+				byte[] name = new byte[(int) size];
+				new DataInputStream(in).readFully(name);
+				skipFully(in, padded(size) - size);
+				longName = cString(name, 0, name.length);
+				continue;
+			}
+			String name = longName;
+			if (name == null)
+			{
+				name = cString(header, 0, 100);
+				String prefix = cString(header, 345, 155); //ustar splits long names into a prefix and a name
+				if (header[257] == 'u' && !prefix.isEmpty())
+					name = prefix + "/" + name;
+			}
+			return new TarEntry(name, size, type == '0' || type == 0);
+		}
+	}
+
+	private boolean readBlock() throws IOException
+	{
+		int read = 0;
+		while (read < header.length)
+		{
+			int count = in.read(header, read, header.length - read);
+			if (count < 0)
+				return false;
+			read += count;
+		}
+		return true;
+	}
+
+	private static long parseOctal(byte[] bytes, int offset, int length)
+	{
+		long value = 0;
+		for (int i = offset; i < offset + length && bytes[i] != 0 && bytes[i] != ' '; i++)
+			value = value * 8 + (bytes[i] - '0');
+		return value;
+	}
+
+	private static String cString(byte[] bytes, int offset, int length)
+	{
+		int end = offset;
+		while (end < offset + length && bytes[end] != 0)
+			end++;
+		return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	private static long padded(long size)
+	{
+		return (size + 511) / 512 * 512;
+	}
+
+	private static void skipFully(InputStream in, long count) throws IOException
+	{
+		while (count > 0)
+		{
+			long skipped = in.skip(count);
+			if (skipped <= 0)
+			{
+				if (in.read() < 0)
+					throw new EOFException("Truncated tar archive");
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	/**
+	A ruleset read from an archive.
+	*/
+	public static class Entry
+	{
+		private String name;
+		private String gameName;
+		private String text;
+
+		private Entry(String name, String gameName, String text)
+		{
+			this.name = name;
+			this.gameName = gameName;
+			this.text = text;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		Returns the name of the entry's game, unique within the archive (eg: corpus-pages-checkers for pages/checkers.html in
+		corpus.zip).
+		*/
+		public String getGameName()
+		{
+			return gameName;
+		}
+
+		public String getText()
+		{
+			return text;
+		}
+	}
+
+	private static class TarEntry
+	{
+		private String name;
+		private long size;
+		private boolean isFile;
+
+		private TarEntry(String name, long size, boolean isFile)
+		{
+			this.name = name;
+			this.size = size;
+			this.isFile = isFile;
+		}
+	}
+
+	//the data of one tar entry: the next size bytes of the archive
+	private static class BoundedInputStream extends FilterInputStream
+	{
+		private long size;
+		private long remaining;
+
+		private BoundedInputStream(InputStream in, long size)
+		{
+			super(in);
+			this.size = size;
+			this.remaining = size;
+		}
+
+		public int read() throws IOException
+		{
+			if (remaining == 0)
+				return -1;
+			int c = in.read();
+			if (c >= 0)
+				remaining--;
+			return c;
+		}
+
+		public int read(byte[] buffer, int offset, int length) throws IOException
+		{
+			if (remaining == 0)
+				return -1;
+			int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+			if (count > 0)
+				remaining -= count;
+			return count;
+		}
+
+		public void close()
+		{
+			//the archive stays open
+		}
+	}
+}
@@ -0,0 +1,140 @@
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+A time limit (and cancellation token) for one conversion. The parsers and writers call check() once per sentence (or per piece),
+which throws a DeadlineExceededException once the time limit has passed or cancel() has been called, so a pathological document
+gives its thread back within one sentence's worth of work.
+
+Annotation is a single call into CoreNLP that can't call check(), so while it runs the deadline instead interrupts the annotating
+thread when it expires (see interruptOnExpiry()); CoreNLP's parser gives up when its thread is interrupted.
+*/
+public class Deadline
+{
+	//interrupts threads whose deadlines expire; a single daemon thread is enough, as interrupting is instantaneous
+	private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable ->
+	{
+		Thread thread = new Thread(runnable, "deadline-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static
+	{
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	private final long expiresAt; // System.nanoTime() at which the deadline expires, if bounded
+	private final boolean bounded;
+	private volatile boolean cancelled;
+
+	private Deadline(long expiresAt, boolean bounded)
+	{
+		this.expiresAt = expiresAt;
+		this.bounded = bounded;
+	}
+
+	/**
+	Returns a deadline that expires millis milliseconds from now.
+	*/
+	public static Deadline after(long millis)
+	{
+		return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), true);
+	}
+
+	/**
+	Returns a deadline with no time limit, which only expires if it is cancelled.
+	*/
+	public static Deadline none()
+	{
+		return new Deadline(0, false);
+	}
+
+	/**
+	Expires the deadline immediately.
+	*/
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	public boolean isExpired()
+	{
+		return cancelled || (bounded && System.nanoTime() - expiresAt >= 0);
+	}
+
+	/**
+	Returns the number of milliseconds until the deadline expires (0 if it has expired), or Long.MAX_VALUE if it has no time limit.
+	*/
+	public long remainingMillis()
+	{
+		if (cancelled)
+			return 0;
+		if (!bounded)
+			return Long.MAX_VALUE;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+	}
+
+	/**
+	Throws a DeadlineExceededException if the deadline has expired.
+	*/
+	public void check()
+	{
+		if (isExpired())
+			throw new DeadlineExceededException(cancelled ? "Conversion cancelled" : "Conversion deadline exceeded");
+	}
+
+	/**
+	Interrupts thread when the deadline expires, until the returned Interrupter is released. Releasing it also clears any interrupt
+	it delivered, so the thread (eg: a pooled worker) can go on to its next task normally.
+	*/
+	public Interrupter interruptOnExpiry(Thread thread)
+	{
+		return new Interrupter(thread);
+	}
+
+	public class Interrupter implements AutoCloseable
+	{
+		private Thread thread;
+		private ScheduledFuture<?> scheduled; // the timer task that interrupts thread, or null if the deadline has no time limit
+		private boolean active; // whether thread may still be interrupted; guarded by this
+		private boolean interrupted; // whether thread was interrupted by this; guarded by this
+
+		private Interrupter(Thread thread)
+		{
+			this.thread = thread;
+			this.active = true;
+			if (bounded)
+				scheduled = timer.schedule(this::interrupt, Math.max(0, expiresAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+
+		private synchronized void interrupt()
+		{
+			if (active)
+			{
+				interrupted = true;
+				thread.interrupt();
+			}
+		}
+
+		/**
+		Stops interrupting the thread. Must be called from the thread itself.
+		*/
+		public void close()
+		{
+			synchronized (this)
+			{
+				active = false;
+				if (scheduled != null)
+					scheduled.cancel(false);
+			}
+			if (interrupted)
+				Thread.interrupted(); // clear the interrupt delivered by the timer
+		}
+	}
+}
@@ -0,0 +1,17 @@
+/**
+Thrown by Deadline.check() when a conversion has run out of time or has been cancelled.
+*/
+public class DeadlineExceededException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String message)
+	{
+		super(message);
+	}
+
+	public DeadlineExceededException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+}
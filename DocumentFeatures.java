@@ -0,0 +1,328 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.nlp.dcoref.CorefChain;
+import edu.stanford.nlp.ling.*;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.util.*;
+
+/**
+Everything the board, piece, motion and end parsers need from CoreNLP's annotations of a ruleset (see RulesetFeatures), extracted
+once right after annotation: the text and words of each sentence, its dependencies (in the LIST format the parsers read), the
+numbers NER recognized, the children, parents and paths to the root of every word in the dependency graph, and the antecedent of
+every anaphor.
+
+These are a small fraction of the size of the annotations themselves (which hold every word's CoreLabel, parse trees, several
+dependency graphs and the coreference structures), so once they are extracted the annotations can be dropped (see
+RulesParser.setLowMemory()). As in lemmas[][], sentences and words are indexed from 0.
+*/
+public class DocumentFeatures implements RulesetFeatures
+{
+	private static final int[] NONE = new int[0];
+
+	private String[] texts; //texts[i] is the text of the ith sentence
+	private String[][] words; //words[i][j] is the jth word of the ith sentence
+	private String[][] lemmas; //the lemmas computed by RulesParser.annotate(), indexed like words
+	private String[][] partsOfSpeech; //indexed like words
+	private String[][] dependencies; //dependencies[i] is the dependency graph of the ith sentence, one dependency String per entry
+	private String[][] numbers; //numbers[i][j] is the normalized value of the jth word of the ith sentence if it is a number, or null
+	private int[][][] edgeTargets; //edgeTargets[i][j] holds the dependents of every edge governed by the jth word of the ith sentence
+	private String[][][] edgeRelations; //edgeRelations[i][j][k] is the relation of the edge to edgeTargets[i][j][k]
+	private int[][][] parents; //parents[i][j] holds the governors of the jth word of the ith sentence
+	private int[][][] pathsToRoot; //pathsToRoot[i][j] holds the words on the path from the jth word of the ith sentence to the root
+	private HashMap<Long,String> antecedents; //the antecedent of every anaphor that has one, by key(sentence, word)
+
+	private DocumentFeatures(int sentenceCount)
+	{
+		texts = new String[sentenceCount];
+		words = new String[sentenceCount][];
+		dependencies = new String[sentenceCount][];
+		numbers = new String[sentenceCount][];
+		edgeTargets = new int[sentenceCount][][];
+		edgeRelations = new String[sentenceCount][][];
+		parents = new int[sentenceCount][][];
+		pathsToRoot = new int[sentenceCount][][];
+		antecedents = new HashMap<Long,String>();
+	}
+
+	/**
+	Extracts the features of an annotated ruleset, checking deadline once per sentence.
+	*/
+	public static DocumentFeatures extract(List<CoreMap> sentences, Map<Integer, CorefChain> corefChains, String[][] lemmas,
+		String[][] partsOfSpeech, Deadline deadline)
+	{
+		DocumentFeatures features = new DocumentFeatures(sentences.size());
+		features.lemmas = lemmas;
+		features.partsOfSpeech = partsOfSpeech;
+		for (int i = 0; i < sentences.size(); i++)
+		{
+			deadline.check();
+			CoreMap sentence = sentences.get(i);
+			features.texts[i] = sentence.get(CoreAnnotations.TextAnnotation.class);
+
+			List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+			features.words[i] = new String[tokens.size()];
+			features.numbers[i] = new String[tokens.size()];
+			for (int j = 0; j < tokens.size(); j++)
+			{
+				features.words[i][j] = tokens.get(j).value(); //as the dependencies name it
+				features.numbers[i][j] = tokens.get(j).get(CoreAnnotations.NormalizedNamedEntityTagAnnotation.class);
+			}
+
+			SemanticGraph graph = sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
+			features.dependencies[i] = graph.toString(SemanticGraph.OutputFormat.LIST).split("\n");
+			features.extractGraph(i, graph, tokens.size());
+		}
+		if (corefChains != null)
+			features.extractAntecedents(corefChains, lemmas, partsOfSpeech);
+		return features;
+	}
+
+	private void extractGraph(int i, SemanticGraph graph, int wordCount)
+	{
+		List<List<Integer>> targets = new ArrayList<List<Integer>>(wordCount);
+		List<List<String>> relations = new ArrayList<List<String>>(wordCount);
+		List<List<Integer>> governors = new ArrayList<List<Integer>>(wordCount);
+		for (int j = 0; j < wordCount; j++)
+		{
+			targets.add(new ArrayList<Integer>(0));
+			relations.add(new ArrayList<String>(0));
+			governors.add(new ArrayList<Integer>(0));
+		}
+		for (SemanticGraphEdge edge: graph.edgeIterable())
+		{
+			int governor = edge.getGovernor().index() - 1; //-1 because SemanticGraph nodes are indexed from 1
+			int dependent = edge.getDependent().index() - 1;
+			targets.get(governor).add(dependent);
+			relations.get(governor).add(edge.getRelation().toString().intern());
+			if (!governors.get(dependent).contains(governor))
+				governors.get(dependent).add(governor);
+		}
+
+		edgeTargets[i] = new int[wordCount][];
+		edgeRelations[i] = new String[wordCount][];
+		parents[i] = new int[wordCount][];
+		pathsToRoot[i] = new int[wordCount][];
+		for (int j = 0; j < wordCount; j++)
+		{
+			edgeTargets[i][j] = toArray(targets.get(j));
+			edgeRelations[i][j] = relations.get(j).toArray(new String[relations.get(j).size()]);
+			parents[i][j] = toArray(governors.get(j));
+			pathsToRoot[i][j] = NONE;
+		}
+		for (IndexedWord word: graph.vertexListSorted())
+		{
+			List<IndexedWord> path = graph.getPathToRoot(word);
+			int[] indices = new int[path.size()];
+			for (int k = 0; k < indices.length; k++)
+				indices[k] = path.get(k).index() - 1;
+			pathsToRoot[i][word.index() - 1] = indices;
+		}
+	}
+
+	/**
+	Determines the antecedent of every anaphor (see RulesParser.determineAntecedent()): for each mention, the head word of the
+	representative mention of its chain if that is a noun, otherwise the first noun in the representative mention. The first chain
+	(in CoreNLP's order) that gives an anaphor an antecedent wins.
+	*/
+	private void extractAntecedents(Map<Integer, CorefChain> corefChains, String[][] lemmas, String[][] partsOfSpeech)
+	{
+		for (Map.Entry<Integer, CorefChain> entry: corefChains.entrySet())
+		{
+			CorefChain.CorefMention antecedentMention = entry.getValue().getRepresentativeMention();
+			int sentence = antecedentMention.sentNum - 1; //-1 because corefchain sentence and word indices start at 1
+			String antecedent = null;
+			if (partsOfSpeech[sentence][antecedentMention.headIndex-1].charAt(0) == 'N')
+				antecedent = lemmas[sentence][antecedentMention.headIndex-1];
+			else
+			{
+				for (int j = antecedentMention.startIndex - 1; j < antecedentMention.endIndex - 1; j++)
+				{
+					if (partsOfSpeech[sentence][j].charAt(0) == 'N')
+					{
+						antecedent = lemmas[sentence][j];
+						break;
+					}
+				}
+			}
+			if (antecedent == null)
+				continue;
+
+			for (CorefChain.CorefMention mention: entry.getValue().getMentionsInTextualOrder())
+				antecedents.putIfAbsent(key(mention.sentNum - 1, mention.headIndex - 1), antecedent);
+		}
+	}
+
+	private static long key(int sentenceIndex, int wordIndex)
+	{
+		return ((long) sentenceIndex << 32) | wordIndex;
+	}
+
+	private static int[] toArray(List<Integer> list)
+	{
+		if (list.isEmpty())
+			return NONE;
+		int[] array = new int[list.size()];
+		for (int k = 0; k < array.length; k++)
+			array[k] = list.get(k);
+		return array;
+	}
+
+	private static boolean contains(int[] array, int value)
+	{
+		return contains(array, array.length, value);
+	}
+
+	//checks the first length elements of array only
+	private static boolean contains(int[] array, int length, int value)
+	{
+		for (int k = 0; k < length; k++)
+		{
+			if (array[k] == value)
+				return true;
+		}
+		return false;
+	}
+
+	public int getSentenceCount()
+	{
+		return texts.length;
+	}
+
+	public int getWordCount(int sentenceIndex)
+	{
+		return words[sentenceIndex].length;
+	}
+
+	public String getWord(int sentenceIndex, int wordIndex)
+	{
+		return words[sentenceIndex][wordIndex];
+	}
+
+	public String getLemma(int sentenceIndex, int wordIndex)
+	{
+		return lemmas[sentenceIndex][wordIndex];
+	}
+
+	public String getPartOfSpeech(int sentenceIndex, int wordIndex)
+	{
+		return partsOfSpeech[sentenceIndex][wordIndex];
+	}
+
+	public String getText(int sentenceIndex)
+	{
+		return texts[sentenceIndex];
+	}
+
+	/**
+	Returns the dependencies of a sentence as a String[], each entry containing a single dependency String of the form
+	"dependency(word1-index1, word2-index2)" (see RulesParser.isolateIndexFromDependency()). The first entry is the root.
+	*/
+	public String[] getDependencies(int sentenceIndex)
+	{
+		return dependencies[sentenceIndex];
+	}
+
+	/**
+	Returns the value NER normalized a word to if it recognized it as a number (eg: "8" for "eight"), or null.
+	*/
+	public String getNumber(int sentenceIndex, int wordIndex)
+	{
+		return numbers[sentenceIndex][wordIndex];
+	}
+
+	/**
+	Returns the indices of the words that depend on a word in the dependency graph, or none if the word isn't in the graph.
+	*/
+	public int[] getChildren(int sentenceIndex, int wordIndex)
+	{
+		int[] targets = edgeTargets[sentenceIndex][wordIndex];
+		int[] children = new int[targets.length];
+		int count = 0;
+		for (int target: targets)
+		{
+			if (!contains(children, count, target))
+				children[count++] = target;
+		}
+		return Arrays.copyOf(children, count);
+	}
+
+	/**
+	Returns the indices of the words that depend on a word by a given relation (eg: "nummod", or
+	UniversalEnglishGrammaticalRelations.NUMERIC_MODIFIER.toString()).
+	*/
+	public int[] getChildren(int sentenceIndex, int wordIndex, String relation)
+	{
+		int[] targets = edgeTargets[sentenceIndex][wordIndex];
+		String[] relations = edgeRelations[sentenceIndex][wordIndex];
+		int[] children = new int[targets.length];
+		int count = 0;
+		for (int k = 0; k < targets.length; k++)
+		{
+			if (relations[k].equals(relation) && !contains(children, count, targets[k]))
+				children[count++] = targets[k];
+		}
+		return Arrays.copyOf(children, count);
+	}
+
+	public int getEdgeCount(int sentenceIndex, int wordIndex)
+	{
+		return edgeTargets[sentenceIndex][wordIndex].length;
+	}
+
+	public int getEdgeTarget(int sentenceIndex, int wordIndex, int k)
+	{
+		return edgeTargets[sentenceIndex][wordIndex][k];
+	}
+
+	public String getEdgeRelation(int sentenceIndex, int wordIndex, int k)
+	{
+		return edgeRelations[sentenceIndex][wordIndex][k];
+	}
+
+	/**
+	Returns the words on the path from a word to the root of the dependency graph, which dominates() searches (for FeatureStore,
+	which stores the paths). The array must not be modified.
+	*/
+	int[] getPathToRoot(int sentenceIndex, int wordIndex)
+	{
+		return pathsToRoot[sentenceIndex][wordIndex];
+	}
+
+	/**
+	Determines if index1 dominates index2 in the dependency graph of a sentence (see RulesParser.dominates()).
+	*/
+	public boolean dominates(int sentenceIndex, int index1, int index2)
+	{
+		return contains(pathsToRoot[sentenceIndex][index2], index1);
+	}
+
+	/**
+	Determines if index1 and index2 depend on the same word in the dependency graph of a sentence (see RulesParser.isSibling()).
+	*/
+	public boolean isSibling(int sentenceIndex, int index1, int index2)
+	{
+		if (index1 == index2)
+			return false;
+		for (int parent: parents[sentenceIndex][index1])
+		{
+			if (contains(edgeTargets[sentenceIndex][parent], index2))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	Returns the antecedent of an anaphor (see RulesParser.determineAntecedent()), or an empty string if it has none.
+	*/
+	public String getAntecedent(int sentenceIndex, int wordIndex)
+	{
+		String antecedent = antecedents.get(key(sentenceIndex, wordIndex));
+		return antecedent == null ? "" : antecedent;
+	}
+}
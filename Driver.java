@@ -1,11 +1,535 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class Driver
 {
+	private static final int SENTENCE_CACHE_SIZE = 100000; //sentences kept by --sentence-cache
+	private static final int NEAR_DUPLICATE_MODELS = 10000; //models kept for reuse by --near-duplicates
+	private static final long WATCH_DEBOUNCE_MILLIS = 300; //how long --watch waits for a burst of saves to end
+	private static final String SERVE_USAGE = "Usage: Driver --serve [port] [--timeout seconds] [--queue n], where n > 0";
+
+	/**
+	Usage:
+	Driver [--json] [--archive bundle.zip | --journal batch.journal] [--timeout seconds] [--low-memory] [--sentence-cache]
+	  [--near-duplicates similarity] [--debug] [--annotators n | --workers n [--worker-heap size]] ruleset.txt... corpus.zip...
+	  parses each ruleset, writes its ZRF to zrf/<name>.zrf, and saves its compiled GameModel to models/<name>.model
+	  rulesets may be HTML pages (reduced to their text by HtmlText), and zip, tar or gzipped tar archives (.zip, .tar, .tar.gz,
+	  .tgz) are read as corpora: every text or HTML entry is streamed into the batch without being extracted, and its game is named
+	  after the archive and the entry's path (eg: corpus-site1-index for site1/index.html in corpus.zip; see CorpusReader;
+	  corpora can't be sharded with --workers)
+	  --json also exports each GameModel as JSON to json/<name>.json
+	  --archive writes all of the above (and a report of the run, report.txt) into a single zip archive instead of separate files
+	  --timeout limits the parsing of each ruleset; rulesets that run out of time produce partial outputs, or none if they run out
+	  during annotation
+	  --annotators sets the number of rulesets annotated at once (one per processor by default); see BatchPipeline
+	  --workers n converts the rulesets in n separate worker JVMs instead (each with a heap of --worker-heap, eg: 2g, if given);
+	  see ShardCoordinator
+	  --journal records every ruleset converted in full in a BatchJournal, and skips rulesets it records as converted from the same
+	  text into the same outputs (with or without --json) that are still intact, so that a batch that was interrupted picks up
+	  where it left off when it is run again; rulesets that ran out of time are converted again
+	  --low-memory drops the CoreNLP annotations of each ruleset as soon as the parsers' features have been extracted from them
+	  --sentence-cache annotates each sentence that appears in more than one ruleset only once, and reports how many were found
+	  in the SentenceCache (with --workers, each worker has its own cache and reports on its standard error)
+	  --near-duplicates reuses the model of a ruleset converted earlier in the batch for any ruleset whose estimated similarity to it
+	  is at least similarity (eg: 0.9) and that has the same paragraphs, in any order; near-duplicates that add or remove
+	  paragraphs are converted, with --sentence-cache implied so that only their new sentences are annotated (see
+	  NearDuplicateIndex; with --workers, each worker only finds the near-duplicates among the rulesets it converts)
+	  --debug prints every sentence of each ruleset and what the parsers find in it (with --workers, on each worker's standard
+	  error); by default parsing prints nothing
+	Driver --memory-report ruleset.txt...
+	  reports how much heap each ruleset holds on to with its annotations and with --low-memory, and the peak while it is
+	  annotated, which --low-memory doesn't change (see MemoryReport)
+	Driver --store corpus.features ruleset.txt...
+	  annotates each ruleset and writes the words, dependencies and coreference links of all of them to a FeatureStore
+	Driver --store-stats corpus.features [lemma...]
+	  maps a FeatureStore and reports its size, and how many words in it have each lemma given
+	Driver --from-store corpus.features [name...]
+	  converts the rulesets stored in a FeatureStore (only the named ones, if any are given) straight from the store, without
+	  annotating anything, and writes their outputs as a batch does
+	Driver --from-model models/<name>.model...
+	  regenerates the ZRF of each saved GameModel without parsing anything
+	Driver --extract bundle.zip name...
+	  extracts the ZRF of each named game from an archive written with --archive to zrf/<name>.zrf
+	Driver --watch directory [--json]
+	  converts every ruleset (*.txt) in directory, then converts each ruleset again whenever it is saved, re-annotating only the
+	  sentences that changed, until the process is killed (see RulesetWatcher)
+	Driver --serve [port] [--timeout seconds] [--queue n]
+	  runs a ConversionServer on the loopback interface (port 7171 by default) until the process is killed
+	  --timeout limits the parsing of each request, as for a batch; by default parses have no time limit
+	  --queue sets the number of requests that may wait for a parse thread (16 per processor by default) before more are turned
+	  away with 503
+	Outside of archives, the hashes of all outputs are kept in outputs.sha256; outputs whose content has not changed since the last
+	run are not rewritten.
+	*/
 	public static void main(String[] args)
 	{
-		RulesParser parser = new RulesParser(args[0]);
-		parser.parse();
-		ZRFWriter writer = parser.makeZRFWriter();
-		writer.write();
-		
+		if (args.length > 0 && args[0].equals("--serve"))
+		{
+			try
+			{
+				int parseThreads = Runtime.getRuntime().availableProcessors();
+				int port = 7171;
+				long timeoutMillis = 0;
+				int queueCapacity = parseThreads * 16;
+				try
+				{
+					for (int i = 1; i < args.length; i++)
+					{
+						if (args[i].equals("--timeout") && i + 1 < args.length)
+							timeoutMillis = (long) (Double.parseDouble(args[++i]) * 1000);
+						else if (args[i].equals("--queue") && i + 1 < args.length)
+							queueCapacity = Integer.parseInt(args[++i]);
+						else if (args[i].equals("--timeout") || args[i].equals("--queue"))
+							throw new IllegalArgumentException(args[i] + " needs a value");
+						else if (i == 1 && !args[i].startsWith("--"))
+							port = Integer.parseInt(args[i]);
+						else
+							throw new IllegalArgumentException("unexpected argument " + args[i]);
+					}
+					if (port < 0 || port > 65535 || timeoutMillis < 0 || queueCapacity <= 0)
+						throw new IllegalArgumentException("port, timeout or queue out of range");
+				}
+				catch (IllegalArgumentException e) //including the NumberFormatException of a value that isn't a number
+				{
+					System.err.println("Driver --serve: " + e.getMessage());
+					System.err.println(SERVE_USAGE);
+					System.exit(1);
+				}
+				ConversionServer server = new ConversionServer(port, parseThreads, queueCapacity, 1.0, timeoutMillis);
+				server.start();
+				System.out.println("Listening on 127.0.0.1:" + server.getPort());
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		TextBuffer buffer = new TextBuffer(); //every output is assembled in the same buffer, one at a time
+
+		if (args.length > 1 && args[0].equals("--extract"))
+		{
+			try (ArchiveReader archive = new ArchiveReader(args[1]))
+			{
+				for (int i = 2; i < args.length; i++)
+				{
+					buffer.clear();
+					archive.extract(args[i], "zrf", buffer.asOutputStream());
+					buffer.publish(ArchiveWriter.entryName(args[i], "zrf"));
+				}
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		if (args.length > 1 && args[0].equals("--store"))
+		{
+			try (FeatureStore.Writer store = FeatureStore.create(args[1]))
+			{
+				for (int i = 2; i < args.length; i++)
+				{
+					RulesParser parser = new RulesParser(args[i]);
+					parser.setLowMemory(true); //the store only needs the features
+					parser.loadText();
+					parser.annotate();
+					store.add(args[i], parser);
+				}
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		if (args.length > 1 && args[0].equals("--store-stats"))
+		{
+			try
+			{
+				FeatureStore store = FeatureStore.open(args[1]);
+				System.out.println(store.getDocumentCount() + " documents, " + store.getTokenCount() + " words, " +
+					store.getEdgeCount() + " dependencies");
+				for (int i = 2; i < args.length; i++)
+					System.out.println(args[i] + ": " + store.countLemma(args[i]));
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		OutputManifest manifest;
+		try
+		{
+			manifest = new OutputManifest("outputs.sha256");
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("--memory-report"))
+		{
+			MemoryReport report = new MemoryReport();
+			for (int i = 1; i < args.length; i++)
+			{
+				try
+				{
+					System.out.println(report.measure(args[i]));
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+			System.out.println(report.getSummary());
+			return;
+		}
+
+		if (args.length > 1 && args[0].equals("--watch"))
+		{
+			boolean json = args.length > 2 && args[2].equals("--json");
+			try
+			{
+				new RulesetWatcher(args[1], WATCH_DEBOUNCE_MILLIS, json, manifest).run();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("--from-model"))
+		{
+			for (int i = 1; i < args.length; i++)
+			{
+				try
+				{
+					ZRFWriter writer = new ZRFWriter(GameModel.load(args[i]), buffer);
+					writer.publishTo("zrf", manifest);
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+			saveManifest(manifest);
+			return;
+		}
+
+		if (args.length > 1 && args[0].equals("--from-store"))
+		{
+			try
+			{
+				FeatureStore store = FeatureStore.open(args[1]);
+				List<Integer> documents = new ArrayList<Integer>();
+				for (int i = 2; i < args.length; i++)
+				{
+					int d = store.indexOf(args[i]);
+					if (d < 0)
+						System.err.println(args[i] + " is not in " + args[1]);
+					else
+						documents.add(d);
+				}
+				if (args.length == 2)
+				{
+					for (int d = 0; d < store.getDocumentCount(); d++)
+						documents.add(d);
+				}
+				for (int d: documents)
+				{
+					RulesParser parser = RulesParser.fromFeatures(store.getName(d), store.getDocument(d));
+					parser.extract();
+					for (ModelWriter writer: makeWriters(parser.getGameModel(), buffer, false))
+						writer.publish(writer.pathIn(outputDirectory(writer)), manifest);
+				}
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			saveManifest(manifest);
+			return;
+		}
+
+		boolean json = false;
+		long timeoutMillis = 0;
+		int annotators = Runtime.getRuntime().availableProcessors();
+		String archivePath = null;
+		int workers = 0;
+		String workerHeap = null;
+		boolean worker = false;
+		String journalPath = null;
+		boolean lowMemory = false;
+		boolean cacheSentences = false;
+		double nearDuplicateSimilarity = 0;
+		boolean debug = false;
+		List<String> fileNames = new ArrayList<String>();
+		List<String> corpora = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("--json"))
+				json = true;
+			else if (args[i].equals("--archive") && i + 1 < args.length)
+				archivePath = args[++i];
+			else if (args[i].equals("--timeout") && i + 1 < args.length)
+				timeoutMillis = (long) (Double.parseDouble(args[++i]) * 1000);
+			else if (args[i].equals("--annotators") && i + 1 < args.length)
+				annotators = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--workers") && i + 1 < args.length)
+				workers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--worker-heap") && i + 1 < args.length)
+				workerHeap = args[++i];
+			else if (args[i].equals("--worker"))
+				worker = true;
+			else if (args[i].equals("--journal") && i + 1 < args.length)
+				journalPath = args[++i];
+			else if (args[i].equals("--low-memory"))
+				lowMemory = true;
+			else if (args[i].equals("--sentence-cache"))
+				cacheSentences = true;
+			else if (args[i].equals("--near-duplicates") && i + 1 < args.length)
+				nearDuplicateSimilarity = Double.parseDouble(args[++i]);
+			else if (args[i].equals("--debug"))
+				debug = true;
+			else if (CorpusReader.isCorpus(args[i]))
+				corpora.add(args[i]);
+			else
+				fileNames.add(args[i]);
+		}
+
+		NearDuplicateIndex nearDuplicates = null;
+		if (nearDuplicateSimilarity > 0)
+		{
+			nearDuplicates = new NearDuplicateIndex(nearDuplicateSimilarity, NEAR_DUPLICATE_MODELS);
+			cacheSentences = true;
+		}
+		SentenceCache sentenceCache = cacheSentences ? new SentenceCache(SENTENCE_CACHE_SIZE) : null;
+
+		if (worker)
+		{
+			try
+			{
+				ShardWorker shardWorker = new ShardWorker(json, timeoutMillis, lowMemory, sentenceCache, archivePath, manifest);
+				shardWorker.setNearDuplicates(nearDuplicates);
+				if (debug)
+					shardWorker.setDebugOutput(System.out); //the worker has pointed System.out at its standard error
+				shardWorker.run();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				System.exit(1);
+			}
+			return;
+		}
+
+		BatchJournal journal = null;
+		if (journalPath != null && archivePath != null)
+			System.out.println("--journal is ignored with --archive, as an archive is only written once the whole batch is done");
+		else if (journalPath != null)
+		{
+			try
+			{
+				journal = new BatchJournal(journalPath, json ? "model,zrf,json" : "model,zrf", 64, 1000);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				return;
+			}
+		}
+
+		if (workers > 0 && !corpora.isEmpty())
+		{
+			System.out.println("Corpora can't be sharded across workers; converting them with --annotators instead");
+			workers = 0;
+		}
+		if (workers > 0)
+		{
+			List<String> workerOptions = new ArrayList<String>();
+			if (json)
+				workerOptions.add("--json");
+			if (lowMemory)
+				workerOptions.add("--low-memory");
+			if (cacheSentences)
+				workerOptions.add("--sentence-cache");
+			if (debug)
+				workerOptions.add("--debug");
+			if (nearDuplicates != null)
+			{
+				workerOptions.add("--near-duplicates");
+				workerOptions.add(Double.toString(nearDuplicateSimilarity));
+			}
+			if (timeoutMillis > 0)
+			{
+				workerOptions.add("--timeout");
+				workerOptions.add(Double.toString(timeoutMillis / 1000.0));
+			}
+			//a ruleset that takes far longer than its deadline allows has hung its worker somewhere that doesn't check it
+			long stallMillis = timeoutMillis > 0 ? 2 * timeoutMillis + 60000 : 30 * 60000;
+			ShardCoordinator coordinator = new ShardCoordinator(workers, workerOptions, workerHeap, stallMillis, 2);
+			coordinator.setJournal(journal);
+			try
+			{
+				coordinator.run(fileNames, manifest, archivePath);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				closeJournal(journal, manifest);
+				return;
+			}
+			System.out.print(coordinator.getReport());
+			closeJournal(journal, manifest);
+			saveManifest(manifest);
+			return;
+		}
+
+		try
+		{
+			ArchiveWriter archive = archivePath != null ? new ArchiveWriter(archivePath) : null;
+			TextBuffer report = new TextBuffer(); //one line per ruleset converted into the archive; guarded by itself
+			boolean exportJSON = json;
+			ThreadLocal<TextBuffer> buffers = ThreadLocal.withInitial(TextBuffer::new); //one buffer per write thread
+
+			//annotated documents are the large ones; with queues of annotators documents, at most 2 * annotators + 1 of them are held
+			//at once: one finished by each annotator (and waiting to be handed on), annotators queued, and one being extracted
+			BatchPipeline pipeline = new BatchPipeline(1, annotators, 1, 1, annotators, timeoutMillis);
+			pipeline.setJournal(journal);
+			pipeline.setLowMemory(lowMemory);
+			pipeline.setSentenceCache(sentenceCache);
+			pipeline.setNearDuplicates(nearDuplicates);
+			if (debug)
+				pipeline.setDebugOutput(System.out);
+			pipeline.run(fileNames, corpora, (fileName, model) ->
+			{
+				TextBuffer output = buffers.get();
+				Map<String,String> outputs = new LinkedHashMap<String,String>();
+				for (ModelWriter writer: makeWriters(model, output, exportJSON))
+				{
+					if (archive != null)
+						archive.add(writer);
+					else
+					{
+						String path = writer.pathIn(outputDirectory(writer));
+						writer.publish(path, manifest);
+						outputs.put(path, manifest.getHash(path));
+					}
+				}
+				if (archive != null)
+				{
+					synchronized (report)
+					{
+						appendReportLine(report, model, fileName, output.length());
+					}
+				}
+				return outputs;
+			});
+			System.out.print(pipeline.getReport());
+			if (sentenceCache != null)
+				System.out.println(sentenceCache.getReport());
+
+			if (archive != null)
+			{
+				archive.add("report.txt", report);
+				archive.close();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			closeJournal(journal, manifest);
+			return;
+		}
+		closeJournal(journal, manifest);
+		saveManifest(manifest);
 	}
-}
\ No newline at end of file
+
+	/**
+	Closes the journal of a batch, if it has one, and records the outputs of the rulesets it skipped in the manifest, as they are
+	still outputs of the batch.
+	*/
+	private static void closeJournal(BatchJournal journal, OutputManifest manifest)
+	{
+		if (journal == null)
+			return;
+		for (String fileName: journal.getSkipped())
+		{
+			for (Map.Entry<String,String> output: journal.getOutputs(fileName).entrySet())
+				manifest.record(output.getKey(), output.getValue(), false);
+		}
+		try
+		{
+			journal.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	Returns the writers of every output of a model, all rendering into buffer: its binary model, its JSON if json is set, and its
+	ZRF, which comes last so that buffer holds the ZRF once they have all been rendered in turn.
+	*/
+	static List<ModelWriter> makeWriters(GameModel model, TextBuffer buffer, boolean json)
+	{
+		List<ModelWriter> writers = new ArrayList<ModelWriter>();
+		writers.add(new BinaryModelWriter(model, buffer));
+		if (json)
+			writers.add(new JSONWriter(model, buffer));
+		writers.add(new ZRFWriter(model, buffer));
+		return writers;
+	}
+
+	/**
+	Returns the directory an output is published to outside of archives, which is also its directory inside them.
+	*/
+	static String outputDirectory(ModelWriter writer)
+	{
+		return ModelWriter.directoryOf(writer.getExtension());
+	}
+
+	/**
+	Appends the line of an archive's report.txt describing one ruleset.
+	*/
+	static void appendReportLine(TextBuffer report, GameModel model, String fileName, int zrfBytes)
+	{
+		report.append(model.getName()).append('\t').append(fileName).append('\t');
+		report.append(model.getPieceCount()).append(" pieces\t");
+		report.append(model.getEndConditionCount()).append(" end conditions\t");
+		report.append(zrfBytes).append(" bytes of ZRF").newLine();
+	}
+
+	private static void saveManifest(OutputManifest manifest)
+	{
+		try
+		{
+			manifest.save();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		System.out.println("Outputs: " + manifest.getReport());
+	}
+}
@@ -1,12 +1,7 @@
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Set;
 
 import edu.stanford.nlp.ling.*;
-import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphEdge;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.trees.*;
 import edu.stanford.nlp.util.*;
 
@@ -14,20 +9,24 @@ public class EndParser
 {
 
 	private RulesParser parent;
-	private List<CoreMap> sentences;
+	private RulesetFeatures features; //everything the parser needs from the annotations of the text
 	private String[][] lemmas; //lemmas[i][j] holds the lemma of the jth word in the ith sentence of the text
 	private String[][] partsOfSpeech; //partsOfSpeech[i][j] holds the POS of the jth word in the ith sentence of the text
+	private Deadline deadline; //checked once per sentence, so that a conversion that runs out of time stops promptly
+	private ConceptTagger concepts; //concepts of each word of the text, including which words are piece names
 
 	private ArrayList<Piece> pieceTypes;
 
 	private ArrayList<EndCondition> endConditions;
 
-	public EndParser(RulesParser parent, List<CoreMap> sentences, String[][] lemmas, String[][] partsOfSpeech, ArrayList<Piece> pieceTypes)
+	public EndParser(RulesParser parent, RulesetFeatures features, String[][] lemmas, String[][] partsOfSpeech, ArrayList<Piece> pieceTypes)
 	{
 		this.parent = parent;
-		this.sentences = sentences;
+		this.features = features;
 		this.lemmas = lemmas;
 		this.partsOfSpeech = partsOfSpeech;
+		this.concepts = parent.getConceptTagger();
+		this.deadline = parent.getDeadline();
 		this.pieceTypes = pieceTypes;
 
 		this.endConditions = new ArrayList<EndCondition>(1);
@@ -50,8 +49,9 @@ public class EndParser
 		the sentence is determined to potentially describe as the value corresponding to each key. */
 
 		HashMap<Integer,String> endConditionSentences = new HashMap<Integer,String>();
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
+			deadline.check();
 			for (int j = 0; j < lemmas[i].length; j++)
 			{
 				String lemma = lemmas[i][j];
@@ -61,15 +61,15 @@ public class EndParser
 				{
 					if (lemma.equals("win"))
 						endConditionSentences.put(i, EndCondition.WIN);
-					else if (pos.charAt(0) == 'N' && (RulesParser.isSynonymOf("objective", lemma) || RulesParser.isSynonymOf("goal",lemma)))
+					else if (pos.charAt(0) == 'N' && concepts.has(i, j, ConceptTagger.GOAL))
 						endConditionSentences.put(i, EndCondition.WIN);
 					else if (lemma.equals("lose"))
 						endConditionSentences.put(i, EndCondition.LOSE);
-					else if (pos.charAt(0) == 'N' && RulesParser.isSynonymOf("tie", lemma, 5)) //5 is wordnet index of "tie" relating to games
+					else if (pos.charAt(0) == 'N' && concepts.has(i, j, ConceptTagger.TIE))
 						endConditionSentences.put(i, EndCondition.DRAW);
 					else if (pos.charAt(0) == 'N' && lemma.equals("stalemate"))
 						endConditionSentences.put(i, EndCondition.DRAW);
-					else if (pos.charAt(0) == 'V' && RulesParser.isSynonymOf("end", lemma))
+					else if (pos.charAt(0) == 'V' && concepts.has(i, j, ConceptTagger.END))
 						endConditionSentences.put(i, EndCondition.LOSE); 
 				}
 			}
@@ -105,9 +105,7 @@ public class EndParser
 			if (!endConditionSentences.containsKey(sentenceIndex-1))
 			{
 				//dependencies for sentenceIndexth sentence as a String[], each entry containing a single dependency String
-				String[] dependencies = sentences.get(sentenceIndex).get(
-					SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-					SemanticGraph.OutputFormat.LIST).split("\n");
+				String[] dependencies = features.getDependencies(sentenceIndex);
 				for (int j = 1; j < dependencies.length; j++)
 				{
 					String d = dependencies[j];
@@ -122,12 +120,10 @@ public class EndParser
 					}
 				}
 			}
-			if (!endConditionSentences.containsKey(sentenceIndex+1) && sentenceIndex+1 < sentences.size())
+			if (!endConditionSentences.containsKey(sentenceIndex+1) && sentenceIndex+1 < features.getSentenceCount())
 			{
 				//dependencies for sentenceIndex+1th sentence as a String[], each entry containing a single dependency String
-				String[] dependencies = sentences.get(sentenceIndex+1).get(
-					SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-					SemanticGraph.OutputFormat.LIST).split("\n");
+				String[] dependencies = features.getDependencies(sentenceIndex+1);
 				for (int j = 1; j < dependencies.length; j++)
 				{
 					String d = dependencies[j];
@@ -196,12 +192,9 @@ public class EndParser
 		 - (eg: "When all of the other player's pieces are captured" "When you have blocked all the opponent's pieces") */
 		for (int i: endConditionSentences.keySet())
 		{
-			//current sentence
-			CoreMap sentence = sentences.get(i);
-			//semantic dependency graph of current sentence
-			SemanticGraph graph = sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
+			deadline.check();
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = graph.toString(SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			boolean isWin = false; // whether or not this sentence describes a win condition
 			boolean isLose = false; // whether or not this sentence describes a lose condition
@@ -224,11 +217,6 @@ public class EndParser
 
 			int quantifier = -1;
 
-			ArrayList<Integer> negatedWords = new ArrayList<Integer>(1); //list of all words directly governing a negation word
-			List<SemanticGraphEdge> negativeEdges = graph.findAllRelns(UniversalEnglishGrammaticalRelations.NEGATION_MODIFIER);
-			for (SemanticGraphEdge edge: negativeEdges)
-				negatedWords.add(edge.getGovernor().index()-1);
-
 			//iterate over all dependencies
 			for (int j = 1; j < dependencies.length; j++)
 			{
@@ -244,10 +232,10 @@ public class EndParser
 				if (lemma1.equals("move") && pos1.charAt(0) == 'V')
 				{
 					// check for the verb "move" being negated
-					if (negatedWords.contains(index1))
+					if (concepts.has(i, index1, ConceptTagger.NEGATED))
 						isStalemated = true;
 					//check for a modifier or argument of the verb being negated
-					else if (negatedWords.contains(index2))
+					else if (concepts.has(i, index2, ConceptTagger.NEGATED))
 						isStalemated = true;
 					//check for the verb "move" being dominated by the verb "prevent"
 					else if (preventInd != -1 && parent.dominates(i, preventInd, index1))
@@ -268,10 +256,10 @@ public class EndParser
 				else if (lemma2.equals("move") && pos2.charAt(0) == 'N') 
 				{
 					//check for the noun "move" being negated
-					if (negatedWords.contains(index2))
+					if (concepts.has(i, index2, ConceptTagger.NEGATED))
 						isStalemated = true;
 					// check for the verb taking "move" as an argument being negated
-					else if (negatedWords.contains(index1))
+					else if (concepts.has(i, index1, ConceptTagger.NEGATED))
 						isStalemated = true;
 
 					/* If either of these checks worked, then isStalemated is true; if so, we now have to check any 
@@ -284,12 +272,12 @@ public class EndParser
 				else if (lemma1.equals("move") && pos1.charAt(0) == 'N')
 				{
 					//check for the modifier of the noun "move" being negated
-					if (negatedWords.contains(index2))
+					if (concepts.has(i, index2, ConceptTagger.NEGATED))
 						isStalemated = true;
 					//we don't have to check if the noun "move" is negated, that's already checked in the previous if block
 				}
 				//check for synonyms of the word "prevent"
-				else if (RulesParser.isSynonymOf("prevent", lemma1))
+				else if (concepts.has(i, index1, ConceptTagger.PREVENT))
 					preventInd = index1;
 				// check for a verb taking a DP headed by "all" as an argument
 				else if (pos1.charAt(0) == 'V' && pos2.equals("DT") && lemma2.equals("all"))
@@ -300,11 +288,11 @@ public class EndParser
 						isCaptureAll = true;
 					/* if the verb is any synonym of "block", set isBlockAll true (if isAllPieces is also true,
 					isStalemated will be set true */
-					else if (RulesParser.isSynonymOf("block", lemma1))
+					else if (concepts.has(i, index1, ConceptTagger.BLOCK))
 						isBlockAll = true;
 				}
 				//check for a DP headed by "all" and taking a piece name as its complement
-				else if (pos1.equals("DT") && lemma1.equals("all") && isPieceName(lemma2))
+				else if (pos1.equals("DT") && lemma1.equals("all") && isPieceName(i, index2))
 				{
 					//set is all pieces true; the check for "dep(" is if CoreNLP fails to figure out the phrase structure
 					if (d.contains("nmod:of") || d.contains("dep("))
@@ -316,7 +304,7 @@ public class EndParser
 				}
 				/* check for a DP headed by "all" and taking a piece name as its complement (this is only if CoreNLP really fails to 
 				figure out the phrase structure) */
-				else if (d.contains("dep") && pos2.equals("DT") && lemma2.equals("all") && isPieceName(lemma1))
+				else if (d.contains("dep") && pos2.equals("DT") && lemma2.equals("all") && isPieceName(i, index1))
 				{
 					isAllPieces = true;
 
@@ -325,7 +313,7 @@ public class EndParser
 						isOppositeType = true;
 				}
 				//check for a predicate taking a piece name as an argument
-				else if (pos1.charAt(0) == 'V' && isPieceName(lemma2))
+				else if (pos1.charAt(0) == 'V' && isPieceName(i, index2))
 				{
 					//check if the verb is "have"
 					if (lemma1.equals("have"))
@@ -343,23 +331,23 @@ public class EndParser
 					else if (lemma1.equals("capture") || lemma1.equals("remove") || lemma1.equals("lose"))
 						isCaptureAll = true;
 					// The same goes for when the verb is "block".
-					else if (RulesParser.isSynonymOf("block", lemma1))
+					else if (concepts.has(i, index1, ConceptTagger.BLOCK))
 						isBlockAll = true;
 				}
 				// check for a noun piece name modified by a adjectival clause
-				else if ((d.contains("acl(") || d.contains("acl:")) && isPieceName(lemma1))
+				else if ((d.contains("acl(") || d.contains("acl:")) && isPieceName(i, index1))
 				{
 					//if the adjectival clause is headed by "leave" or "remain"
 					if (pos2.charAt(0) == 'V' && (lemma2.equals("leave") || lemma2.equals("remain")))
 					{
 						isPieceLeft = true; 
-						if (negatedWords.contains(index1)) //if the piece name is negated, (eg "no pieces left")
+						if (concepts.has(i, index1, ConceptTagger.NEGATED)) //if the piece name is negated, (eg "no pieces left")
 							quantifier = 0; //this denotes zero pieces remaining
 						else //see if any numbers modify the piecename
 						{
-							Set<IndexedWord> numericModifiers = graph.getChildrenWithReln(
-								graph.getNodeByIndexSafe(index1+1), UniversalEnglishGrammaticalRelations.NUMERIC_MODIFIER);
-							for (IndexedWord numberWord: numericModifiers) 
+							int[] numericModifiers = features.getChildren(i, index1,
+								UniversalEnglishGrammaticalRelations.NUMERIC_MODIFIER.toString());
+							for (int numberWord: numericModifiers) 
 							{	/* there should logically only be at most 1 numeric modifier in this context (it doesn't make sense
 							 	to say "you lose when you have only one or two pieces left," as it is sufficient to just say "two") 
 							 	- but in the case of multiple, this arbitrarily sets quantifier to be the last one in the set.
@@ -367,8 +355,7 @@ public class EndParser
 							 	list entry, if necessary (it's unnecessary for checkers) */
 								try
 								{
-									String numberString = sentence.get(CoreAnnotations.TokensAnnotation.class).get(
-										numberWord.index()-1).get(CoreAnnotations.NormalizedNamedEntityTagAnnotation.class);
+									String numberString = features.getNumber(i, numberWord);
 									if (numberString != null)
 									{
 										int number = (int) Double.parseDouble(numberString);
@@ -385,7 +372,7 @@ public class EndParser
 				else if (d.contains("advmod(") && lemma1.equals("have") && lemma2.equals("more"))
 				{
 					isHaveMore = true;
-					if (negatedWords.contains(index2))
+					if (concepts.has(i, index2, ConceptTagger.NEGATED))
 						quantifier = 0;
 				}
 			}
@@ -435,12 +422,12 @@ public class EndParser
 				if (isStalemated)
 				{
 					endConditions.add(new EndCondition(EndCondition.WIN, EndCondition.STALEMATED));
-					System.out.println("Win condition parsed: stalemated in sentence " + i);
+					parent.debug("Win condition parsed: stalemated in sentence " + i);
 				}
 				if (isPiecesRemaining && quantifier > -1)
 				{
 					endConditions.add(new EndCondition(EndCondition.WIN, EndCondition.PIECES_REMAINING, quantifier));
-					System.out.println("Win condition parsed: pieces remaining = " + quantifier + " in sentence " + i);
+					parent.debug("Win condition parsed: pieces remaining = " + quantifier + " in sentence " + i);
 				}
 			}
 			if (isLose)
@@ -448,12 +435,12 @@ public class EndParser
 				if (isStalemated)
 				{
 					endConditions.add(new EndCondition(EndCondition.LOSE, EndCondition.STALEMATED));
-					System.out.println("Lose condition parsed: stalemated in sentence " + i);
+					parent.debug("Lose condition parsed: stalemated in sentence " + i);
 				}
 				if (isPiecesRemaining && quantifier > -1)
 				{
 					endConditions.add(new EndCondition(EndCondition.LOSE, EndCondition.PIECES_REMAINING, quantifier));
-					System.out.println("Lose condition parsed: pieces remaining = " + quantifier + " in sentence " + i);
+					parent.debug("Lose condition parsed: pieces remaining = " + quantifier + " in sentence " + i);
 				}
 			}
 			if (isDraw)
@@ -461,12 +448,12 @@ public class EndParser
 				if (isStalemated)
 				{
 					endConditions.add(new EndCondition(EndCondition.DRAW, EndCondition.STALEMATED));
-					System.out.println("Draw condition parsed: stalemated in sentence " + i);
+					parent.debug("Draw condition parsed: stalemated in sentence " + i);
 				}
 				if (isPiecesRemaining && quantifier > -1)
 				{
 					endConditions.add(new EndCondition(EndCondition.DRAW, EndCondition.PIECES_REMAINING, quantifier));
-					System.out.println("Draw condition parsed: pieces remaining = " + quantifier + "in sentence " + i);
+					parent.debug("Draw condition parsed: pieces remaining = " + quantifier + "in sentence " + i);
 				}
 			}
 			
@@ -479,34 +466,13 @@ public class EndParser
 	*/
 	public boolean isOpponentArgument(int sentenceIndex, int predicateIndex)
 	{
-		//semantic dependency graph of the sentence
-		SemanticGraph graph = sentences.get(sentenceIndex).get(
-			SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
 		//check for any of the arguments of the verb being any phrase denoting the other player
-		IndexedWord predicateNode = graph.getNodeByIndexSafe(predicateIndex+1); //+1 because SemanticGraph nodes are indexed from 1
-		Set<IndexedWord> children = null;
-		if (predicateNode != null) 
-			children = graph.getChildren(predicateNode);
-		for (IndexedWord child: children)
+		for (int child: features.getChildren(sentenceIndex, predicateIndex))
 		{
-			String childLemma = lemmas[sentenceIndex][child.index()-1]; //the lemma of the word each child node represents
-			String childPOS = partsOfSpeech[sentenceIndex][child.index()-1]; // POS of the word each child node represents
-			//in both of the previous Strings, we subtract 1 from child.index() b/c SemanticGraph nodes are indexed from 1
-			if (RulesParser.isSynonymOf("opponent", childLemma))
+			int childConcepts = concepts.get(sentenceIndex, child);
+			/* the child is either a synonym of opponent, or a noun modified by "other" or "opposing" */
+			if ((childConcepts & (ConceptTagger.OPPONENT | ConceptTagger.OTHER_MODIFIED)) != 0)
 				return true;
-			/* if the child isn't a synonym of opponent, we check if it's a noun, and if so, 
-			we check if it is modified by "other" or "opposing */
-			else if (childPOS.charAt(0) == 'N')
-			{
-				Set<IndexedWord> adjectives = graph.getChildrenWithReln(child, 
-					UniversalEnglishGrammaticalRelations.ADJECTIVAL_MODIFIER); // all adjective modifiers of child
-				for (IndexedWord adjective: adjectives)
-				{
-					String adjLemma = lemmas[sentenceIndex][adjective.index()-1];
-					if (adjLemma.equals("other") || adjLemma.equals("opposing"))
-						return true;
-				}
-			}
 			//TODO: handle pronouns
 		}
 		return false;
@@ -518,33 +484,16 @@ public class EndParser
 	*/
 	public boolean isOpponentPossessor(int sentenceIndex, int nounIndex)
 	{
-		//semantic dependency graph of the sentence
-		SemanticGraph graph = sentences.get(sentenceIndex).get(
-			SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
 		//check for any of the arguments of the verb being any phrase denoting the other player
-		IndexedWord nounNode = graph.getNodeByIndexSafe(nounIndex+1); //+1 because SemanticGraph nodes are indexed from 1
-		Set<IndexedWord> possessors = null;
-		if (nounNode != null) 
-			possessors = graph.getChildrenWithReln(nounNode, UniversalEnglishGrammaticalRelations.POSSESSION_MODIFIER);
-		for (IndexedWord possessor: possessors)
+		int[] possessors = features.getChildren(sentenceIndex, nounIndex,
+			UniversalEnglishGrammaticalRelations.POSSESSION_MODIFIER.toString());
+		for (int possessor: possessors)
 		{
-			String possessorLemma = lemmas[sentenceIndex][possessor.index()-1]; //the lemma of the word possessing the noun
-			String possessorPOS = partsOfSpeech[sentenceIndex][possessor.index()-1]; //POS of the word possessing the noun
-			//in both of the previous Strings, we subtract 1 from possessor.index() b/c SemanticGraph nodes are indexed from 1
-			if (RulesParser.isSynonymOf("opponent", possessorLemma) || possessorLemma.equals("other"))
+			int possessorConcepts = concepts.get(sentenceIndex, possessor);
+			/* the possessor is either a synonym of opponent, the word "other", or a noun modified by "other" or "opposing" */
+			if ((possessorConcepts & (ConceptTagger.OPPONENT | ConceptTagger.OTHER_MODIFIED)) != 0 || 
+				lemmas[sentenceIndex][possessor].equals("other"))
 				return true;
-			else if (possessorPOS.charAt(0) == 'N')
-			{
-				Set<IndexedWord> adjectives = graph.getChildrenWithReln(possessor, 
-					UniversalEnglishGrammaticalRelations.ADJECTIVAL_MODIFIER); // all adjective modifiers of child
-				for (IndexedWord adjective: adjectives)
-				{
-					String adjLemma = lemmas[sentenceIndex][adjective.index()-1];
-					if (adjLemma.equals("other") || adjLemma.equals("opposing"))
-						return true;
-				}
-
-			}
 			//TODO: handle pronouns?
 		}
 
@@ -552,18 +501,12 @@ public class EndParser
 	}
 
 	/**
-	Checks if a String (str) is one of the piece names in pieceTypes, or just the word "piece"
+	Checks if the word indexed by wordIndex in the sentence indexed by sentenceIndex is one of the piece names in pieceTypes, 
+	or just the word "piece"
 	*/
-	public boolean isPieceName(String str)
+	public boolean isPieceName(int sentenceIndex, int wordIndex)
 	{
-		if (str.equals("piece"))
-			return true;
-		for (Piece p: pieceTypes)
-		{
-			if (p.isAnyName(str))
-				return true;
-		}
-		return false;
+		return concepts.has(sentenceIndex, wordIndex, ConceptTagger.PIECE_NAME);
 	}
 
 
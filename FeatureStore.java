@@ -0,0 +1,650 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+A file holding everything the parsers read about many annotated rulesets (see RulesetFeatures): their words, lemmas, parts of
+speech, numbers, dependencies and coreference links, laid out as flat columns and read through memory-mapped views, so that a
+corpus far larger than the heap can be queried, or converted again, at once: the columns stay in the page cache (or on disk) rather
+than on the heap, and reading a word, an edge or a link is a single absolute get from a buffer, with nothing to deserialize.
+
+Each document of the store is a RulesetFeatures read straight from the columns (see Document), so the board, piece and end parsers
+run over a stored ruleset as they do over one just annotated (see RulesParser.fromFeatures()), without CoreNLP. The only strings
+built while they do are the dependency strings of the sentence being parsed, which the parsers read as text (see
+Document.getDependencies()).
+
+The file is, in order (every number big-endian):
+  a header: magic, version, and the number of documents, sentences, tokens, edges, path entries, dependencies, strings, parts of
+  speech and relations
+  documents: the index of the first sentence of each document, plus the total number of sentences (ints)
+  sentences: the index of the first token of each sentence, plus the total number of tokens (ints)
+  dependency starts: the index of the first dependency of each sentence, plus the total number of dependencies (ints)
+  words, lemmas: the string id of the word and of the lemma of each token (ints)
+  numbers: the string id of the number NER normalized each token to, or -1 if it isn't a number (ints)
+  antecedents: the string id of the antecedent of each token (see RulesParser.determineAntecedent()), or -1 if it has none (ints)
+  edges: the index of the first edge governed by each token, plus the total number of edges (ints)
+  paths: the index of the first path entry of each token, plus the total number of path entries (ints)
+  edge targets: the index within its sentence of the dependent of each edge (ints)
+  path entries: the indices within its sentence of the words on the path from each token to the root (ints)
+  dependencies: the relation id, governor and dependent of each dependency, in the order of the sentence's dependency strings;
+  the governor and dependent are their index in the string (from 1, 0 for the root) times 4, plus the number of apostrophes
+  after it (ints)
+  edge relations: the relation id of each edge (shorts, padded to a multiple of 4 bytes)
+  parts of speech: the part of speech id of each token (bytes, padded to a multiple of 4 bytes)
+  strings: the names of the documents, then the strings, parts of speech and relations in id order, each an int length and UTF-8
+Ids index the dictionaries at the end of the file, which are shared by every document, so the columns hold no strings.
+
+Each column is mapped on its own, so no column may be larger than 2 GB (about 500 million tokens or edges).
+*/
+public class FeatureStore
+{
+	private static final int MAGIC = 0x52465354; // "RFST"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 11 * 4;
+	private static final int[] NONE = new int[0];
+
+	private String[] names;
+	private String[] strings; // words, lemmas, numbers and antecedents
+	private String[] partsOfSpeech;
+	private String[] relations;
+	private HashMap<String,Integer> stringIds;
+	private IntBuffer documentStarts;
+	private IntBuffer sentenceStarts;
+	private IntBuffer dependencyStarts;
+	private IntBuffer tokenWords;
+	private IntBuffer tokenLemmas;
+	private IntBuffer tokenNumbers;
+	private IntBuffer tokenAntecedents;
+	private IntBuffer edgeStarts;
+	private IntBuffer pathStarts;
+	private IntBuffer edgeTargets;
+	private IntBuffer pathEntries;
+	private IntBuffer dependencies;
+	private ShortBuffer edgeRelations;
+	private ByteBuffer tokenPartsOfSpeech;
+
+	private FeatureStore()
+	{
+	}
+
+	/**
+	Starts a new store at path. Documents are added with Writer.add(), and the store can be opened once the Writer is closed.
+	*/
+	public static Writer create(String path) throws IOException
+	{
+		return new Writer(path);
+	}
+
+	/**
+	Maps the store at path. Only the dictionaries are read onto the heap; the columns are read from the mapping as they are used.
+	*/
+	public static FeatureStore open(String path) throws IOException
+	{
+		FeatureStore store = new FeatureStore();
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+		{
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC)
+				throw new IOException(path + " is not a feature store");
+			if (header.getInt() != VERSION)
+				throw new IOException(path + " was written by a different version of FeatureStore");
+			int documents = header.getInt();
+			int sentences = header.getInt();
+			int tokens = header.getInt();
+			int edges = header.getInt();
+			int paths = header.getInt();
+			int dependencyCount = header.getInt();
+			int stringCount = header.getInt();
+			int partOfSpeechCount = header.getInt();
+			int relationCount = header.getInt();
+
+			long[] offset = {HEADER_SIZE};
+			store.documentStarts = mapInts(channel, offset, documents + 1);
+			store.sentenceStarts = mapInts(channel, offset, sentences + 1);
+			store.dependencyStarts = mapInts(channel, offset, sentences + 1);
+			store.tokenWords = mapInts(channel, offset, tokens);
+			store.tokenLemmas = mapInts(channel, offset, tokens);
+			store.tokenNumbers = mapInts(channel, offset, tokens);
+			store.tokenAntecedents = mapInts(channel, offset, tokens);
+			store.edgeStarts = mapInts(channel, offset, tokens + 1);
+			store.pathStarts = mapInts(channel, offset, tokens + 1);
+			store.edgeTargets = mapInts(channel, offset, edges);
+			store.pathEntries = mapInts(channel, offset, paths);
+			store.dependencies = mapInts(channel, offset, 3L * dependencyCount);
+			store.edgeRelations = map(channel, offset[0], 2L * edges).asShortBuffer();
+			offset[0] += padded(2L * edges);
+			store.tokenPartsOfSpeech = map(channel, offset[0], tokens);
+			offset[0] += padded(tokens);
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset[0]))));
+			store.names = readStrings(in, documents);
+			store.strings = readStrings(in, stringCount);
+			store.partsOfSpeech = readStrings(in, partOfSpeechCount);
+			store.relations = readStrings(in, relationCount);
+		}
+		store.stringIds = new HashMap<String,Integer>();
+		for (int id = 0; id < store.strings.length; id++)
+			store.stringIds.put(store.strings[id], id);
+		return store;
+	}
+
+	//maps the next count ints of the file, and moves offset[0] past them
+	private static IntBuffer mapInts(FileChannel channel, long[] offset, long count) throws IOException
+	{
+		IntBuffer column = map(channel, offset[0], 4 * count).asIntBuffer();
+		offset[0] += 4 * count;
+		return column;
+	}
+
+	//the mapping stays valid once the channel is closed
+	private static MappedByteBuffer map(FileChannel channel, long offset, long size) throws IOException
+	{
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+	}
+
+	private static long padded(long size)
+	{
+		return (size + 3) & ~3L;
+	}
+
+	private static String[] readStrings(DataInputStream in, int count) throws IOException
+	{
+		String[] strings = new String[count];
+		for (int i = 0; i < count; i++)
+		{
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return strings;
+	}
+
+	public int getDocumentCount()
+	{
+		return names.length;
+	}
+
+	public String getName(int documentIndex)
+	{
+		return names[documentIndex];
+	}
+
+	/**
+	Returns the index of the document called name, or -1 if there is none.
+	*/
+	public int indexOf(String name)
+	{
+		for (int d = 0; d < names.length; d++)
+		{
+			if (names[d].equals(name))
+				return d;
+		}
+		return -1;
+	}
+
+	public Document getDocument(int documentIndex)
+	{
+		return new Document(documentStarts.get(documentIndex), documentStarts.get(documentIndex + 1));
+	}
+
+	/**
+	Returns the id of a lemma, or -1 if no document in the store has it.
+	*/
+	public int getLemmaId(String lemma)
+	{
+		Integer id = stringIds.get(lemma);
+		return id == null ? -1 : id;
+	}
+
+	public String getLemma(int lemmaId)
+	{
+		return strings[lemmaId];
+	}
+
+	public int getTokenCount()
+	{
+		return tokenLemmas.limit();
+	}
+
+	public int getEdgeCount()
+	{
+		return edgeTargets.limit();
+	}
+
+	/**
+	Counts the words of every document whose lemma is lemma, in a single pass over the lemma column.
+	*/
+	public int countLemma(String lemma)
+	{
+		int id = getLemmaId(lemma);
+		if (id < 0)
+			return 0;
+		int count = 0;
+		for (int t = 0; t < tokenLemmas.limit(); t++)
+		{
+			if (tokenLemmas.get(t) == id)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	One document of the store, read directly from the store's columns. Sentences and words are indexed from 0 within the
+	document, as in DocumentFeatures.
+	*/
+	public class Document implements RulesetFeatures
+	{
+		private int firstSentence;
+		private int endSentence;
+
+		private Document(int firstSentence, int endSentence)
+		{
+			this.firstSentence = firstSentence;
+			this.endSentence = endSentence;
+		}
+
+		public int getSentenceCount()
+		{
+			return endSentence - firstSentence;
+		}
+
+		public int getWordCount(int sentenceIndex)
+		{
+			return sentenceStarts.get(firstSentence + sentenceIndex + 1) - sentenceStarts.get(firstSentence + sentenceIndex);
+		}
+
+		private int token(int sentenceIndex, int wordIndex)
+		{
+			return sentenceStarts.get(firstSentence + sentenceIndex) + wordIndex;
+		}
+
+		public String getWord(int sentenceIndex, int wordIndex)
+		{
+			return strings[tokenWords.get(token(sentenceIndex, wordIndex))];
+		}
+
+		public int getLemmaId(int sentenceIndex, int wordIndex)
+		{
+			return tokenLemmas.get(token(sentenceIndex, wordIndex));
+		}
+
+		public String getLemma(int sentenceIndex, int wordIndex)
+		{
+			return strings[getLemmaId(sentenceIndex, wordIndex)];
+		}
+
+		public String getPartOfSpeech(int sentenceIndex, int wordIndex)
+		{
+			return partsOfSpeech[tokenPartsOfSpeech.get(token(sentenceIndex, wordIndex)) & 0xff];
+		}
+
+		/**
+		Returns the words of a sentence separated by spaces; the store doesn't keep the spacing of the original text.
+		*/
+		public String getText(int sentenceIndex)
+		{
+			StringBuilder text = new StringBuilder();
+			for (int j = 0; j < getWordCount(sentenceIndex); j++)
+			{
+				if (j > 0)
+					text.append(' ');
+				text.append(getWord(sentenceIndex, j));
+			}
+			return text.toString();
+		}
+
+		/**
+		Builds the dependency strings of a sentence from its dependency records and its words, as they were when it was annotated.
+		*/
+		public String[] getDependencies(int sentenceIndex)
+		{
+			int first = dependencyStarts.get(firstSentence + sentenceIndex);
+			String[] strings = new String[dependencyStarts.get(firstSentence + sentenceIndex + 1) - first];
+			StringBuilder dependency = new StringBuilder();
+			for (int k = 0; k < strings.length; k++)
+			{
+				int record = 3 * (first + k);
+				dependency.setLength(0);
+				dependency.append(relations[dependencies.get(record)]).append('(');
+				appendNode(dependency, sentenceIndex, dependencies.get(record + 1));
+				dependency.append(", ");
+				appendNode(dependency, sentenceIndex, dependencies.get(record + 2));
+				strings[k] = dependency.append(')').toString();
+			}
+			return strings;
+		}
+
+		//appends a node of a dependency string, eg: "moves-2", "ROOT-0" or "is-3'"
+		private void appendNode(StringBuilder dependency, int sentenceIndex, int node)
+		{
+			int index = node >>> 2;
+			dependency.append(index == 0 ? "ROOT" : getWord(sentenceIndex, index - 1)).append('-').append(index);
+			for (int prime = 0; prime < (node & 3); prime++)
+				dependency.append('\'');
+		}
+
+		public String getNumber(int sentenceIndex, int wordIndex)
+		{
+			int id = tokenNumbers.get(token(sentenceIndex, wordIndex));
+			return id < 0 ? null : strings[id];
+		}
+
+		public int[] getChildren(int sentenceIndex, int wordIndex)
+		{
+			return getChildren(sentenceIndex, wordIndex, null);
+		}
+
+		public int[] getChildren(int sentenceIndex, int wordIndex, String relation)
+		{
+			int token = token(sentenceIndex, wordIndex);
+			int first = edgeStarts.get(token);
+			int count = edgeStarts.get(token + 1) - first;
+			if (count == 0)
+				return NONE;
+			int[] children = new int[count];
+			int found = 0;
+			for (int e = first; e < first + count; e++)
+			{
+				if (relation != null && !relations[edgeRelations.get(e)].equals(relation))
+					continue;
+				int target = edgeTargets.get(e);
+				boolean seen = false;
+				for (int k = 0; k < found && !seen; k++)
+					seen = children[k] == target;
+				if (!seen)
+					children[found++] = target;
+			}
+			return found == count ? children : Arrays.copyOf(children, found);
+		}
+
+		public int getEdgeCount(int sentenceIndex, int wordIndex)
+		{
+			int token = token(sentenceIndex, wordIndex);
+			return edgeStarts.get(token + 1) - edgeStarts.get(token);
+		}
+
+		public int getEdgeTarget(int sentenceIndex, int wordIndex, int k)
+		{
+			return edgeTargets.get(edgeStarts.get(token(sentenceIndex, wordIndex)) + k);
+		}
+
+		public String getEdgeRelation(int sentenceIndex, int wordIndex, int k)
+		{
+			return relations[edgeRelations.get(edgeStarts.get(token(sentenceIndex, wordIndex)) + k)];
+		}
+
+		public boolean dominates(int sentenceIndex, int index1, int index2)
+		{
+			int token = token(sentenceIndex, index2);
+			for (int p = pathStarts.get(token); p < pathStarts.get(token + 1); p++)
+			{
+				if (pathEntries.get(p) == index1)
+					return true;
+			}
+			return false;
+		}
+
+		//the governors of a word are found by scanning the edges of its sentence, which are few
+		public boolean isSibling(int sentenceIndex, int index1, int index2)
+		{
+			if (index1 == index2)
+				return false;
+			int first = token(sentenceIndex, 0);
+			for (int parent = first; parent < first + getWordCount(sentenceIndex); parent++)
+			{
+				boolean governs1 = false;
+				boolean governs2 = false;
+				for (int e = edgeStarts.get(parent); e < edgeStarts.get(parent + 1); e++)
+				{
+					governs1 |= edgeTargets.get(e) == index1;
+					governs2 |= edgeTargets.get(e) == index2;
+				}
+				if (governs1 && governs2)
+					return true;
+			}
+			return false;
+		}
+
+		public String getAntecedent(int sentenceIndex, int wordIndex)
+		{
+			int id = tokenAntecedents.get(token(sentenceIndex, wordIndex));
+			return id < 0 ? "" : strings[id];
+		}
+	}
+
+	/**
+	Writes a new store. Each column is streamed to a temporary file next to the store as documents are added, so only the
+	dictionaries are held in memory however many documents there are; close() joins the columns into the store.
+	*/
+	public static class Writer implements Closeable
+	{
+		private static final String[] COLUMNS = {"documents", "sentences", "dependencyStarts", "words", "lemmas", "numbers",
+			"antecedents", "edges", "paths", "targets", "pathEntries", "dependencies", "relations", "pos"};
+
+		private String path;
+		private Path[] columnPaths;
+		private DataOutputStream[] columns;
+		private List<String> names;
+		private Dictionary strings;
+		private Dictionary partsOfSpeech;
+		private Dictionary relations;
+		private int sentences;
+		private int tokens;
+		private int edges;
+		private int paths;
+		private int dependencies;
+
+		private Writer(String path) throws IOException
+		{
+			this.path = path;
+			this.columnPaths = new Path[COLUMNS.length];
+			this.columns = new DataOutputStream[COLUMNS.length];
+			try
+			{
+				for (int c = 0; c < COLUMNS.length; c++)
+				{
+					columnPaths[c] = Paths.get(path + "." + COLUMNS[c] + ".tmp");
+					columns[c] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columnPaths[c])));
+				}
+			}
+			catch (IOException e)
+			{
+				deleteColumns();
+				throw e;
+			}
+			this.names = new ArrayList<String>();
+			this.strings = new Dictionary("strings", Integer.MAX_VALUE);
+			this.partsOfSpeech = new Dictionary("parts of speech", 256);
+			this.relations = new Dictionary("relations", Short.MAX_VALUE + 1);
+		}
+
+		/**
+		Adds a ruleset that has been annotated (see RulesParser.annotate()) under a given name.
+		*/
+		public void add(String name, RulesParser parser) throws IOException
+		{
+			if (!(parser.getFeatures() instanceof DocumentFeatures))
+				throw new IllegalArgumentException(name + " has not been annotated");
+			DocumentFeatures features = (DocumentFeatures) parser.getFeatures();
+
+			names.add(name);
+			columns[0].writeInt(sentences);
+			for (int i = 0; i < features.getSentenceCount(); i++)
+			{
+				columns[1].writeInt(tokens);
+				columns[2].writeInt(dependencies);
+				for (int j = 0; j < features.getWordCount(i); j++)
+				{
+					columns[3].writeInt(strings.intern(features.getWord(i, j)));
+					columns[4].writeInt(strings.intern(features.getLemma(i, j)));
+					String number = features.getNumber(i, j);
+					columns[5].writeInt(number == null ? -1 : strings.intern(number));
+					String antecedent = features.getAntecedent(i, j);
+					columns[6].writeInt(antecedent.isEmpty() ? -1 : strings.intern(antecedent));
+					columns[7].writeInt(edges);
+					columns[8].writeInt(paths);
+					for (int k = 0; k < features.getEdgeCount(i, j); k++)
+					{
+						columns[9].writeInt(features.getEdgeTarget(i, j, k));
+						columns[12].writeShort(relations.intern(features.getEdgeRelation(i, j, k)));
+					}
+					edges += features.getEdgeCount(i, j);
+					int[] path = features.getPathToRoot(i, j);
+					for (int word: path)
+						columns[10].writeInt(word);
+					paths += path.length;
+					columns[13].writeByte(partsOfSpeech.intern(features.getPartOfSpeech(i, j)));
+				}
+				for (String dependency: features.getDependencies(i))
+				{
+					columns[11].writeInt(relations.intern(dependency.substring(0, dependency.indexOf('('))));
+					int governor = RulesParser.isolateIndexFromDependency(dependency, 1);
+					int dependent = RulesParser.isolateIndexFromDependency(dependency, 2);
+					columns[11].writeInt(node(governor, dependency, dependency.indexOf(",")));
+					columns[11].writeInt(node(dependent, dependency, dependency.indexOf(")")));
+				}
+				tokens += features.getWordCount(i);
+				dependencies += features.getDependencies(i).length;
+			}
+			sentences += features.getSentenceCount();
+		}
+
+		//encodes a node of a dependency string whose index (from 0, as isolateIndexFromDependency() returns it) ends at end
+		private static int node(int index, String dependency, int end)
+		{
+			int primes = 0;
+			while (primes < 3 && dependency.charAt(end - 1 - primes) == '\'')
+				primes++;
+			return (index + 1) * 4 + primes;
+		}
+
+		/**
+		Finishes the store: writes its header, joins the columns after it, appends the dictionaries, and deletes the temporary files.
+		If anything fails, neither the temporary files nor a partial store are left behind.
+		*/
+		public void close() throws IOException
+		{
+			boolean written = false;
+			try
+			{
+				//the closing entries of the offset columns
+				columns[0].writeInt(sentences);
+				columns[1].writeInt(tokens);
+				columns[2].writeInt(dependencies);
+				columns[7].writeInt(edges);
+				columns[8].writeInt(paths);
+				for (DataOutputStream column: columns)
+					column.close();
+
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(path)))))
+				{
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(names.size());
+					out.writeInt(sentences);
+					out.writeInt(tokens);
+					out.writeInt(edges);
+					out.writeInt(paths);
+					out.writeInt(dependencies);
+					out.writeInt(strings.strings.size());
+					out.writeInt(partsOfSpeech.strings.size());
+					out.writeInt(relations.strings.size());
+					for (int c = 0; c < COLUMNS.length; c++)
+					{
+						Files.copy(columnPaths[c], out);
+						for (long size = Files.size(columnPaths[c]); size % 4 != 0; size++)
+							out.writeByte(0);
+					}
+					writeStrings(out, names);
+					writeStrings(out, strings.strings);
+					writeStrings(out, partsOfSpeech.strings);
+					writeStrings(out, relations.strings);
+				}
+				written = true;
+			}
+			finally
+			{
+				deleteColumns();
+				if (!written)
+					Files.deleteIfExists(Paths.get(path));
+			}
+		}
+
+		//closes and deletes every temporary column file, whatever state it is in
+		private void deleteColumns()
+		{
+			for (int c = 0; c < COLUMNS.length; c++)
+			{
+				try
+				{
+					if (columns[c] != null)
+						columns[c].close();
+				}
+				catch (IOException e)
+				{
+					//deleted below either way
+				}
+				try
+				{
+					if (columnPaths[c] != null)
+						Files.deleteIfExists(columnPaths[c]);
+				}
+				catch (IOException e)
+				{
+					//nothing more can be done about it
+				}
+			}
+		}
+
+		private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException
+		{
+			for (String string: strings)
+			{
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+	}
+
+	//assigns every distinct string an id, in order of first appearance
+	private static class Dictionary
+	{
+		private HashMap<String,Integer> ids;
+		private List<String> strings;
+		private String kind;
+		private int capacity; // the number of ids the column can hold
+
+		private Dictionary(String kind, int capacity)
+		{
+			this.kind = kind;
+			this.ids = new HashMap<String,Integer>();
+			this.strings = new ArrayList<String>();
+			this.capacity = capacity;
+		}
+
+		private int intern(String string)
+		{
+			Integer id = ids.get(string);
+			if (id == null)
+			{
+				if (strings.size() == capacity)
+					throw new IllegalStateException("A feature store can't hold more than " + capacity + " distinct " + kind);
+				id = strings.size();
+				ids.put(string, id);
+				strings.add(string);
+			}
+			return id;
+		}
+	}
+}
@@ -0,0 +1,508 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+Immutable, compiled form of everything RulesParser extracts from a ruleset: the board (dimensions, initial setup and transition
+zones), the move types, the piece types (with their motion types and transitions) and the end conditions.
+Pieces are referred to by id (their index in the model), directions of motion are stored as bitmasks of Direction ordinals, and
+the board is stored as Bitboard words, so a GameModel holds no parser objects and can be written to and read from a compact
+versioned binary file. Writers such as ZRFWriter only ever read from a GameModel, so outputs can be regenerated from a saved
+model without running any NLP.
+*/
+public final class GameModel
+{
+	/* Binary format (all values big-endian; strings are an int byte length followed by that many bytes of UTF-8):
+	int MAGIC, short VERSION, byte flags (bit 0: partial; since version 2), string name, int rows, int columns, byte numPlayers,
+	numPlayers * (int wordCount, wordCount * long) - initial occupancy of each player
+	int moveTypeCount, moveTypeCount * string
+	int pieceCount, pieceCount * (string name, int previousType, int motionMask, int transitionCount, transitionCount * int,
+	                              byte hasZones, [if hasZones: numPlayers * (int wordCount, wordCount * long)])
+	int endConditionCount, endConditionCount * (byte type, byte condition, int quantifier) */
+	private static final int MAGIC = 0x474D444C; // "GMDL"
+	private static final short VERSION = 2; // version 1 had no flags
+	private static final int PARTIAL_FLAG = 1;
+	private static final int MAX_SQUARES = 1 << 20; // the largest board read() accepts, far beyond any real game
+
+	public static final int DEFAULT = -1;
+	public static final int REMOVED = -2;
+
+	//end condition types and conditions are stored as indices into these arrays
+	private static final String[] END_TYPES = {EndCondition.WIN, EndCondition.LOSE, EndCondition.DRAW};
+	private static final String[] END_CONDITIONS = {EndCondition.STALEMATED, EndCondition.PIECES_REMAINING};
+
+	private final String name; // name of the game (the name of the ruleset file, without directories or extension)
+	private final int rows;
+	private final int columns;
+	private final long[][] occupancy; // occupancy[playerNum-1] holds the Bitboard words of the initial setup of player playerNum
+
+	private final String[] moveTypes;
+
+	private final String[] pieceNames; // pieceNames[id] holds the name of the piece with that id
+	private final int[] previousTypes; 
+	/* previousTypes[id] holds the id of the previous type of piece id, DEFAULT if it is the default piece, or REMOVED if its
+	previous type was parsed but later removed from pieceTypes as a false positive */
+	private final int[] motionMasks; // bit d.ordinal() of motionMasks[id] is set if piece id can move in direction d
+	private final int[][] transitionTypes; // ids of the pieces each piece can become, in the order they are described in the ruleset
+	private final long[][][] zones; // zones[id][playerNum-1] holds the Bitboard words of a transition zone, or zones[id] is null
+
+	private final byte[] endTypes; // indices into END_TYPES
+	private final byte[] endConditions; // indices into END_CONDITIONS
+	private final int[] endQuantifiers;
+
+	private final boolean partial; // true if parsing ran out of time, so the model holds only what was parsed until then
+
+	private GameModel(String name, int rows, int columns, long[][] occupancy, String[] moveTypes, String[] pieceNames,
+		int[] previousTypes, int[] motionMasks, int[][] transitionTypes, long[][][] zones,
+		byte[] endTypes, byte[] endConditions, int[] endQuantifiers, boolean partial)
+	{
+		this.name = name;
+		this.rows = rows;
+		this.columns = columns;
+		this.occupancy = occupancy;
+		this.moveTypes = moveTypes;
+		this.pieceNames = pieceNames;
+		this.previousTypes = previousTypes;
+		this.motionMasks = motionMasks;
+		this.transitionTypes = transitionTypes;
+		this.zones = zones;
+		this.endTypes = endTypes;
+		this.endConditions = endConditions;
+		this.endQuantifiers = endQuantifiers;
+		this.partial = partial;
+	}
+
+	/**
+	Freezes the results of parsing a ruleset into a GameModel. None of the arguments are referenced by the returned model.
+	*/
+	public static GameModel compile(String name, Board board, ArrayList<String> moveTypes, ArrayList<Piece> pieceTypes,
+		ArrayList<EndCondition> endConditions)
+	{
+		return compile(name, board, moveTypes, pieceTypes, endConditions, false);
+	}
+
+	/**
+	Freezes the results of parsing a ruleset into a GameModel, marked as partial if parsing did not finish (see isPartial()).
+	*/
+	public static GameModel compile(String name, Board board, ArrayList<String> moveTypes, ArrayList<Piece> pieceTypes,
+		ArrayList<EndCondition> endConditions, boolean partial)
+	{
+		long[][] occupancy = new long[Board.NUM_PLAYERS][];
+		for (int playerNum = 1; playerNum <= Board.NUM_PLAYERS; playerNum++)
+			occupancy[playerNum-1] = board.getOccupancy(playerNum).toWords();
+
+		HashMap<String,Integer> ids = new HashMap<String,Integer>();
+		for (int i = 0; i < pieceTypes.size(); i++)
+			ids.put(pieceTypes.get(i).getName(), i);
+
+		int pieceCount = pieceTypes.size();
+		String[] pieceNames = new String[pieceCount];
+		int[] previousTypes = new int[pieceCount];
+		int[] motionMasks = new int[pieceCount];
+		int[][] transitionTypes = new int[pieceCount][];
+		long[][][] zones = new long[pieceCount][][];
+		for (int i = 0; i < pieceCount; i++)
+		{
+			Piece p = pieceTypes.get(i);
+			pieceNames[i] = p.getName();
+			if (p.isDefault())
+				previousTypes[i] = DEFAULT;
+			else if (ids.containsKey(p.getPreviousType().getName()))
+				previousTypes[i] = ids.get(p.getPreviousType().getName());
+			else
+				previousTypes[i] = REMOVED;
+			for (Direction d: p.getMotionTypes())
+				motionMasks[i] |= 1 << d.ordinal();
+
+			/* a piece can have several transition sentences to the same piece, but each piece it can become is only kept once.
+			(Every transition type is the name of a parsed piece, as transitions to removed pieces are removed with them.) */
+			ArrayList<Integer> transitions = new ArrayList<Integer>(1);
+			for (String transitionType: p.getTransitionTypes())
+			{
+				Integer id = ids.get(transitionType);
+				if (id != null && !transitions.contains(id))
+					transitions.add(id);
+			}
+			transitionTypes[i] = new int[transitions.size()];
+			for (int j = 0; j < transitions.size(); j++)
+				transitionTypes[i][j] = transitions.get(j);
+
+			if (board.getZonePieces().contains(p.getName()))
+			{
+				zones[i] = new long[Board.NUM_PLAYERS][];
+				for (int playerNum = 1; playerNum <= Board.NUM_PLAYERS; playerNum++)
+					zones[i][playerNum-1] = board.getZone(p.getName(), playerNum).toWords();
+			}
+		}
+
+		int endCount = endConditions.size();
+		byte[] endTypes = new byte[endCount];
+		byte[] conditions = new byte[endCount];
+		int[] endQuantifiers = new int[endCount];
+		for (int i = 0; i < endCount; i++)
+		{
+			EndCondition ec = endConditions.get(i);
+			endTypes[i] = (byte) indexOf(END_TYPES, ec.getType());
+			conditions[i] = (byte) indexOf(END_CONDITIONS, ec.getCondition());
+			endQuantifiers[i] = ec.getQuantifier();
+		}
+
+		return new GameModel(name, board.getRows(), board.getColumns(), occupancy, moveTypes.toArray(new String[moveTypes.size()]),
+			pieceNames, previousTypes, motionMasks, transitionTypes, zones, endTypes, conditions, endQuantifiers, partial);
+	}
+
+	/**
+	Returns a model identical to this one but for its name. Nothing is copied, as neither model can change.
+	*/
+	public GameModel withName(String name)
+	{
+		if (name.equals(this.name))
+			return this;
+		return new GameModel(name, rows, columns, occupancy, moveTypes, pieceNames, previousTypes, motionMasks, transitionTypes, zones,
+			endTypes, endConditions, endQuantifiers, partial);
+	}
+
+	private static int indexOf(String[] values, String value)
+	{
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i].equals(value))
+				return i;
+		}
+		throw new IllegalArgumentException("Unknown end condition value: " + value);
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	Checks if parsing ran out of time before it finished (see Deadline), in which case this model only holds whatever was parsed
+	before then, and may be missing pieces, motion types, zones or end conditions.
+	*/
+	public boolean isPartial()
+	{
+		return partial;
+	}
+
+	public int getRows()
+	{
+		return rows;
+	}
+
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	Returns a copy of the squares occupied by the pieces of player playerNum in the initial setup.
+	*/
+	public Bitboard getOccupancy(int playerNum)
+	{
+		return Bitboard.fromWords(rows*columns, occupancy[playerNum-1]);
+	}
+
+	public int getMoveTypeCount()
+	{
+		return moveTypes.length;
+	}
+
+	public String getMoveType(int index)
+	{
+		return moveTypes[index];
+	}
+
+	public int getPieceCount()
+	{
+		return pieceNames.length;
+	}
+
+	public String getPieceName(int id)
+	{
+		return pieceNames[id];
+	}
+
+	/**
+	Returns the id of the previous type of piece id, DEFAULT if it is the default piece, or REMOVED if its previous type is not 
+	part of the model.
+	*/
+	public int getPreviousType(int id)
+	{
+		return previousTypes[id];
+	}
+
+	public boolean isDefault(int id)
+	{
+		return previousTypes[id] == DEFAULT;
+	}
+
+	/**
+	Returns the id of the first default piece, or -1 if there is none.
+	*/
+	public int getDefaultPiece()
+	{
+		for (int i = 0; i < previousTypes.length; i++)
+		{
+			if (previousTypes[i] == DEFAULT)
+				return i;
+		}
+		return -1;
+	}
+
+	public boolean hasMotionType(int id, Direction d)
+	{
+		return (motionMasks[id] & (1 << d.ordinal())) != 0;
+	}
+
+	/**
+	Returns the motion types of piece id as a bitmask of Direction ordinals.
+	*/
+	public int getMotionMask(int id)
+	{
+		return motionMasks[id];
+	}
+
+	public int getTransitionTypeCount(int id)
+	{
+		return transitionTypes[id].length;
+	}
+
+	/**
+	Returns the id of the index-th piece that piece id can become.
+	*/
+	public int getTransitionType(int id, int index)
+	{
+		return transitionTypes[id][index];
+	}
+
+	/**
+	Returns a copy of the transition zone of player playerNum for piece id (an empty Bitboard if none was parsed).
+	*/
+	public Bitboard getZone(int id, int playerNum)
+	{
+		if (zones[id] == null)
+			return new Bitboard(rows*columns);
+		return Bitboard.fromWords(rows*columns, zones[id][playerNum-1]);
+	}
+
+	public int getEndConditionCount()
+	{
+		return endTypes.length;
+	}
+
+	public EndCondition getEndCondition(int index)
+	{
+		return new EndCondition(END_TYPES[endTypes[index]], END_CONDITIONS[endConditions[index]], endQuantifiers[index]);
+	}
+
+	/**
+	Writes this model in the binary format described at the top of this class.
+	*/
+	public void write(OutputStream out) throws IOException
+	{
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeShort(VERSION);
+		data.writeByte(partial ? PARTIAL_FLAG : 0);
+		writeString(data, name);
+		data.writeInt(rows);
+		data.writeInt(columns);
+		data.writeByte(occupancy.length);
+		for (long[] words: occupancy)
+			writeWords(data, words);
+
+		data.writeInt(moveTypes.length);
+		for (String moveType: moveTypes)
+			writeString(data, moveType);
+
+		data.writeInt(pieceNames.length);
+		for (int i = 0; i < pieceNames.length; i++)
+		{
+			writeString(data, pieceNames[i]);
+			data.writeInt(previousTypes[i]);
+			data.writeInt(motionMasks[i]);
+			data.writeInt(transitionTypes[i].length);
+			for (int transitionType: transitionTypes[i])
+				data.writeInt(transitionType);
+			data.writeBoolean(zones[i] != null);
+			if (zones[i] != null)
+			{
+				for (long[] words: zones[i])
+					writeWords(data, words);
+			}
+		}
+
+		data.writeInt(endTypes.length);
+		for (int i = 0; i < endTypes.length; i++)
+		{
+			data.writeByte(endTypes[i]);
+			data.writeByte(endConditions[i]);
+			data.writeInt(endQuantifiers[i]);
+		}
+		data.flush();
+	}
+
+	/**
+	Writes this model to a file, creating the file's directory if necessary.
+	*/
+	public void save(String path) throws IOException
+	{
+		File file = new File(path);
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			write(out);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	Reads a model written by write() from a buffer, starting at the buffer's position. The buffer can be a MappedByteBuffer,
+	in which case nothing but the model itself is copied onto the heap.
+	*/
+	public static GameModel read(ByteBuffer in) throws IOException
+	{
+		try
+		{
+			if (in.getInt() != MAGIC)
+				throw new IOException("Not a game model");
+			short version = in.getShort();
+			if (version != 1 && version != VERSION)
+				throw new IOException("Unsupported game model version: " + version);
+			int flags = version >= 2 ? in.get() : 0;
+			boolean partial = (flags & PARTIAL_FLAG) != 0;
+
+			String name = readString(in);
+			int rows = checkIndex(in.getInt(), 1, MAX_SQUARES + 1, "row count");
+			int columns = checkIndex(in.getInt(), 1, MAX_SQUARES / rows + 1, "column count");
+			//the writers index occupancy and zones by player number, so a model for any other number of players can't be used
+			int numPlayers = checkIndex(in.get(), Board.NUM_PLAYERS, Board.NUM_PLAYERS + 1, "player count");
+			long[][] occupancy = new long[numPlayers][];
+			for (int i = 0; i < numPlayers; i++)
+				occupancy[i] = readWords(in);
+
+			String[] moveTypes = new String[in.getInt()];
+			for (int i = 0; i < moveTypes.length; i++)
+				moveTypes[i] = readString(in);
+
+			int pieceCount = in.getInt();
+			String[] pieceNames = new String[pieceCount];
+			int[] previousTypes = new int[pieceCount];
+			int[] motionMasks = new int[pieceCount];
+			int[][] transitionTypes = new int[pieceCount][];
+			long[][][] zones = new long[pieceCount][][];
+			for (int i = 0; i < pieceCount; i++)
+			{
+				pieceNames[i] = readString(in);
+				previousTypes[i] = checkIndex(in.getInt(), REMOVED, pieceCount, "previous piece type");
+				motionMasks[i] = in.getInt();
+				transitionTypes[i] = new int[in.getInt()];
+				for (int j = 0; j < transitionTypes[i].length; j++)
+					transitionTypes[i][j] = checkIndex(in.getInt(), 0, pieceCount, "transition type");
+				if (in.get() != 0)
+				{
+					zones[i] = new long[numPlayers][];
+					for (int j = 0; j < numPlayers; j++)
+						zones[i][j] = readWords(in);
+				}
+			}
+
+			int endCount = in.getInt();
+			byte[] endTypes = new byte[endCount];
+			byte[] endConditions = new byte[endCount];
+			int[] endQuantifiers = new int[endCount];
+			for (int i = 0; i < endCount; i++)
+			{
+				endTypes[i] = (byte) checkIndex(in.get(), 0, END_TYPES.length, "end type");
+				endConditions[i] = (byte) checkIndex(in.get(), 0, END_CONDITIONS.length, "end condition");
+				endQuantifiers[i] = in.getInt();
+			}
+
+			return new GameModel(name, rows, columns, occupancy, moveTypes, pieceNames, previousTypes, motionMasks,
+				transitionTypes, zones, endTypes, endConditions, endQuantifiers, partial);
+		}
+		catch (RuntimeException e) // BufferUnderflowException, NegativeArraySizeException, etc. on a truncated or corrupt model
+		{
+			throw new IOException("Corrupt game model", e);
+		}
+	}
+
+	/**
+	Reads a model written by write() from a stream.
+	*/
+	public static GameModel read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+			bytes.write(buffer, 0, n);
+		return read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	Reads a model saved by save() by memory-mapping the file.
+	*/
+	public static GameModel load(String path) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try
+		{
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream data, String s) throws IOException
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+
+	//the accessors index arrays with what read() reads, so an index out of range is caught there rather than where it is used
+	private static int checkIndex(int index, int min, int limit, String what) throws IOException
+	{
+		if (index < min || index >= limit)
+			throw new IOException("Corrupt game model: " + what + " " + index + " out of range");
+		return index;
+	}
+
+	private static String readString(ByteBuffer in)
+	{
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeWords(DataOutputStream data, long[] words) throws IOException
+	{
+		data.writeInt(words.length);
+		for (long word: words)
+			data.writeLong(word);
+	}
+
+	private static long[] readWords(ByteBuffer in)
+	{
+		long[] words = new long[in.getInt()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = in.getLong();
+		return words;
+	}
+}
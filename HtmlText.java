@@ -0,0 +1,353 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+Extracts the text of an HTML page (eg: a scraped page of rules) as paragraphs separated by blank lines, leaving out markup and
+the boilerplate around the rules, so that none of it is ever annotated.
+
+The page is read as a stream, one character at a time, by a small tokenizer that doesn't build a document tree, so pages of any
+size (and broken markup) take constant memory besides the text kept. Left out are the contents of elements that never hold the
+rules (the head, scripts, styles, navigation, headers, footers, asides, form controls and the like) and of any element whose class
+or id marks it as boilerplate (eg: class="sidebar", id="ad-banner", class="cookie-notice"). Forms themselves are kept, as some
+sites (eg: ASP.NET pages) wrap their whole body in one. A class or id only marks boilerplate if one of its names is made of nothing
+but boilerplate words and qualifiers (sidebar, ad-banner, site-footer), not if it merely mentions one (has-sidebar, no-nav), as
+the container of the rules is often named after the boilerplate around it. Block elements (paragraphs, list items,
+headings, table rows...) end paragraphs, and character references (&amp;, &#8217;...) are decoded.
+*/
+public class HtmlText
+{
+	//extensions of pages that are HTML whatever they start with (pages generated by PHP, SSI and ASP are saved under their own)
+	private static final String[] HTML_EXTENSIONS = {".html", ".htm", ".xhtml", ".php", ".shtml", ".asp"};
+	private static final int SNIFFED = 4096; // how much of text isHtml() looks at, to get past comments and declarations
+	private static final HashSet<String> SKIPPED = new HashSet<String>(Arrays.asList("head", "script", "style", "noscript",
+		"template", "svg", "nav", "header", "footer", "aside", "button", "select", "textarea", "iframe", "menu"));
+	private static final HashSet<String> RAW_TEXT = new HashSet<String>(Arrays.asList("script", "style")); // may contain '<'
+	private static final HashSet<String> BLOCKS = new HashSet<String>(Arrays.asList("p", "div", "br", "li", "ul", "ol", "dl",
+		"dt", "dd", "h1", "h2", "h3", "h4", "h5", "h6", "tr", "table", "section", "article", "main", "blockquote", "pre", "hr",
+		"body", "center"));
+	//the elements that can be left out by class or id; only those whose end tags can't be omitted, as a missing end tag would
+	//leave out the rest of the page
+	private static final HashSet<String> CONTAINERS = new HashSet<String>(Arrays.asList("div", "section", "span", "ul", "ol",
+		"table", "aside", "nav", "header", "footer", "article"));
+	private static final HashSet<String> VOID = new HashSet<String>(Arrays.asList("br", "hr", "img", "meta", "link", "input",
+		"area", "base", "col", "embed", "param", "source", "track", "wbr"));
+	private static final Pattern BOILERPLATE = Pattern.compile("nav|navbar|navigation|menu|header|footer|sidebar|ad|ads|advert\\w*|" +
+		"sponsor\\w*|promo\\w*|banner|cookie\\w*|share|social|breadcrumbs?|comments?|related");
+	//words that may accompany a boilerplate word in a class or id without making it anything else (eg: site-footer, cookie-notice)
+	private static final HashSet<String> QUALIFIERS = new HashSet<String>(Arrays.asList("site", "page", "main", "top", "bottom",
+		"left", "right", "global", "bar", "box", "block", "area", "section", "widget", "wrapper", "container", "links", "list",
+		"notice", "consent"));
+	private static final Pattern CLASS_OR_ID = Pattern.compile("(?<![\\w-])(?:class|id)\\s*=\\s*" +
+		"(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))");
+	private static final HashMap<String,String> ENTITIES = new HashMap<String,String>();
+
+	static
+	{
+		String[] entities = {"amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'", "nbsp", " ", "ndash", "\u2013",
+			"mdash", "\u2014", "lsquo", "\u2018", "rsquo", "\u2019", "ldquo", "\u201c", "rdquo", "\u201d", "hellip", "\u2026",
+			"times", "\u00d7", "copy", "\u00a9"};
+		for (int i = 0; i < entities.length; i += 2)
+			ENTITIES.put(entities[i], entities[i + 1]);
+	}
+
+	private Reader in;
+	private StringBuilder text;
+	private boolean space; // whether a space is due before the next word
+	private String skipping; // the element whose contents are being left out, or null
+	private int skipDepth; // how many elements named skipping are open inside the one being left out
+	private int pushedBack = -1;
+
+	private HtmlText(Reader in)
+	{
+		this.in = in;
+		this.text = new StringBuilder();
+	}
+
+	/**
+	Reads an HTML page to its end and returns its text. The reader is not closed.
+	*/
+	public static String extract(Reader in) throws IOException
+	{
+		HtmlText page = new HtmlText(in);
+		page.run();
+		return page.text.toString().trim() + "\n";
+	}
+
+	/**
+	Checks if text looks like an HTML page rather than plain text: if name has the extension of a page (eg: .html or .php), or
+	text starts with a doctype or an html tag, after any byte order mark, XML declaration (<?xml ...?>) and comments (eg: the
+	<!-- saved from url=... --> a browser adds to a saved page).
+	*/
+	public static boolean isHtml(String name, String text)
+	{
+		String lowerName = name.toLowerCase(Locale.ROOT);
+		for (String extension: HTML_EXTENSIONS)
+		{
+			if (lowerName.endsWith(extension))
+				return true;
+		}
+		String start = text.substring(0, Math.min(text.length(), SNIFFED)).toLowerCase(Locale.ROOT);
+		int i = start.startsWith("\uFEFF") ? 1 : 0;
+		while (true)
+		{
+			while (i < start.length() && Character.isWhitespace(start.charAt(i)))
+				i++;
+			String end = start.startsWith("<!--", i) ? "-->" : start.startsWith("<?", i) ? "?>" : null;
+			if (end == null)
+				break;
+			int close = start.indexOf(end, i);
+			if (close < 0)
+				return true; //nothing but markup as far as it was looked at
+			i = close + end.length();
+		}
+		return start.startsWith("<!doctype html", i) || start.startsWith("<html", i);
+	}
+
+	private int read() throws IOException
+	{
+		if (pushedBack >= 0)
+		{
+			int c = pushedBack;
+			pushedBack = -1;
+			return c;
+		}
+		return in.read();
+	}
+
+	private void run() throws IOException
+	{
+		for (int c = read(); c >= 0; c = read())
+		{
+			if (c == '<')
+				tag();
+			else if (skipping != null)
+				continue;
+			else if (c == '&')
+			{
+				String decoded = entity();
+				if (decoded.trim().isEmpty()) //eg: &nbsp;
+					space = true;
+				else
+					append(decoded);
+			}
+			else if (Character.isWhitespace(c))
+				space = true;
+			else if (c == '\uFEFF') //a byte order mark, which isn't text
+				continue;
+			else
+				append(String.valueOf((char) c));
+		}
+	}
+
+	private void append(String word)
+	{
+		if (space && text.length() > 0 && text.charAt(text.length() - 1) != '\n')
+			text.append(' ');
+		space = false;
+		text.append(word);
+	}
+
+	private void endParagraph()
+	{
+		space = false;
+		if (text.length() > 0 && !(text.length() >= 2 && text.charAt(text.length() - 1) == '\n' &&
+			text.charAt(text.length() - 2) == '\n'))
+		{
+			if (text.charAt(text.length() - 1) != '\n')
+				text.append('\n');
+			text.append('\n');
+		}
+	}
+
+	//reads a tag, comment or declaration after its '<'
+	private void tag() throws IOException
+	{
+		int c = read();
+		if (c == '!')
+		{
+			skipComment();
+			return;
+		}
+		if (c != '/' && !Character.isLetter(c))
+		{
+			//a lone '<' in text
+			pushedBack = c;
+			if (skipping == null)
+				append("<");
+			return;
+		}
+
+		boolean closing = c == '/';
+		StringBuilder name = new StringBuilder();
+		if (!closing)
+			name.append((char) c);
+		StringBuilder attributes = new StringBuilder();
+		char quote = 0;
+		for (c = read(); c >= 0; c = read())
+		{
+			if (quote != 0)
+			{
+				if (c == quote)
+					quote = 0;
+				attributes.append((char) c);
+			}
+			else if (c == '>')
+				break;
+			else if (c == '"' || c == '\'')
+			{
+				quote = (char) c;
+				attributes.append((char) c);
+			}
+			else if (attributes.length() == 0 && !Character.isWhitespace(c) && c != '/')
+				name.append((char) c);
+			else
+				attributes.append((char) c);
+		}
+		String element = name.toString().toLowerCase(Locale.ROOT);
+		boolean selfClosing = attributes.length() > 0 && attributes.charAt(attributes.length() - 1) == '/';
+
+		if (skipping != null)
+		{
+			if (skipping.equals("head") && element.equals("body")) //the end tag of the head can be omitted
+			{
+				skipping = null;
+				return;
+			}
+			if (element.equals(skipping) && !selfClosing)
+			{
+				if (closing && skipDepth-- == 0)
+					skipping = null;
+				else if (!closing)
+					skipDepth++;
+			}
+			return;
+		}
+
+		if (!closing && !selfClosing && (SKIPPED.contains(element) || CONTAINERS.contains(element) && isBoilerplate(attributes)))
+		{
+			if (RAW_TEXT.contains(element))
+				skipRawText(element);
+			else
+			{
+				skipping = element;
+				skipDepth = 0;
+			}
+			return;
+		}
+		if (BLOCKS.contains(element))
+			endParagraph();
+		else if (element.equals("td") || element.equals("th"))
+			space = true; //other inline elements don't separate words (eg: <b>king</b>s)
+	}
+
+	private static boolean isBoilerplate(CharSequence attributes)
+	{
+		Matcher matcher = CLASS_OR_ID.matcher(attributes);
+		while (matcher.find())
+		{
+			for (int group = 1; group <= 3; group++)
+			{
+				String value = matcher.group(group);
+				if (value == null)
+					continue;
+				for (String name: value.toLowerCase(Locale.ROOT).trim().split("\\s+")) //a class may have several names
+				{
+					if (isBoilerplateName(name))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	//whether a class or id name is made of boilerplate words and qualifiers only, with at least one boilerplate word
+	private static boolean isBoilerplateName(String name)
+	{
+		boolean boilerplate = false;
+		for (String word: name.split("[_-]+"))
+		{
+			if (BOILERPLATE.matcher(word).matches())
+				boilerplate = true;
+			else if (!QUALIFIERS.contains(word))
+				return false;
+		}
+		return boilerplate;
+	}
+
+	//skips the contents of a script or style, which end at the first </script or </style whatever they hold
+	private void skipRawText(String element) throws IOException
+	{
+		String end = "</" + element;
+		int matched = 0;
+		for (int c = read(); c >= 0; c = read())
+		{
+			matched = Character.toLowerCase(c) == end.charAt(matched) ? matched + 1 : (c == '<' ? 1 : 0);
+			if (matched == end.length())
+			{
+				while (c >= 0 && c != '>')
+					c = read();
+				return;
+			}
+		}
+	}
+
+	//skips a comment (<!-- ... -->) or declaration (<!DOCTYPE ...>) after its "<!"
+	private void skipComment() throws IOException
+	{
+		int c = read();
+		if (c == '-')
+		{
+			int dashes = 0;
+			for (c = read(); c >= 0; c = read())
+			{
+				if (c == '>' && dashes >= 2)
+					return;
+				dashes = c == '-' ? dashes + 1 : 0;
+			}
+			return;
+		}
+		while (c >= 0 && c != '>')
+			c = read();
+	}
+
+	//reads a character reference after its '&', returning what it stands for, or the text read if it isn't one
+	private String entity() throws IOException
+	{
+		StringBuilder name = new StringBuilder();
+		for (int c = read(); c >= 0; c = read())
+		{
+			if (c == ';')
+				return decode(name.toString());
+			if (!Character.isLetterOrDigit(c) && c != '#' || name.length() > 10)
+			{
+				pushedBack = c;
+				break;
+			}
+			name.append((char) c);
+		}
+		return "&" + name;
+	}
+
+	private static String decode(String name)
+	{
+		try
+		{
+			if (name.startsWith("#x") || name.startsWith("#X"))
+				return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+			if (name.startsWith("#"))
+				return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+		}
+		catch (IllegalArgumentException e) //not a number, or not a code point
+		{
+			return "&" + name + ";";
+		}
+		String decoded = ENTITIES.get(name);
+		return decoded != null ? decoded : "&" + name + ";";
+	}
+}
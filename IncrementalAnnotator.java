@@ -0,0 +1,164 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import edu.stanford.nlp.ling.*;
+import edu.stanford.nlp.pipeline.*;
+import edu.stanford.nlp.util.*;
+
+/**
+Annotates successive versions of the same rulesets (eg: as their authors edit and save them), re-annotating only the sentences
+that changed since the last version of each.
+
+The new version is tokenized and split into sentences, and its sentences are matched against those of the last version by their
+normalized text (see SentenceCache.normalize()): first the unchanged sentences at the start and at the end, then, in between,
+any sentence that was only moved (eg: with its paragraph). Matched sentences get the annotations they had in the last version,
+copied onto their new words (so their word offsets and sentence index are those of the new version); only the rest are tagged,
+parsed and recognized again. Coreference is then resolved over the whole new version, as an edit anywhere can change the
+antecedent of an anaphor anywhere after it, and it is a small part of the cost of annotation.
+
+Unlike a SentenceCache, which remembers sentences from every ruleset up to its capacity, this remembers exactly the sentences of
+the last version of each ruleset, with the annotations they had in that ruleset. Once the last versions hold more than capacity
+sentences, the rulesets annotated least recently are forgotten, so that a long-running server whose clients send ever new games
+doesn't run out of memory; a forgotten ruleset is simply annotated in full the next time.
+*/
+public class IncrementalAnnotator
+{
+	private LinkedHashMap<String,Version> versions; // the last version of each ruleset, least recently used first; guarded by this
+	private int capacity;
+	private long kept; // the number of sentences in versions; guarded by this
+	private long sentences; // guarded by this
+	private long reannotated; // guarded by this
+	private long forgotten; // rulesets forgotten to stay within capacity; guarded by this
+
+	/**
+	capacity is the number of sentences kept, over all rulesets; the last version annotated is always kept, whatever its size.
+	*/
+	public IncrementalAnnotator(int capacity)
+	{
+		this.versions = new LinkedHashMap<String,Version>(16, 0.75f, true);
+		this.capacity = capacity;
+	}
+
+	/**
+	Annotates text, the new version of the ruleset called name, as RulesParser.getPipeline() would.
+	*/
+	public Annotation annotate(String name, String text)
+	{
+		Annotation document = SentenceCache.split(text);
+		List<CoreMap> newSentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+		String[] keys = new String[newSentences.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = SentenceCache.normalize(newSentences.get(i));
+
+		Version last;
+		synchronized (this)
+		{
+			last = versions.get(name);
+		}
+		Version version = new Version(keys, new SentenceCache.Entry[keys.length]);
+		List<CoreMap> changed = new ArrayList<CoreMap>();
+		int[] matches = last != null ? last.match(keys) : null;
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (matches != null && matches[i] >= 0 && last.entries[matches[i]].applyTo(newSentences.get(i)))
+				version.entries[i] = last.entries[matches[i]];
+			else
+				changed.add(newSentences.get(i));
+		}
+
+		SentenceCache.annotateSentences(text, changed);
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (version.entries[i] == null)
+				version.entries[i] = new SentenceCache.Entry(newSentences.get(i));
+		}
+		SentenceCache.resolveCoreference(document);
+		synchronized (this)
+		{
+			forget(name);
+			versions.put(name, version);
+			kept += keys.length;
+			sentences += keys.length;
+			reannotated += changed.size();
+			Iterator<Version> leastRecent = versions.values().iterator();
+			while (kept > capacity && versions.size() > 1)
+			{
+				kept -= leastRecent.next().keys.length;
+				leastRecent.remove();
+				forgotten++;
+			}
+		}
+		return document;
+	}
+
+	/**
+	Forgets the last version of a ruleset (eg: once its file is deleted).
+	*/
+	public synchronized void forget(String name)
+	{
+		Version version = versions.remove(name);
+		if (version != null)
+			kept -= version.keys.length;
+	}
+
+	/**
+	Returns a line reporting how many sentences were annotated, and how many of them had changed and were re-annotated.
+	*/
+	public synchronized String getReport()
+	{
+		long percent = sentences > 0 ? reannotated * 100 / sentences : 0;
+		return "Incremental annotation: " + sentences + " sentences, " + reannotated + " re-annotated (" + percent + "%), " +
+			versions.size() + " rulesets (" + kept + " sentences) remembered, " + forgotten + " forgotten";
+	}
+
+	private static class Version
+	{
+		private String[] keys; // the normalized text of each sentence
+		private SentenceCache.Entry[] entries; // the annotations of each sentence
+
+		private Version(String[] keys, SentenceCache.Entry[] entries)
+		{
+			this.keys = keys;
+			this.entries = entries;
+		}
+
+		/**
+		Returns, for each of newKeys, the index of the sentence of this version it matches, or -1 if it is new or has changed.
+		*/
+		private int[] match(String[] newKeys)
+		{
+			int[] matches = new int[newKeys.length];
+			Arrays.fill(matches, -1);
+			int prefix = 0;
+			while (prefix < newKeys.length && prefix < keys.length && newKeys[prefix].equals(keys[prefix]))
+			{
+				matches[prefix] = prefix;
+				prefix++;
+			}
+			int suffix = 0;
+			while (suffix < newKeys.length - prefix && suffix < keys.length - prefix &&
+				newKeys[newKeys.length - 1 - suffix].equals(keys[keys.length - 1 - suffix]))
+			{
+				matches[newKeys.length - 1 - suffix] = keys.length - 1 - suffix;
+				suffix++;
+			}
+
+			//in between, sentences are matched by their text wherever they are, each old sentence at most once
+			HashMap<String,ArrayDeque<Integer>> unmatched = new HashMap<String,ArrayDeque<Integer>>();
+			for (int j = prefix; j < keys.length - suffix; j++)
+				unmatched.computeIfAbsent(keys[j], key -> new ArrayDeque<Integer>()).add(j);
+			for (int i = prefix; i < newKeys.length - suffix; i++)
+			{
+				ArrayDeque<Integer> candidates = unmatched.get(newKeys[i]);
+				if (candidates != null && !candidates.isEmpty())
+					matches[i] = candidates.poll();
+			}
+			return matches;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/**
+Writes a GameModel as JSON, streamed straight into the output buffer (no tree of JSON objects is built). The document looks like:
+
+{
+	"name": "checkers",
+	"partial": false,
+	"board": {"rows": 8, "columns": 8, "setup": [[[0, 1], [0, 3], ...], [[7, 0], ...]]},
+	"moveTypes": ["move", "jump"],
+	"pieces": [
+		{"id": 0, "name": "checker", "default": true, "previousType": null, "motionTypes": ["FORWARD", "DIAGONAL"],
+			"transitionTypes": ["king"], "zones": null},
+		{"id": 1, "name": "king", "default": false, "previousType": "checker", "motionTypes": [...],
+			"transitionTypes": [], "zones": [[[7, 0], ...], [[0, 0], ...]]}
+	],
+	"endConditions": [{"type": "win", "condition": "pieces-remaining", "quantifier": 0}]
+}
+
+Squares are [row, column] pairs of Board coordinates, and setup and zones hold one list of squares per player (player 1 first).
+previousType is null for default pieces and for pieces whose previous type was removed from the model.
+quantifier is only present for conditions that have one. partial is true if parsing ran out of time (see GameModel.isPartial()).
+*/
+public class JSONWriter extends ModelWriter
+{
+	public JSONWriter(GameModel model)
+	{
+		this(model, new TextBuffer());
+	}
+
+	public JSONWriter(GameModel model, TextBuffer buffer)
+	{
+		super(model, buffer);
+	}
+
+	protected void writeModel()
+	{
+		out.append("{\n");
+		out.append("\t\"name\": ");
+		writeString(model.getName());
+		out.append(",\n");
+		out.append("\t\"partial\": ").append(model.isPartial() ? "true" : "false").append(",\n");
+
+		writeBoard();
+		writeMoveTypes();
+		writePieces();
+		writeEndConditions();
+
+		out.append("}\n");
+	}
+
+	public String getExtension()
+	{
+		return "json";
+	}
+
+	private void writeBoard()
+	{
+		out.append("\t\"board\": {\"rows\": ").append(model.getRows()).append(", \"columns\": ").append(model.getColumns());
+		out.append(", \"setup\": [");
+		for (int playerNum = 1; playerNum <= Board.NUM_PLAYERS; playerNum++)
+		{
+			if (playerNum > 1)
+				out.append(", ");
+			writeSquares(model.getOccupancy(playerNum));
+		}
+		out.append("]},\n");
+	}
+
+	private void writeMoveTypes()
+	{
+		out.append("\t\"moveTypes\": [");
+		for (int m = 0; m < model.getMoveTypeCount(); m++)
+		{
+			if (m > 0)
+				out.append(", ");
+			writeString(model.getMoveType(m));
+		}
+		out.append("],\n");
+	}
+
+	private void writePieces()
+	{
+		out.append("\t\"pieces\": [\n");
+		for (int p = 0; p < model.getPieceCount(); p++)
+		{
+			deadline.check();
+			out.append("\t\t{\"id\": ").append(p).append(", \"name\": ");
+			writeString(model.getPieceName(p));
+			out.append(", \"default\": ").append(model.isDefault(p) ? "true" : "false");
+
+			out.append(", \"previousType\": ");
+			int previousType = model.getPreviousType(p);
+			if (previousType >= 0)
+				writeString(model.getPieceName(previousType));
+			else
+				out.append("null");
+
+			out.append(", \"motionTypes\": [");
+			boolean first = true;
+			for (Direction d: Direction.values())
+			{
+				if (model.hasMotionType(p, d))
+				{
+					if (!first)
+						out.append(", ");
+					writeString(d.name());
+					first = false;
+				}
+			}
+			out.append(']');
+
+			out.append(", \"transitionTypes\": [");
+			for (int t = 0; t < model.getTransitionTypeCount(p); t++)
+			{
+				if (t > 0)
+					out.append(", ");
+				writeString(model.getPieceName(model.getTransitionType(p, t)));
+			}
+			out.append(']');
+
+			out.append(", \"zones\": ");
+			if (!hasZones(p))
+				out.append("null");
+			else
+			{
+				out.append('[');
+				for (int playerNum = 1; playerNum <= Board.NUM_PLAYERS; playerNum++)
+				{
+					if (playerNum > 1)
+						out.append(", ");
+					writeSquares(model.getZone(p, playerNum));
+				}
+				out.append(']');
+			}
+
+			out.append('}');
+			if (p != model.getPieceCount() - 1)
+				out.append(',');
+			out.newLine();
+		}
+		out.append("\t],\n");
+	}
+
+	private void writeEndConditions()
+	{
+		out.append("\t\"endConditions\": [");
+		for (int e = 0; e < model.getEndConditionCount(); e++)
+		{
+			EndCondition ec = model.getEndCondition(e);
+			if (e > 0)
+				out.append(", ");
+			out.append("{\"type\": ");
+			writeString(ec.getType());
+			out.append(", \"condition\": ");
+			writeString(ec.getCondition());
+			if (ec.hasQuantifier())
+				out.append(", \"quantifier\": ").append(ec.getQuantifier());
+			out.append('}');
+		}
+		out.append("]\n");
+	}
+
+	//whether piece type p has a zone for any player
+	private boolean hasZones(int p)
+	{
+		for (int playerNum = 1; playerNum <= Board.NUM_PLAYERS; playerNum++)
+		{
+			if (!model.getZone(p, playerNum).isEmpty())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	Writes the squares set in a Bitboard as a list of [row, column] pairs.
+	*/
+	private void writeSquares(Bitboard squares)
+	{
+		int columns = model.getColumns();
+		out.append('[');
+		int first = squares.nextSetBit(0);
+		for (int square = first; square >= 0; square = squares.nextSetBit(square+1))
+		{
+			if (square != first)
+				out.append(", ");
+			out.append('[').append(square / columns).append(", ").append(square % columns).append(']');
+		}
+		out.append(']');
+	}
+
+	/**
+	Writes s as a JSON string literal, escaping quotes, backslashes and control characters.
+	*/
+	private void writeString(String s)
+	{
+		out.append('"');
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			switch (c)
+			{
+				case '"':
+					out.append("\\\"");
+					break;
+				case '\\':
+					out.append("\\\\");
+					break;
+				case '\n':
+					out.append("\\n");
+					break;
+				case '\r':
+					out.append("\\r");
+					break;
+				case '\t':
+					out.append("\\t");
+					break;
+				default:
+					if (c < 0x20)
+					{
+						out.append("\\u00");
+						out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+					}
+					else
+						out.append(c);
+			}
+		}
+		out.append('"');
+	}
+}
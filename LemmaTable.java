@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+Interns lemma Strings as dense integer ids (0, 1, 2, ...), so that once a lemma has been interned, comparing it to another lemma
+or using it as a key is a single integer operation instead of a String hash or comparison.
+A single LemmaTable is shared by every parser working on the same ruleset.
+*/
+public class LemmaTable
+{
+	private HashMap<String,Integer> ids; // maps each interned lemma to its id
+	private ArrayList<String> lemmas; // lemmas.get(id) holds the lemma with that id
+
+	public LemmaTable()
+	{
+		ids = new HashMap<String,Integer>();
+		lemmas = new ArrayList<String>();
+	}
+
+	/**
+	Returns the id of a lemma, assigning it the next unused id if it has not been interned yet.
+	*/
+	public int intern(String lemma)
+	{
+		Integer id = ids.get(lemma);
+		if (id == null)
+		{
+			id = lemmas.size();
+			ids.put(lemma, id);
+			lemmas.add(lemma);
+		}
+		return id;
+	}
+
+	/**
+	Returns the id of a lemma, or -1 if the lemma has never been interned.
+	*/
+	public int getId(String lemma)
+	{
+		Integer id = ids.get(lemma);
+		if (id == null)
+			return -1;
+		return id;
+	}
+
+	/**
+	Returns the lemma with a given id.
+	*/
+	public String getLemma(int id)
+	{
+		return lemmas.get(id);
+	}
+
+	/**
+	Returns the number of lemmas interned so far; every id is less than this value.
+	*/
+	public int size()
+	{
+		return lemmas.size();
+	}
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+Measures, one document at a time, how much heap a parsed document holds on to with and without CoreNLP's annotations (see
+RulesParser.setLowMemory()), along with the peak heap use while it is annotated.
+
+The reduction reported is in the heap retained by a document once it has been annotated, which is what --low-memory saves for
+every document waiting in a batch. It is not a reduction in the peak: the peak is reached while CoreNLP annotates, before the
+features are extracted and anything can be dropped, so it is the same with and without --low-memory, and is reported once.
+
+Each measurement forces garbage collections, so this is a diagnostic to run on its own (Driver --memory-report), not something to
+leave on in a batch; and as the JVM reports heap use in whole regions and pages, small documents give rough figures.
+*/
+public class MemoryReport
+{
+	private long totalAnnotated; // bytes held with annotations, summed over every document measured
+	private long totalFeatures; // bytes held with features only
+	private long maxPeak;
+	private int documents;
+
+	/**
+	Annotates a ruleset and returns one line reporting the heap it holds on to with its annotations, the heap it holds on to
+	once they have been dropped, the reduction in retained heap, and the peak heap use while it was annotated.
+	*/
+	public String measure(String fileName) throws IOException
+	{
+		RulesParser parser = new RulesParser(fileName);
+		parser.loadText();
+		long baseline = usedAfterCollection();
+
+		resetPeaks();
+		parser.annotate();
+		long peak = peakUsed() - baseline;
+		long annotated = usedAfterCollection() - baseline;
+
+		parser.dropAnnotations();
+		long featuresOnly = usedAfterCollection() - baseline;
+		//parser isn't used after dropAnnotations(), so without this it (and its features) could be collected before the figure above
+		Reference.reachabilityFence(parser);
+
+		documents++;
+		totalAnnotated += annotated;
+		totalFeatures += featuresOnly;
+		maxPeak = Math.max(maxPeak, peak);
+		return fileName + ": " + describe(annotated, featuresOnly) + ", peak " + kilobytes(peak) + " while annotating";
+	}
+
+	/**
+	Returns a summary of every document measured so far.
+	*/
+	public String getSummary()
+	{
+		if (documents == 0)
+			return "No documents measured";
+		return documents + " documents: " + describe(totalAnnotated / documents, totalFeatures / documents) + " on average, peak " +
+			kilobytes(maxPeak) + " while annotating";
+	}
+
+	private static String describe(long annotated, long featuresOnly)
+	{
+		long saved = annotated - featuresOnly;
+		long percent = annotated > 0 ? saved * 100 / annotated : 0;
+		return "held " + kilobytes(annotated) + " with annotations, " + kilobytes(featuresOnly) + " with features only (" +
+			kilobytes(saved) + ", " + percent + "% less retained)";
+	}
+
+	private static String kilobytes(long bytes)
+	{
+		return (bytes / 1024) + " KB";
+	}
+
+	private static long usedAfterCollection()
+	{
+		//a single collection may leave objects that became garbage during it, so collect until the figure settles
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++)
+		{
+			System.gc();
+			long now = heapUsed();
+			if (now >= used)
+				break;
+			used = now;
+		}
+		return used;
+	}
+
+	private static long heapUsed()
+	{
+		long used = 0;
+		for (MemoryPoolMXBean pool: heapPools())
+			used += pool.getUsage().getUsed();
+		return used;
+	}
+
+	//the peaks of the pools may not all have been at the same moment, so this can overstate the true peak somewhat
+	private static long peakUsed()
+	{
+		long used = 0;
+		for (MemoryPoolMXBean pool: heapPools())
+			used += pool.getPeakUsage().getUsed();
+		return used;
+	}
+
+	private static void resetPeaks()
+	{
+		for (MemoryPoolMXBean pool: heapPools())
+			pool.resetPeakUsage();
+	}
+
+	private static List<MemoryPoolMXBean> heapPools()
+	{
+		List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+				pools.add(pool);
+		}
+		return pools;
+	}
+}
@@ -0,0 +1,120 @@
+import java.io.*;
+import java.nio.channels.WritableByteChannel;
+
+/**
+Base class of every output format a GameModel can be exported to (ZRF, JSON, binary).
+A subclass only renders the model into a TextBuffer; the whole output is then streamed in one piece to whatever sink the caller
+supplies: an OutputStream, a channel, a byte array, or a file that is replaced atomically. A sink therefore never receives a
+partially written output. The buffer can be shared by writers used one at a time, so a batch that writes many outputs only grows
+one buffer.
+*/
+public abstract class ModelWriter
+{
+	protected GameModel model;
+	protected TextBuffer out; // the output is assembled here before being written to any sink
+	protected Deadline deadline; // checked by subclasses at least once per piece while rendering
+
+	protected ModelWriter(GameModel model, TextBuffer buffer)
+	{
+		this.model = model;
+		this.out = buffer;
+		this.deadline = Deadline.none();
+	}
+
+	/**
+	Sets a time limit on rendering; once it expires, render() and every method that writes throw a DeadlineExceededException.
+	*/
+	public void setDeadline(Deadline deadline)
+	{
+		this.deadline = deadline;
+	}
+
+	public GameModel getModel()
+	{
+		return model;
+	}
+
+	/**
+	Appends the whole output for the model to out.
+	*/
+	protected abstract void writeModel();
+
+	/**
+	Returns the file extension of this format, without a dot (eg: "zrf").
+	*/
+	public abstract String getExtension();
+
+	/**
+	Returns the directory the outputs with a given extension are kept in, both on disk and in archives: models for binary models,
+	and the extension itself for every other format (eg: zrf).
+	*/
+	public static String directoryOf(String extension)
+	{
+		return extension.equals("model") ? "models" : extension;
+	}
+
+	/**
+	Assembles the whole output in the buffer (clearing it first) and returns the buffer.
+	*/
+	public TextBuffer render()
+	{
+		out.clear();
+		deadline.check();
+		writeModel();
+		return out;
+	}
+
+	public void write(OutputStream sink) throws IOException
+	{
+		render().writeTo(sink);
+		sink.flush();
+	}
+
+	public void write(WritableByteChannel sink) throws IOException
+	{
+		render().writeTo(sink);
+	}
+
+	/**
+	Writes the output to a file at path, replacing any previous version of the file atomically.
+	*/
+	public void publish(String path) throws IOException
+	{
+		render().publish(path);
+	}
+
+	/**
+	Writes the output to directory/name.extension (where name is the name of the model), replacing any previous version atomically.
+	*/
+	public void publishTo(String directory) throws IOException
+	{
+		publish(pathIn(directory));
+	}
+
+	/**
+	Returns the path publishTo() writes to in directory: directory/name.extension.
+	*/
+	public String pathIn(String directory)
+	{
+		return directory + "/" + model.getName() + "." + getExtension();
+	}
+
+	/**
+	Writes the output to a file at path through a manifest, which leaves the file alone if it already holds exactly this output.
+	Returns true if the file was written.
+	*/
+	public boolean publish(String path, OutputManifest manifest) throws IOException
+	{
+		return manifest.publish(path, render());
+	}
+
+	public boolean publishTo(String directory, OutputManifest manifest) throws IOException
+	{
+		return publish(pathIn(directory), manifest);
+	}
+
+	public byte[] toByteArray()
+	{
+		return render().toByteArray();
+	}
+}
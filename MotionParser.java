@@ -1,39 +1,43 @@
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.EnumSet;
 
 import edu.stanford.nlp.ling.*;
-import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.util.*;
 
 
 public class MotionParser
 {
 	private RulesParser parent;
-	private List<CoreMap> sentences;
+	private RulesetFeatures features; //everything the parser needs from the annotations of the text
 	private String[][] lemmas; //lemmas[i][j] holds the lemma of the jth word in the ith sentence of the text
 	private String[][] partsOfSpeech; //partsOfSpeech[i][j] holds the POS of the jth word in the ith sentence of the text
+	private Deadline deadline; //checked once per sentence, so that a conversion that runs out of time stops promptly
+	private ConceptTagger concepts; //concepts of each word of the text
 	private ArrayList<String> moveTypes;
 	private ArrayList<Piece> pieceTypes;
+	private PieceIndex pieceIndex;
 
-	public MotionParser(RulesParser parent, List<CoreMap> sentences, String[][] lemmas, 
-		String[][] partsOfSpeech, ArrayList<String> moveTypes, ArrayList<Piece> pieceTypes)
+	public MotionParser(RulesParser parent, RulesetFeatures features, String[][] lemmas, 
+		String[][] partsOfSpeech, ArrayList<String> moveTypes, ArrayList<Piece> pieceTypes, PieceIndex pieceIndex)
 	{
 		this.parent = parent;
-		this.sentences = sentences;
+		this.features = features;
 		this.lemmas = lemmas;
 		this.partsOfSpeech = partsOfSpeech;
+		this.concepts = parent.getConceptTagger();
+		this.deadline = parent.getDeadline();
 		this.moveTypes = moveTypes;
 		this.pieceTypes = pieceTypes;
+		this.pieceIndex = pieceIndex;
 	}
 
 	public void parseAll()
 	{
 		for (Piece p: pieceTypes)
 		{ 
+			deadline.check();
 			ArrayList<Integer> indices = determineMotionSentences(p);
-			ArrayList<Direction> motionTypes = parseMotion(p, indices);
+			EnumSet<Direction> motionTypes = parseMotion(p, indices);
 			p.addMotionTypes(motionTypes);
 		}
 	}
@@ -69,14 +73,12 @@ public class MotionParser
 		*/
 
 		//iterate over all sentences
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			CoreMap sentence = sentences.get(i); //ith (current) sentence
+			deadline.check();
 
 			//dependencies of the current sentence
-			String[] dependencies = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-				SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			boolean isMotionSentence = false;
 			int sentenceIndex = -1;
@@ -105,7 +107,7 @@ public class MotionParser
 				we have to treat this the same as if the piece's name itself were an argument.) */
 				if (d.contains("compound("))
 				{
-					if (p.isAnyName(lemma2))
+					if (pieceIndex.isName(p, i, index2))
 					{
 						isNameCompounded = true;
 						compoundedNounIndex = index1;
@@ -113,7 +115,7 @@ public class MotionParser
 					/* On the other hand, if the modified noun in the noun compound is one of the names of p, we should NOT consider
 					this a motion sentence; in our previous example, "King pieces can move in both directions, forward and backward"
 					should NOT be considered a motion sentence for p = "piece". */
-					else if (p.isAnyName(lemma1))
+					else if (pieceIndex.isName(p, i, index1))
 					{
 						isMotionSentence = false;
 						break;
@@ -128,7 +130,7 @@ public class MotionParser
 					//if p is a transition type, previousType holds its previous type
 					Piece previousType = p.getPreviousType();
 					//if the argument of the motion predicate is any of the names of p, this is probably a motion sentence
-					if (p.isAnyName(lemma2))
+					if (pieceIndex.isName(p, i, index2))
 					{
 						isMotionSentence = true;
 						sentenceIndex = i;
@@ -141,7 +143,7 @@ public class MotionParser
 						/* We consider this a motion sentence if the pronoun's antecedent is any of the names
 						of p, and if the sentence contaning the antecedent (assumed to be either the current
 						sentence or the previous one) is not a transition statement of p. */
-						if (p.isAnyName(antecedent) && !p.isTransitionSentence(i) && !p.isTransitionSentence(i-1))
+						if (pieceIndex.isName(p, antecedent) && !p.isTransitionSentence(i) && !p.isTransitionSentence(i-1))
 						{
 							isMotionSentence = true;
 							sentenceIndex = i;
@@ -157,7 +159,7 @@ public class MotionParser
 						if it is, we must still consider the current sentence a motion sentence for p. 
 						(If the antecedent is not in the previous sentence but instead is in the current one, and the sentence is
 						a transition sentence for previousType, it will already be added below, so we do not need to check for that. */
-						else if (previousType != null && previousType.isAnyName(antecedent) && previousType.isTransitionSentence(i-1, name))
+						else if (previousType != null && pieceIndex.isName(previousType, antecedent) && previousType.isTransitionSentence(i-1, p.getId()))
 						{
 							isMotionSentence = true;
 							sentenceIndex = i; 
@@ -195,7 +197,7 @@ public class MotionParser
 			else
 			{
 				Piece previousType = p.getPreviousType();
-				if (previousType.isTransitionSentence(i, name))
+				if (previousType.isTransitionSentence(i, p.getId()))
 				{
 					isMotionSentence = true;
 					sentenceIndex = i;
@@ -212,21 +214,22 @@ public class MotionParser
 				if (!indices.contains(sentenceIndex)) //also, we don't want to add multiple of the same index
 				{
 					indices.add(sentenceIndex);
-					System.out.println("Motion sentence index for " + name + ": " + sentenceIndex);
+					parent.debug("Motion sentence index for " + name + ": " + sentenceIndex);
 				}
 			}
 		}
 		return indices;
 	}
 
-	public ArrayList<Direction> parseMotion(Piece p, ArrayList<Integer> indices)
+	public EnumSet<Direction> parseMotion(Piece p, ArrayList<Integer> indices)
 	{
 		String name = p.getName();
-		ArrayList<Direction> motionTypes = new ArrayList<Direction>(1); 
-		//ultimately, this ArrayList will hold all of the allowed types of motion explicitly described in the ruleset
+		EnumSet<Direction> motionTypes = EnumSet.noneOf(Direction.class); 
+		//ultimately, this set will hold all of the allowed types of motion explicitly described in the ruleset
 
 		for (int i: indices)
 		{
+			deadline.check();
 			ArrayList<Integer> negatedWords = new ArrayList<Integer>(1);
 			/*this ArrayList will hold indices of negated words in the current sentence (those modified by a negation word); 
 			if a direction word or the word it modifies is in this list, it will not be added to motionTypes */
@@ -235,13 +238,8 @@ public class MotionParser
 			if a direction word modifies a verb, it will not be added to motionTypes if the verb is in this list (as such
 			predicates are more likely to denote motion of the transition type, not of p itself) */
 
-			CoreMap sentence = sentences.get(i); //the current sentence
-
-			SemanticGraph graph = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
-
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = graph.toString(SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			//iterate over all dependencies, searching for certain types
 			for (int j = 1; j < dependencies.length; j++)
@@ -260,9 +258,9 @@ public class MotionParser
 					negatedWords.add(index2);
 				else if (moveTypes.contains(lemma1))
 				{
-					if (pos2.charAt(0) == 'N' && p.isTransitionType(lemma2))
+					if (pos2.charAt(0) == 'N' && pieceIndex.isTransitionType(p, i, index2))
 						transitionPiecePredicates.add(index1);
-					else if (pos2.equals("PRP") && p.isTransitionType(parent.determineAntecedent(i,index2)))
+					else if (pos2.equals("PRP") && pieceIndex.isTransitionType(p, parent.determineAntecedent(i,index2)))
 						transitionPiecePredicates.add(index1);
 				}
 
@@ -306,27 +304,23 @@ public class MotionParser
 				else if (d.contains("nmod:toward")) //check for a PP like "toward the opponent"
 				{
 					// The following checks if the NP complement of the preposition is headed by a synonym of "opponent".
-					if (RulesParser.isSynonymOf("opponent", lemma2)) //the object of the preposition is the second word in the dependency
+					if (concepts.has(i, index2, ConceptTagger.OPPONENT)) //the object of the preposition is the second word in the dependency
 					{
-						if (motionTypes.indexOf(Direction.FORWARD) < 0) //TODO: maybe add a negation check
-							motionTypes.add(Direction.FORWARD);
-						System.out.println("Sentence " + i + ": Forward motion added for " + name + " as a modifying PP"); //debugging
+						motionTypes.add(Direction.FORWARD); //TODO: maybe add a negation check
+						parent.debug("Sentence " + i + ": Forward motion added for " + name + " as a modifying PP"); //debugging
 					}
 					/* If not, the following checks all dependents on the head of the NP complement of the preposition, searching
 					for a phrase denoting the opposite direction: either the adjectives "other", "opposing", or "opposite", or
 					any synonym of "opponent". This is for phrases like "toward the other edge" or "toward the opponent's side" */
 					else
 					{
-						IndexedWord noun = graph.getNodeByIndexSafe(index2+1);
-						for (IndexedWord dependent: graph.getChildren(noun))
+						for (int dependent: features.getChildren(i, index2))
 						{
-							String dependentLemma = lemmas[i][dependent.index()-1];
-							if (RulesParser.isSynonymOf("opponent", dependentLemma) || dependentLemma.equals("opposite") || 
-								dependentLemma.equals("other") || dependentLemma.equals("opposing")) 
+							if (concepts.has(i, dependent, 
+								ConceptTagger.OPPONENT | ConceptTagger.OPPOSITE | ConceptTagger.OTHER)) 
 							{
-								if (motionTypes.indexOf(Direction.FORWARD) < 0) //TODO: maybe add a negation check
-									motionTypes.add(Direction.FORWARD);
-								System.out.println("Sentence " + i + ": Forward motion added for " + name + " as a modifying PP"); //debugging
+								motionTypes.add(Direction.FORWARD); //TODO: maybe add a negation check
+								parent.debug("Sentence " + i + ": Forward motion added for " + name + " as a modifying PP"); //debugging
 							}
 						}
 
@@ -338,55 +332,42 @@ public class MotionParser
 	}
 
 	/**
-	Used by parseMotion() to update an ArrayList containing the allowed types of motion for a piece.
-	Given a reference to a String "word" and an ArrayList<Direction> "motionTypes" holding certain Directions (representing the allowed
+	Used by parseMotion() to update a set containing the allowed types of motion for a piece.
+	Given a reference to a String "word" and an EnumSet<Direction> "motionTypes" holding certain Directions (representing the allowed
 	types of motion for a piece), this method does the following:
 	-Checks if "word" is a synonym of any of the directional words "diagonal"/"diagonally", "forward," "backward," "left," and "right." 
 	  -If "word" is not a synonym of any of these directional words, the method does nothing else.
-	  -If it is, the method then checks if whatever direction "word" entails has been added to "motionTypes" yet. 
-	    -If it has not yet been added, the method adds that direction to "motionTypes."
-	    -If it has already been added, the method does nothing else.
+	  -If it is, the method adds whatever direction "word" entails to "motionTypes" (which has no effect if it is already present).
 	*/
-	public void addDirection(String word, ArrayList<Direction> motionTypes, int i, String name) 
+	public void addDirection(String word, EnumSet<Direction> motionTypes, int i, String name) 
 	{
-		/*ALL of the following specifications of indices (used when calling RulesParser.isSynonymOf()) are specific 
-		to the WordNet 3.0 database!
-		They must be changed for future versions of WordNet, as the indices of definitions change. */
-
-		 //5,6 are the indices in Wordnet 3.0 of the definitions of "diagonal" that denote direction
-		if (RulesParser.isSynonymOf("diagonal", word, 5, 6) || RulesParser.isSynonymOf("diagonally", word))
+		/* The directional senses of each of these words are looked up in WordNet by ConceptTagger (the first time word is seen). 
+		As before, a word that is a synonym of several directional words only counts as the first of them in the following order. */
+		int wordConcepts = ConceptTagger.lemmaConcepts(word);
+		if ((wordConcepts & ConceptTagger.DIRECTION_DIAGONAL) != 0)
 		{
-			if (motionTypes.indexOf(Direction.DIAGONAL) < 0) //check to see if this type of motion has already been parsed
-				motionTypes.add(Direction.DIAGONAL);
-			System.out.println("Sentence " + i + ": Diagonal motion added for " + name); //debugging
+			motionTypes.add(Direction.DIAGONAL);
+			parent.debug("Sentence " + i + ": Diagonal motion added for " + name); //debugging
 		}
-		//3,6,7,9,11 are the indices in Wordnet 3.0 of the definitions of "forward" that denote direction
-		else if (RulesParser.isSynonymOf("forward", word, 3, 6, 7, 9, 11))
+		else if ((wordConcepts & ConceptTagger.DIRECTION_FORWARD) != 0)
 		{
-			if (motionTypes.indexOf(Direction.FORWARD) < 0) 
-				motionTypes.add(Direction.FORWARD);
-			System.out.println("Sentence " + i + ": Forward motion added for " + name); //debugging
+			motionTypes.add(Direction.FORWARD);
+			parent.debug("Sentence " + i + ": Forward motion added for " + name); //debugging
 		}
-		//0,2,3 are the indices in Wordnet 3.0 of the definitions of "backward" that denote direction
-		else if (RulesParser.isSynonymOf("backward", word, 0, 2, 3))
+		else if ((wordConcepts & ConceptTagger.DIRECTION_BACKWARD) != 0)
 		{
-			if (motionTypes.indexOf(Direction.BACKWARD) < 0)
-				motionTypes.add(Direction.BACKWARD);
-			System.out.println("Sentence " + i + ": Backward motion added for " + name); //debugging
+			motionTypes.add(Direction.BACKWARD);
+			parent.debug("Sentence " + i + ": Backward motion added for " + name); //debugging
 		}
-		//19 is the index in Wordnet 3.0 of the definitions of "left" that denote direction
-		else if (RulesParser.isSynonymOf("left", word, 19))
+		else if ((wordConcepts & ConceptTagger.DIRECTION_LEFT) != 0)
 		{
-			if (motionTypes.indexOf(Direction.LEFT) < 0)
-				motionTypes.add(Direction.LEFT);
-			System.out.println("Sentence " + i + ": Leftward motion added for " + name); //debugging
+			motionTypes.add(Direction.LEFT);
+			parent.debug("Sentence " + i + ": Leftward motion added for " + name); //debugging
 		}
-		//12,20 are the indices in Wordnet 3.0 of the definitions of "right" that denote direction
-		else if (RulesParser.isSynonymOf("right", word, 12, 20))
+		else if ((wordConcepts & ConceptTagger.DIRECTION_RIGHT) != 0)
 		{
-			if (motionTypes.indexOf(Direction.RIGHT) < 0)
-				motionTypes.add(Direction.RIGHT);
-			System.out.println("Sentence " + i + ": Rightward motion added."); //debugging
+			motionTypes.add(Direction.RIGHT);
+			parent.debug("Sentence " + i + ": Rightward motion added."); //debugging
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,338 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+Detects rulesets that are near-duplicates of rulesets converted before them (the same rules with some boilerplate added or
+removed, paragraphs reordered, or an ad or two), so that their conversion can be skipped.
+
+Each ruleset is reduced to a MinHash signature: the minimum, under each of HASHES hash functions, of the hashes of its shingles
+(every run of SHINGLE consecutive words, lower case, punctuation ignored). The share of the signature two rulesets have in common
+estimates the Jaccard similarity of their sets of shingles. The signature is cut into BANDS bands of ROWS hashes each, and every
+band is hashed into a bucket; rulesets that share a bucket in any band are candidates, and only candidates are compared, so
+finding the near-duplicates of a ruleset takes about the same time however many rulesets have been indexed. With 16 bands of 8,
+rulesets with a similarity of 0.8 share a bucket 94% of the time, and rulesets with a similarity of 0.4 about 1% of the time.
+
+Everything is held in flat arrays and a table of primitives, about 1.5 KB per ruleset besides its name, so millions of rulesets
+fit in a few GB of heap. Only the models of the last modelCapacity rulesets converted are kept for reuse.
+*/
+public class NearDuplicateIndex
+{
+	private static final int HASHES = 128;
+	private static final int BANDS = 16;
+	private static final int ROWS = HASHES / BANDS;
+	private static final int SHINGLE = 5;
+	private static final int MAX_CANDIDATES = 64; // per band, so that a bucket every ruleset falls into can't make lookups slow
+	private static final long[] SEEDS = new long[HASHES];
+
+	static
+	{
+		long seed = 0x5DEECE66DL;
+		for (int k = 0; k < HASHES; k++)
+		{
+			seed = mix(seed + k);
+			SEEDS[k] = seed;
+		}
+	}
+
+	private double threshold;
+	private int count; // the number of rulesets indexed; ids run from 0 to count - 1
+	private String[] names;
+	private int[] signatures; // the signature of ruleset id is signatures[id * HASHES] to signatures[id * HASHES + HASHES - 1]
+	private int[] next; // next[id * BANDS + band] is the ruleset before id in its bucket of that band, or -1
+	private long[] bucketKeys; // an open-addressing table from bucket keys to the last ruleset in each bucket
+	private int[] bucketHeads; // the last ruleset in each bucket plus 1, or 0 if the slot is empty
+	private int buckets;
+	private LinkedHashMap<Integer,Converted> converted; // the models of the last rulesets converted, by id, least recent first
+	private int modelCapacity;
+
+	/**
+	threshold is the estimated similarity (between 0 and 1) above which a ruleset is a near-duplicate of another.
+	*/
+	public NearDuplicateIndex(double threshold, int modelCapacity)
+	{
+		this.threshold = threshold;
+		this.names = new String[1024];
+		this.signatures = new int[1024 * HASHES];
+		this.next = new int[1024 * BANDS];
+		this.bucketKeys = new long[1024];
+		this.bucketHeads = new int[1024];
+		this.converted = new LinkedHashMap<Integer,Converted>(16, 0.75f, true);
+		this.modelCapacity = modelCapacity;
+	}
+
+	/**
+	Indexes a ruleset, and returns what is known about it: the most similar ruleset indexed before it if that one is a
+	near-duplicate, and whether the model of that one can be reused for it.
+	*/
+	public synchronized Match add(String name, String text)
+	{
+		int[] signature = signature(text);
+		long[] paragraphs = paragraphs(text);
+
+		int best = -1;
+		double bestSimilarity = 0;
+		Set<Integer> compared = new HashSet<Integer>();
+		long[] keys = new long[BANDS];
+		for (int band = 0; band < BANDS; band++)
+		{
+			keys[band] = bandKey(signature, band);
+			int candidate = bucketHeads[slot(keys[band])] - 1;
+			for (int i = 0; candidate >= 0 && i < MAX_CANDIDATES; i++)
+			{
+				if (compared.add(candidate))
+				{
+					double similarity = similarity(signature, candidate);
+					if (similarity > bestSimilarity)
+					{
+						best = candidate;
+						bestSimilarity = similarity;
+					}
+				}
+				candidate = next[candidate * BANDS + band];
+			}
+		}
+
+		int id = append(name, signature, keys);
+		if (best < 0 || bestSimilarity < threshold)
+			return new Match(id, paragraphs, null, 0, null, 0);
+
+		Converted original = converted.get(best);
+		int newParagraphs = paragraphs.length;
+		GameModel model = null;
+		if (original != null)
+		{
+			newParagraphs = 0;
+			for (long paragraph: paragraphs)
+			{
+				if (Arrays.binarySearch(original.paragraphs, paragraph) < 0)
+					newParagraphs++;
+			}
+			//a paragraph removed may be a rule removed, so only the very same paragraphs keep the model
+			if (Arrays.equals(paragraphs, original.paragraphs))
+				model = original.model;
+		}
+		return new Match(id, paragraphs, names[best], bestSimilarity, model, newParagraphs);
+	}
+
+	/**
+	Keeps the model a ruleset was converted into, so that it can be reused for its near-duplicates. Partial models aren't kept.
+	*/
+	public synchronized void setModel(Match match, GameModel model)
+	{
+		if (model.isPartial())
+			return;
+		converted.put(match.id, new Converted(model, match.paragraphs));
+		if (converted.size() > modelCapacity)
+			converted.remove(converted.keySet().iterator().next());
+	}
+
+	public synchronized int size()
+	{
+		return count;
+	}
+
+	private int append(String name, int[] signature, long[] keys)
+	{
+		int id = count++;
+		if (count > names.length)
+		{
+			names = Arrays.copyOf(names, names.length * 2);
+			signatures = Arrays.copyOf(signatures, names.length * HASHES);
+			next = Arrays.copyOf(next, names.length * BANDS);
+		}
+		names[id] = name;
+		System.arraycopy(signature, 0, signatures, id * HASHES, HASHES);
+		for (int band = 0; band < BANDS; band++)
+		{
+			if ((buckets + 1) * 2 > bucketKeys.length)
+				growBuckets();
+			int slot = slot(keys[band]);
+			if (bucketHeads[slot] == 0)
+			{
+				bucketKeys[slot] = keys[band];
+				buckets++;
+			}
+			next[id * BANDS + band] = bucketHeads[slot] - 1;
+			bucketHeads[slot] = id + 1;
+		}
+		return id;
+	}
+
+	//the slot of key in the bucket table: the slot holding it, or the empty slot where it belongs
+	private int slot(long key)
+	{
+		int mask = bucketKeys.length - 1;
+		int slot = (int) mix(key) & mask;
+		while (bucketHeads[slot] != 0 && bucketKeys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void growBuckets()
+	{
+		long[] oldKeys = bucketKeys;
+		int[] oldHeads = bucketHeads;
+		bucketKeys = new long[oldKeys.length * 2];
+		bucketHeads = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldHeads[i] != 0)
+			{
+				int slot = slot(oldKeys[i]);
+				bucketKeys[slot] = oldKeys[i];
+				bucketHeads[slot] = oldHeads[i];
+			}
+		}
+	}
+
+	private double similarity(int[] signature, int id)
+	{
+		int same = 0;
+		for (int k = 0; k < HASHES; k++)
+		{
+			if (signatures[id * HASHES + k] == signature[k])
+				same++;
+		}
+		return (double) same / HASHES;
+	}
+
+	private static long bandKey(int[] signature, int band)
+	{
+		long key = band;
+		for (int k = band * ROWS; k < (band + 1) * ROWS; k++)
+			key = mix(key * 31 + signature[k]);
+		return key;
+	}
+
+	private static int[] signature(String text)
+	{
+		int[] signature = new int[HASHES];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		String[] words = text.toLowerCase().split("[^\\p{L}\\p{N}]+");
+		int start = words.length > 0 && words[0].isEmpty() ? 1 : 0; //there is an empty first word if text starts with a separator
+		for (int i = start; i == start || i + SHINGLE <= words.length; i++)
+		{
+			long shingle = 0;
+			for (int j = i; j < Math.min(i + SHINGLE, words.length); j++)
+				shingle = shingle * 31 + hash(words[j]);
+			for (int k = 0; k < HASHES; k++)
+				signature[k] = Math.min(signature[k], (int) mix(shingle ^ SEEDS[k]));
+		}
+		return signature;
+	}
+
+	//the sorted hashes of the distinct paragraphs of text (separated by blank lines), lower case and with spacing normalized
+	private static long[] paragraphs(String text)
+	{
+		String[] paragraphs = text.split("\\n\\s*\\n");
+		long[] hashes = new long[paragraphs.length];
+		int count = 0;
+		for (String paragraph: paragraphs)
+		{
+			String normalized = paragraph.trim().replaceAll("\\s+", " ").toLowerCase();
+			if (!normalized.isEmpty())
+				hashes[count++] = hash(normalized);
+		}
+		Arrays.sort(hashes, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (distinct == 0 || hashes[i] != hashes[distinct - 1])
+				hashes[distinct++] = hashes[i];
+		}
+		return Arrays.copyOf(hashes, distinct);
+	}
+
+	//64-bit FNV-1a, as String.hashCode() collides too often for millions of strings
+	private static long hash(String s)
+	{
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++)
+		{
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	//the finalizer of SplitMix64, which spreads every bit of x over the whole result
+	private static long mix(long x)
+	{
+		x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+		x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+		return x ^ (x >>> 31);
+	}
+
+	/**
+	What NearDuplicateIndex.add() found out about a ruleset.
+	*/
+	public static class Match
+	{
+		private int id;
+		private long[] paragraphs;
+		private String original;
+		private double similarity;
+		private GameModel model;
+		private int newParagraphs;
+
+		private Match(int id, long[] paragraphs, String original, double similarity, GameModel model, int newParagraphs)
+		{
+			this.id = id;
+			this.paragraphs = paragraphs;
+			this.original = original;
+			this.similarity = similarity;
+			this.model = model;
+			this.newParagraphs = newParagraphs;
+		}
+
+		public boolean isNearDuplicate()
+		{
+			return original != null;
+		}
+
+		/**
+		Returns the name of the ruleset this one is a near-duplicate of, or null if it isn't one.
+		*/
+		public String getOriginal()
+		{
+			return original;
+		}
+
+		public double getSimilarity()
+		{
+			return similarity;
+		}
+
+		/**
+		Returns the model of the original, if this ruleset has the same paragraphs as the original (so it only differs from it by
+		the order of its paragraphs, paragraphs repeated, case or spacing) and the original's model is still kept; otherwise null,
+		and the ruleset has to be converted (only its new sentences are annotated if there is a SentenceCache).
+		*/
+		public GameModel getModel()
+		{
+			return model;
+		}
+
+		/**
+		Returns the number of paragraphs of this ruleset the original doesn't have (all of them if the original's model isn't kept).
+		*/
+		public int getNewParagraphCount()
+		{
+			return newParagraphs;
+		}
+	}
+
+	private static class Converted
+	{
+		private GameModel model;
+		private long[] paragraphs;
+
+		private Converted(GameModel model, long[] paragraphs)
+		{
+			this.model = model;
+			this.paragraphs = paragraphs;
+		}
+	}
+}
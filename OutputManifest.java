@@ -0,0 +1,122 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+Records the SHA-256 hash of every output file written through it, so that regenerating an output that has not changed leaves the
+existing file (and its modification time) alone. Changed outputs are published atomically (see TextBuffer.publish()).
+The manifest is kept as a text file in the format of sha256sum (one "hash  path" line per output, sorted by path), so it can also
+be checked with sha256sum -c.
+*/
+public class OutputManifest
+{
+	private String manifestPath;
+	private TreeMap<String,String> hashes; // maps the path of each output to the hex SHA-256 of its contents
+	private boolean modified; // whether hashes has changed since the manifest was loaded
+	private int changedCount;
+	private int unchangedCount;
+
+	/**
+	Loads the manifest at manifestPath, or starts an empty one if there is no such file.
+	*/
+	public OutputManifest(String manifestPath) throws IOException
+	{
+		this.manifestPath = manifestPath;
+		this.hashes = new TreeMap<String,String>();
+
+		Path file = Paths.get(manifestPath);
+		if (Files.exists(file))
+		{
+			for (String line: Files.readAllLines(file, StandardCharsets.UTF_8))
+			{
+				int separator = line.indexOf("  ");
+				if (separator > 0)
+					hashes.put(line.substring(separator + 2), line.substring(0, separator));
+			}
+		}
+	}
+
+	/**
+	Writes content to the file at path unless the manifest shows that the file already holds exactly that content.
+	Returns true if the file was written.
+	*/
+	public synchronized boolean publish(String path, TextBuffer content) throws IOException
+	{
+		String hash = ContentHash.of(content);
+		String key = Paths.get(path).normalize().toString();
+		Path file = Paths.get(path);
+
+		//the size check catches files that were truncated or replaced since the manifest was written, without rehashing them
+		if (hash.equals(hashes.get(key)) && Files.exists(file) && Files.size(file) == content.length())
+		{
+			unchangedCount++;
+			return false;
+		}
+
+		content.publish(path);
+		hashes.put(key, hash);
+		modified = true;
+		changedCount++;
+		return true;
+	}
+
+	/**
+	Returns the hash recorded for the output at path, or null if there is none.
+	*/
+	public synchronized String getHash(String path)
+	{
+		return hashes.get(Paths.get(path).normalize().toString());
+	}
+
+	/**
+	Records an output that was published somewhere else (eg: by a worker process with its own copy of the manifest), as publish()
+	would have if it had written or skipped it itself.
+	*/
+	public synchronized void record(String path, String hash, boolean changed)
+	{
+		String previous = hashes.put(Paths.get(path).normalize().toString(), hash);
+		if (!hash.equals(previous))
+			modified = true;
+		if (changed)
+			changedCount++;
+		else
+			unchangedCount++;
+	}
+
+	/**
+	Writes the manifest back to its file (atomically), if any output changed.
+	*/
+	public synchronized void save() throws IOException
+	{
+		if (!modified)
+			return;
+		TextBuffer buffer = new TextBuffer();
+		for (Map.Entry<String,String> entry: hashes.entrySet())
+			buffer.append(entry.getValue()).append("  ").append(entry.getKey()).newLine();
+		buffer.publish(manifestPath);
+		modified = false;
+	}
+
+	/**
+	Returns the number of outputs written by publish() because they were new or had changed.
+	*/
+	public synchronized int getChangedCount()
+	{
+		return changedCount;
+	}
+
+	/**
+	Returns the number of outputs publish() left alone because they had not changed.
+	*/
+	public synchronized int getUnchangedCount()
+	{
+		return unchangedCount;
+	}
+
+	public synchronized String getReport()
+	{
+		return changedCount + " changed, " + unchangedCount + " unchanged";
+	}
+}
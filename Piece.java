@@ -1,20 +1,28 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class Piece
 {
 	private String name;
+	private int id; // index of this piece in the PieceIndex last built over it, or -1 if none has been built yet
 	private Piece previousType; 
 	/* in the case that this type of piece starts out as another type of piece in game play 
 	(eg. a king starts out as a checker), this field stores a reference to the initial type of piece.
 	if this field is null, this is the default type of piece. */
 	private ArrayList<String> equivalentTypes; // this list holds other names used in the ruleset to describe this same type of piece
-	private ArrayList<Direction> motionTypes; // this list holds the directions of motion in which this piece can move
-	private HashMap<Integer,String> transitionSentences; 
-	/* keys are indices of the sentences that describe when this piece type becomes another piece type.
-	the value associated with a certain key is the name of the piece this piece becomes in that sentence */
+	private EnumSet<Direction> motionTypes; // this set holds the directions of motion in which this piece can move
+	private BitSet transitionSentences; 
+	/* bit i is set if sentence i is a sentence that describes when this piece type becomes another piece type.
+	transitionNames[i] then holds the name of the piece this piece becomes in that sentence, and transitionIds[i] holds the ids
+	of every piece with that name (or null if it has not been resolved by a PieceIndex yet). Neither array is meaningful where the
+	bit is not set. */
+	private String[] transitionNames;
+	private BitSet[] transitionIds;
 	private boolean isFurthestRow;
 	private boolean isClosestRow;
 	/* the previous two fields indicate, in the case of this piece being a transition piece, whether the transition zone(s)
@@ -22,23 +30,19 @@ public class Piece
 
 	public Piece(String name)
 	{
-		this.name = name;
-		this.previousType = null;
-		equivalentTypes = new ArrayList<String>(1);
-		motionTypes = new ArrayList<Direction>(1);		
-		transitionSentences = new HashMap<Integer, String>(1);
-		isFurthestRow = false;
-		isClosestRow = false;
-
+		this(name, null);
 	}
 
 	public Piece(String name, Piece previousType)
 	{
 		this.name = name;
+		this.id = -1;
 		this.previousType = previousType;
 		equivalentTypes = new ArrayList<String>(1);
-		motionTypes = new ArrayList<Direction>(1);
-		transitionSentences = new HashMap<Integer, String>(1);
+		motionTypes = EnumSet.noneOf(Direction.class);
+		transitionSentences = new BitSet();
+		transitionNames = new String[0];
+		transitionIds = new BitSet[0];
 		isFurthestRow = false;
 		isClosestRow = false;
 	}
@@ -48,6 +52,22 @@ public class Piece
 		return name;
 	}
 
+	/**
+	Returns the id assigned to this piece by the last PieceIndex built over it, or -1 if none has been built yet.
+	*/
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	Mutator method for id; only called by PieceIndex.
+	*/
+	public void setId(int id)
+	{
+		this.id = id;
+	}
+
 	/**
 	Returns a reference to the type of piece that this piece starts out as, or null if this is the default piece.
 	*/
@@ -85,6 +105,14 @@ public class Piece
 		}
 	}
 
+	/**
+	Returns the list of equivalent types.
+	*/
+	public ArrayList<String> getEquivalentTypes()
+	{
+		return equivalentTypes;
+	}
+
 	/**
 	Checks if a given String is one of the equivalent types.
 	*/
@@ -111,31 +139,46 @@ public class Piece
 	}
 
 	/**
-	Returns a list of the directions of motion this piece can move in.
+	Returns a read-only view of the directions of motion this piece can move in.
 	*/
-	public ArrayList<Direction> getMotionTypes()
+	public Set<Direction> getMotionTypes()
 	{
-		return motionTypes;
+		return Collections.unmodifiableSet(motionTypes);
 	}
 
 	/**
-	Given a list of directions, adds each direction to motionTypes if it is not already present.
+	Checks if this piece can move in a given direction.
 	*/
-	public void addMotionTypes(ArrayList<Direction> newMotionTypes)
+	public boolean hasMotionType(Direction d)
 	{
-		for (Direction d: newMotionTypes)
-		{
-			if (!motionTypes.contains(d))
-				motionTypes.add(d);
-		}
+		return motionTypes.contains(d);
 	}
 
 	/**
-	Gets a Collection of all the names of transition types for this piece by calling values() on the transitionSentences hashmap.
+	Checks if any direction of motion has been parsed for this piece.
+	*/
+	public boolean hasMotionTypes()
+	{
+		return !motionTypes.isEmpty();
+	}
+
+	/**
+	Given a collection of directions, adds each direction to motionTypes if it is not already present.
+	*/
+	public void addMotionTypes(Collection<Direction> newMotionTypes)
+	{
+		motionTypes.addAll(newMotionTypes);
+	}
+
+	/**
+	Gets a Collection of all the names of transition types for this piece, in order of the transition sentences that describe them.
 	*/
 	public Collection<String> getTransitionTypes()
 	{
-		return this.transitionSentences.values();
+		ArrayList<String> transitionTypes = new ArrayList<String>(transitionSentences.cardinality());
+		for (int i = transitionSentences.nextSetBit(0); i >= 0; i = transitionSentences.nextSetBit(i+1))
+			transitionTypes.add(transitionNames[i]);
+		return transitionTypes;
 	}
 
 	/**
@@ -143,55 +186,82 @@ public class Piece
 	*/
 	public boolean isTransitionType(String pieceName)
 	{
-		return transitionSentences.containsValue(pieceName);
+		for (int i = transitionSentences.nextSetBit(0); i >= 0; i = transitionSentences.nextSetBit(i+1))
+		{
+			if (transitionNames[i].equals(pieceName))
+				return true;
+		}
+		return false;
 	}
 
-
 	/**
 	Given an integer index of a transition sentence, and the name of the transition piece the sentence describes
-	this piece becoming, places the index and the piece name in the transitionSentences hashmap.
+	this piece becoming, records the sentence as a transition sentence to that piece.
 	*/
 	public void addTransitionSentence(int index, String pieceName)
 	{
-		transitionSentences.put(Integer.valueOf(index), pieceName);
+		if (index >= transitionNames.length)
+		{
+			int newLength = Math.max(index+1, transitionNames.length*2);
+			transitionNames = Arrays.copyOf(transitionNames, newLength);
+			transitionIds = Arrays.copyOf(transitionIds, newLength);
+		}
+		transitionSentences.set(index);
+		transitionNames[index] = pieceName;
+		transitionIds[index] = null;
 	}
 
 	/**
 	Given the name of a falsely parsed transition piece that must be removed, removes any sentences that were parsed
-	as transition sentences for the false piece from the transitionSentences hashmap.
+	as transition sentences for the false piece.
 	*/
 	public void removeTransitionType(String pieceName)
 	{
-		ArrayList<Integer> falseSentences = new ArrayList<Integer>(1);
-		for (Map.Entry<Integer,String> entry: transitionSentences.entrySet())
+		for (int i = transitionSentences.nextSetBit(0); i >= 0; i = transitionSentences.nextSetBit(i+1))
 		{
-			if (entry.getValue().equals(pieceName))
-				falseSentences.add(entry.getKey());
+			if (transitionNames[i].equals(pieceName))
+			{
+				transitionSentences.clear(i);
+				transitionNames[i] = null;
+			}
 		}
-		for (int i: falseSentences)
-			transitionSentences.remove(i);
-
 	}
 
+	/**
+	Called by PieceIndex to record the ids of the transition pieces described by each transition sentence (more than one if
+	pieces share the name the sentence uses).
+	*/
+	public void resolveTransitionIds(PieceIndex index)
+	{
+		for (int i = transitionSentences.nextSetBit(0); i >= 0; i = transitionSentences.nextSetBit(i+1))
+			transitionIds[i] = index.piecesNamed(transitionNames[i]);
+	}
 
 	/**
-	Determines whether a given sentence index is one of the transition sentences indices stored in transitionSentences.
+	Determines whether a given sentence index is one of the transition sentences of this piece.
 	*/
 	public boolean isTransitionSentence(int index)
 	{
-		return transitionSentences.containsKey(index);
+		return index >= 0 && transitionSentences.get(index);
 	}
 
 	/**
-	Determines whether a given sentence index is one of the transition sentences indices stored in transitionSentences,
+	Determines whether a given sentence index is one of the transition sentences of this piece,
 	and if so whether it specifically is the transition sentence describing how this piece becomes pieceName.
 	*/
 	public boolean isTransitionSentence(int index, String pieceName)
 	{
-		if (transitionSentences.containsKey(index))
-			return transitionSentences.get(index).equals(pieceName);
-		else
-			return false;
+		return isTransitionSentence(index) && transitionNames[index].equals(pieceName);
+	}
+
+	/**
+	Determines whether a given sentence index is one of the transition sentences of this piece,
+	and if so whether it specifically is the transition sentence describing how this piece becomes the piece with id pieceId.
+	Only valid once a PieceIndex has been built over this piece.
+	*/
+	public boolean isTransitionSentence(int index, int pieceId)
+	{
+		return isTransitionSentence(index) && transitionIds[index] != null && transitionIds[index].get(pieceId);
 	}
 
 	/**
@@ -0,0 +1,216 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+Resolves "is this word a name of a piece, and if so which one" questions with a single array lookup.
+
+Every name and equivalent type of every piece is interned in the document's LemmaTable, and all the names of a single piece are
+merged into one set of a union-find structure over lemma ids. Each set is then flattened so that every lemma id maps directly to
+the id of the piece it names (or -1 if it names no piece). A name listed by more than one piece maps to only one of them there,
+so the names of each piece are also kept as a bit set of lemma ids, for isName() to answer for any of them. Transitions between
+pieces are likewise precomputed from those sets, as the set of lemma ids naming any piece each piece can become, so a shared name
+is a transition type of every piece that can become any of the pieces it names.
+
+A PieceIndex is a snapshot of pieceTypes at the time it is built: the names, equivalent types and transition types of the pieces
+must not change afterwards (PieceParser only builds one once parsePieceTypes() has finished). Building a PieceIndex assigns
+each piece its id (its position in pieceTypes).
+*/
+public class PieceIndex
+{
+	private LemmaTable lemmaTable;
+	private int[][] lemmaIds; //lemmaIds[i][j] holds the LemmaTable id of the lemma of the jth word in the ith sentence of the text
+
+	private Piece[] pieces; //pieces[id] holds the piece with that id
+	private int[] parent; //union-find forest over lemma ids - parent[id] is the parent of lemma id in its set
+	private int[] pieceOf; //pieceOf[id] holds the id of the piece named by lemma id, or -1 if that lemma names no piece
+	private BitSet[] names; //names[p] holds the lemma ids of every name of piece p, including those that pieceOf maps elsewhere
+	private BitSet[] transitionNames; //transitionNames[p] holds the lemma ids of every name of every piece p can become
+
+	public PieceIndex(ArrayList<Piece> pieceTypes, LemmaTable lemmaTable, int[][] lemmaIds)
+	{
+		this.lemmaTable = lemmaTable;
+		this.lemmaIds = lemmaIds;
+
+		pieces = pieceTypes.toArray(new Piece[pieceTypes.size()]);
+		for (int i = 0; i < pieces.length; i++)
+			pieces[i].setId(i);
+
+		//intern every name first, so that the union-find arrays can be sized once
+		names = new BitSet[pieces.length];
+		for (int i = 0; i < pieces.length; i++)
+		{
+			names[i] = new BitSet();
+			names[i].set(lemmaTable.intern(pieces[i].getName()));
+			for (String otherName: pieces[i].getEquivalentTypes())
+				names[i].set(lemmaTable.intern(otherName));
+		}
+
+		parent = new int[lemmaTable.size()];
+		for (int i = 0; i < parent.length; i++)
+			parent[i] = i;
+
+		/* rootPiece[root] holds the id of the piece whose names form the set with representative root.
+		The primary names of all pieces are claimed before any equivalent types are merged in, so that an equivalent type
+		which happens to also be the primary name of another piece stays with that other piece. An equivalent type listed 
+		by more than one piece stays with the first piece that listed it; pieces are never merged with each other. */
+		int[] rootPiece = new int[parent.length];
+		Arrays.fill(rootPiece, -1);
+		for (int i = 0; i < pieces.length; i++)
+		{
+			int root = find(lemmaTable.getId(pieces[i].getName()));
+			if (rootPiece[root] == -1)
+				rootPiece[root] = i;
+		}
+		for (int i = 0; i < pieces.length; i++)
+		{
+			int root = find(lemmaTable.getId(pieces[i].getName()));
+			for (String otherName: pieces[i].getEquivalentTypes())
+			{
+				int otherRoot = find(lemmaTable.getId(otherName));
+				if (rootPiece[otherRoot] == -1)
+					parent[otherRoot] = root;
+			}
+		}
+
+		//flatten the forest so that every lookup is a single array access
+		pieceOf = new int[parent.length];
+		for (int i = 0; i < pieceOf.length; i++)
+			pieceOf[i] = rootPiece[find(i)];
+
+		transitionNames = new BitSet[pieces.length];
+		for (int i = 0; i < pieces.length; i++)
+		{
+			pieces[i].resolveTransitionIds(this);
+			transitionNames[i] = new BitSet();
+			for (String transitionType: pieces[i].getTransitionTypes())
+			{
+				BitSet targets = piecesNamed(transitionType);
+				for (int target = targets.nextSetBit(0); target >= 0; target = targets.nextSetBit(target + 1))
+					transitionNames[i].or(names[target]);
+			}
+		}
+	}
+
+	/**
+	Returns the representative of the set containing lemma id, compressing the path to it along the way.
+	*/
+	private int find(int id)
+	{
+		int root = id;
+		while (parent[root] != root)
+			root = parent[root];
+		while (parent[id] != root)
+		{
+			int next = parent[id];
+			parent[id] = root;
+			id = next;
+		}
+		return root;
+	}
+
+	/**
+	Returns the piece with a given id.
+	*/
+	public Piece getPiece(int id)
+	{
+		return pieces[id];
+	}
+
+	/**
+	Returns the number of pieces in the index.
+	*/
+	public int size()
+	{
+		return pieces.length;
+	}
+
+	/**
+	Returns the id of the piece named by the lemma with a given LemmaTable id, or -1 if it names no piece.
+	*/
+	public int pieceOf(int lemmaId)
+	{
+		if (lemmaId < 0 || lemmaId >= pieceOf.length)
+			return -1;
+		return pieceOf[lemmaId];
+	}
+
+	/**
+	Returns the id of the piece named by a lemma, or -1 if it names no piece. (This costs one hash lookup; when the lemma is a word 
+	of the text, pieceAt() should be used instead.)
+	*/
+	public int pieceOf(String lemma)
+	{
+		return pieceOf(lemmaTable.getId(lemma));
+	}
+
+	/**
+	Returns the ids of every piece a lemma is a name of: more than one if pieces share the name (unlike pieceOf()), none if it
+	names no piece.
+	*/
+	public BitSet piecesNamed(String lemma)
+	{
+		BitSet named = new BitSet(pieces.length);
+		int lemmaId = lemmaTable.getId(lemma);
+		for (int p = 0; p < pieces.length; p++)
+		{
+			if (isName(pieces[p], lemmaId))
+				named.set(p);
+		}
+		return named;
+	}
+
+	/**
+	Returns the id of the piece named by the jth word of the ith sentence of the text, or -1 if it names no piece.
+	*/
+	public int pieceAt(int sentenceIndex, int wordIndex)
+	{
+		return pieceOf(lemmaIds[sentenceIndex][wordIndex]);
+	}
+
+	/**
+	Equivalent to p.isAnyName(lemmas[sentenceIndex][wordIndex]).
+	*/
+	public boolean isName(Piece p, int sentenceIndex, int wordIndex)
+	{
+		return isName(p, lemmaIds[sentenceIndex][wordIndex]);
+	}
+
+	/**
+	Equivalent to p.isAnyName(lemma).
+	*/
+	public boolean isName(Piece p, String lemma)
+	{
+		return isName(p, lemmaTable.getId(lemma));
+	}
+
+	private boolean isName(Piece p, int lemmaId)
+	{
+		return lemmaId >= 0 && names[p.getId()].get(lemmaId);
+	}
+
+	/**
+	Determines whether the jth word of the ith sentence of the text names any piece.
+	*/
+	public boolean isPieceName(int sentenceIndex, int wordIndex)
+	{
+		return pieceAt(sentenceIndex, wordIndex) != -1;
+	}
+
+	/**
+	Determines whether the jth word of the ith sentence of the text names a piece that p can become.
+	*/
+	public boolean isTransitionType(Piece p, int sentenceIndex, int wordIndex)
+	{
+		return transitionNames[p.getId()].get(lemmaIds[sentenceIndex][wordIndex]);
+	}
+
+	/**
+	Determines whether a lemma names a piece that p can become.
+	*/
+	public boolean isTransitionType(Piece p, String lemma)
+	{
+		int lemmaId = lemmaTable.getId(lemma);
+		return lemmaId >= 0 && transitionNames[p.getId()].get(lemmaId);
+	}
+}
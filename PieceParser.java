@@ -1,13 +1,9 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import edu.stanford.nlp.ling.*;
-import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphEdge;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.trees.*;
 import edu.stanford.nlp.util.*;
 
@@ -15,22 +11,27 @@ import edu.stanford.nlp.util.*;
 public class PieceParser
 {
 	private RulesParser parent;
-	private List<CoreMap> sentences;
+	private RulesetFeatures features; //everything the parser needs from the annotations of the text
 	private String[][] lemmas; //lemmas[i][j] holds the lemma of the jth word in the ith sentence of the text
 	private String[][] partsOfSpeech; //partsOfSpeech[i][j] holds the POS of the jth word in the ith sentence of the text
+	private Deadline deadline; //checked once per sentence, so that a conversion that runs out of time stops promptly
+	private ConceptTagger concepts; //concepts of each word of the text
 
-	private String[][] transitionZones; //2d array representing board, initially null - parseTransitionZones will edit with proper zones
+	private Board board; //initially without transition zones - parseTransitionZones will add the proper zones
 
 	private ArrayList<String> moveTypes;
 	private ArrayList<Piece> pieceTypes;
+	private PieceIndex pieceIndex; //built once parsePieceTypes() has determined the names of all pieces
 
-	public PieceParser(RulesParser parent, List<CoreMap> sentences, String[][] lemmas, String[][] partsOfSpeech, String[][] transitionZones)
+	public PieceParser(RulesParser parent, RulesetFeatures features, String[][] lemmas, String[][] partsOfSpeech, Board board)
 	{
 		this.parent = parent;
-		this.sentences = sentences;
+		this.features = features;
 		this.lemmas = lemmas;
 		this.partsOfSpeech = partsOfSpeech;
-		this.transitionZones = transitionZones;
+		this.concepts = parent.getConceptTagger();
+		this.deadline = parent.getDeadline();
+		this.board = board;
 	}
 
 	public void parsePieces()
@@ -38,17 +39,20 @@ public class PieceParser
 		parseMoveTypes();
 		parsePieceTypes();
 
-		MotionParser motionParser = new MotionParser(this.parent, this.sentences, this.lemmas, this.partsOfSpeech,
-			this.moveTypes, this.pieceTypes);
+		pieceIndex = new PieceIndex(pieceTypes, parent.getLemmaTable(), parent.getLemmaIds());
+		concepts.tagPieceNames(pieceIndex);
+
+		MotionParser motionParser = new MotionParser(this.parent, this.features, this.lemmas, this.partsOfSpeech,
+			this.moveTypes, this.pieceTypes, this.pieceIndex);
 		motionParser.parseAll();
 
 		for (int i = 0; i < pieceTypes.size(); i++)
 		{
 			Piece p = pieceTypes.get(i);
 			// remove pieces with no parsed motion types (removes false positives)
-			if (p.getMotionTypes().size() == 0)
+			if (!p.hasMotionTypes())
 			{
-				System.out.println("Piece " + p.getName() + " removed");
+				parent.debug("Piece " + p.getName() + " removed");
 				//remove all transition sentences for p from the transitionSentences hashmap of its previous type, if it has one
 				if (!p.isDefault())
 					p.getPreviousType().removeTransitionType(p.getName()); 
@@ -60,12 +64,19 @@ public class PieceParser
 			{
 				ArrayList<Integer> transitionZoneIndices = determineTransitionZoneSentences(p);
 				for (int index: transitionZoneIndices)
+				{
+					deadline.check();
 					parseTransitionZones(p, index);
+				}
 
 				Piece previous = p.getPreviousType();
 				p.addMotionTypes(previous.getMotionTypes());
 			}
 		}
+
+		//rebuild the index, as false positive pieces may have been removed from pieceTypes
+		pieceIndex = new PieceIndex(pieceTypes, parent.getLemmaTable(), parent.getLemmaIds());
+		concepts.tagPieceNames(pieceIndex);
 	}
 
 	public ArrayList<String> getMoveTypes()
@@ -78,9 +89,14 @@ public class PieceParser
 		return pieceTypes;
 	}
 
-	public String[][] getTransitionZones()
+	public Board getBoard()
 	{
-		return transitionZones;
+		return board;
+	}
+
+	public PieceIndex getPieceIndex()
+	{
+		return pieceIndex;
 	}
 
 	public void parseMoveTypes()
@@ -102,11 +118,13 @@ public class PieceParser
 		moveTypes = new ArrayList<String>(NUM_MOVETYPES);
 
 		HashMap<String,Integer> moveHyponyms = new HashMap<String,Integer>();
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			for (String lemma: lemmas[i])
+			deadline.check();
+			for (int j = 0; j < lemmas[i].length; j++)
 			{
-				if (RulesParser.isHypernymOf("move", lemma) && !lemma.equals("play")) // only considering hyponyms of "move" other than "play"
+				String lemma = lemmas[i][j];
+				if (concepts.has(i, j, ConceptTagger.MOVE_HYPONYM) && !lemma.equals("play")) // only considering hyponyms of "move" other than "play"
 				{
 					if (!moveHyponyms.containsKey(lemma)) // if the hyponym isn't in the hashmap,
 						moveHyponyms.put(lemma, 0); // add it to the hashmap
@@ -131,7 +149,7 @@ public class PieceParser
 				}
 			}
 			moveTypes.add(mostFrequentHyponym);
-			System.out.println("Move type parsed: " + mostFrequentHyponym);
+			parent.debug("Move type parsed: " + mostFrequentHyponym);
 		}
 	}
 
@@ -150,9 +168,9 @@ public class PieceParser
 		HashMap<String,Integer> arguments = new HashMap<String,Integer>();
 
 		//iterate over all sentences
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			CoreMap sentence = sentences.get(i);
+			deadline.check();
 			
 			for (String lemma: lemmas[i]) //iterate over all the lemmas of the current sentence;
 			{
@@ -161,9 +179,7 @@ public class PieceParser
 			}
 
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-				SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			//iterate over all dependencies for current sentence
 			for (int j = 1; j < dependencies.length; j++)
@@ -181,14 +197,14 @@ public class PieceParser
 				- any synonym of the verb "reach"
 				- any synonym of the verb "become"
 				 */
-				if (moveTypes.contains(lemma1) || RulesParser.isSynonymOf("reach", lemma1) || RulesParser.isSynonymOf("become", lemma1))
+				if (moveTypes.contains(lemma1) || concepts.has(i, index1, ConceptTagger.REACH | ConceptTagger.BECOME))
 				{	//if so, we inspect lemma2
 					/* we only increment lemma2's value in the hashmap if:
 					-it's a noun
 					-it is not "player" or some synonym (0 is the index of the Wordnet 3.0 definition of "player" related to gameplay) 
 					-it's not one of the moveTypes (phrases like "make a jump" are common enough that they usually get counted instead of
 					piece types if this isn't checked) */
-					if (pos2.charAt(0) == 'N' && !RulesParser.isSynonymOf("player", lemma2, 0) && !moveTypes.contains(lemma2))
+					if (pos2.charAt(0) == 'N' && !concepts.has(i, index2, ConceptTagger.GAME_PLAYER) && !moveTypes.contains(lemma2))
 						arguments.put(lemma2, arguments.get(lemma2)+1); //increment value in hashmap
 				}
 				/* if the previous if statement was false, the following if statement checks if lemma2 is:
@@ -196,14 +212,14 @@ public class PieceParser
 				- any synonym of the verb "reach"
 				- any synonym of the verb "become"
 				 */
-				else if (moveTypes.contains(lemma2) || RulesParser.isSynonymOf("reach", lemma2) || RulesParser.isSynonymOf("become", lemma2))
+				else if (moveTypes.contains(lemma2) || concepts.has(i, index2, ConceptTagger.REACH | ConceptTagger.BECOME))
 				{	//if so, we inspect lemma1
 					/* we only increment lemma1's value in the hashmap if:
 					-it's a noun
 					-it is not "player" or some synonym (0 is the index of the Wordnet 3.0 definition of "player" related to gameplay) 
 					-it's not one of the moveTypes (phrases like "make a jump" are common enough that they usually get counted instead of
 					piece types if this isn't checked) */
-					if (pos1.charAt(0) == 'N' && !RulesParser.isSynonymOf("player", lemma1, 0) && !moveTypes.contains(lemma1)) 
+					if (pos1.charAt(0) == 'N' && !concepts.has(i, index1, ConceptTagger.GAME_PLAYER) && !moveTypes.contains(lemma1)) 
 						arguments.put(lemma1, arguments.get(lemma1)+1); //increment value in hashmap
 				}
 			}
@@ -222,7 +238,7 @@ public class PieceParser
 				System.out.println(entry.getKey() + ": " + entry.getValue()); //debugging */
 		}
 
-		System.out.println("First piece type parsed: " + mostFrequentArgument); //debugging
+		parent.debug("First piece type parsed: " + mostFrequentArgument); //debugging
 		Piece firstPiece = new Piece(mostFrequentArgument);
 		pieceTypes.add(firstPiece);
 
@@ -235,13 +251,11 @@ public class PieceParser
 	{
 		String name = currentPiece.getName();
 
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			CoreMap sentence = sentences.get(i);
+			deadline.check();
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-				SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			boolean aclModifiesName = false;
 			boolean aclModifiesOtherNoun = false;
@@ -267,10 +281,10 @@ public class PieceParser
 					{ 	//If so, lemma2 is the modifier, and likely denotes an equivalent type to name.
 						/* Neither a move type nor any word referring to a player is ever the name of a piece; also,
 						we don't want to simply add the same name as its own equivalent. */
-						if (!moveTypes.contains(lemma2) && !RulesParser.isSynonymOf("player", lemma2, 0) && !lemma2.equals(name))
+						if (!moveTypes.contains(lemma2) && !concepts.has(i, index2, ConceptTagger.GAME_PLAYER) && !lemma2.equals(name))
 						{
 							currentPiece.addEquivalentType(lemma2);
-							System.out.println("Equivalent type parsed for " + name + " in sentence " + i + ": " + lemma2);
+							parent.debug("Equivalent type parsed for " + name + " in sentence " + i + ": " + lemma2);
 						}
 					}
 					// If not, the following checks if name is the head word in a appositive phrase modifying another noun.
@@ -278,10 +292,10 @@ public class PieceParser
 					{ 	// If so, lemma1 is the modified noun, and likely denotes an equivalent type to name.
 						/* Neither a move type nor any word referring to a player is ever the name of a piece; also,
 						we don't want to simply add the same name as its own equivalent. */
-						if (!moveTypes.contains(lemma1) && !RulesParser.isSynonymOf("player", lemma1, 0) && !lemma1.equals(name))
+						if (!moveTypes.contains(lemma1) && !concepts.has(i, index1, ConceptTagger.GAME_PLAYER) && !lemma1.equals(name))
 						{
 							currentPiece.addEquivalentType(lemma1);
-							System.out.println("Equivalent type parsed for " + name + " in sentence " + i + ": " + lemma1);
+							parent.debug("Equivalent type parsed for " + name + " in sentence " + i + ": " + lemma1);
 						}
 
 					}
@@ -298,7 +312,7 @@ public class PieceParser
 					/* If the adjectival clause is NOT modifying name, it may be modifying a noun that is equivalent to name.
 					This is only possible if the noun being modified (lemma1) is not a move type, or a synonym of player (these
 					cannot be equivalent types). */
-					else if (!moveTypes.contains(lemma1) && !RulesParser.isSynonymOf("player", lemma1, 0))
+					else if (!moveTypes.contains(lemma1) && !concepts.has(i, index1, ConceptTagger.GAME_PLAYER))
 					{
 						aclModifiesOtherNoun = true;
 						equivalentType = lemma1; //store the noun in equivalentType
@@ -320,7 +334,7 @@ public class PieceParser
 					a move type, name, or a synonym of player, this is a statement denoting an equivalent type to name.
 					(eg: name = man, and this sentence contains: "A man, also called a checker, ..." -> equivalent type = checker) */
 					else if (aclModifiesName && !moveTypes.contains(lemma1) && 
-					 !RulesParser.isSynonymOf("player", lemma1, 0) && !lemma2.equals(name))
+					 !concepts.has(i, index1, ConceptTagger.GAME_PLAYER) && !lemma2.equals(name))
 					{
 						aclHasEquivalentType = true;
 						equivalentType = lemma2;
@@ -331,7 +345,7 @@ public class PieceParser
 			if (aclHasEquivalentType)
 			{
 				currentPiece.addEquivalentType(equivalentType);
-				System.out.println("Equivalent type parsed for " + name + " in sentence " + i + ": " + equivalentType);
+				parent.debug("Equivalent type parsed for " + name + " in sentence " + i + ": " + equivalentType);
 			}
 		}
 	}
@@ -340,13 +354,11 @@ public class PieceParser
 	{
 		String name = currentPiece.getName();
 
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			CoreMap sentence = sentences.get(i);
+			deadline.check();
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-				SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			boolean isNameSubject = false;
 			boolean isTransitionSentence = false;
@@ -463,8 +475,7 @@ public class PieceParser
 			would have to be pretty unnatural/irrelevant sentences. */
 			if (isNameSubject && isTransitionSentence && !name.equals(transitionPieceName))
 			{
-				System.out.print("New transition piece found: " + transitionPieceName + " in sentence " + i); //debugging
-				System.out.println(" (previous type: " + name + ")"); //debugging
+				parent.debug("New transition piece found: " + transitionPieceName + " in sentence " + i + " (previous type: " + name + ")");
 				Piece transitionPiece = new Piece(transitionPieceName, currentPiece); 
 				// we have to add the index of the transition sentence to the transitionSentences field of currentPiece
 				currentPiece.addTransitionSentence(i, transitionPieceName);
@@ -478,7 +489,7 @@ public class PieceParser
 					if (p.isEquivalentType(transitionPieceName))
 					{
 						p.removeEquivalentType(transitionPieceName);
-						System.out.println(transitionPieceName + " removed from equivalent types of " + p.getName());
+						parent.debug(transitionPieceName + " removed from equivalent types of " + p.getName());
 					}
 					//check if we've already added the new piece to pieceTypes
 					if (p.equals(transitionPiece))
@@ -503,13 +514,11 @@ public class PieceParser
 	{
 		String name = currentPiece.getName();
 
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			CoreMap sentence = sentences.get(i);
+			deadline.check();
 			//dependencies for current sentence as a String[], each entry containing a single dependency String
-			String[] dependencies = sentence.get(
-				SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-				SemanticGraph.OutputFormat.LIST).split("\n");
+			String[] dependencies = features.getDependencies(i);
 
 			boolean isObjectName = false;
 
@@ -577,7 +586,7 @@ public class PieceParser
 				/* The following checks if the sentence contains the predicate "reach"; if so, if its subject is a noun,
 				it is stored in subjectOfReach. previousPieceName is set to this when the subject of become is
 				a pronoun and no other antecedent can be determined using parent.determineAntecedent() */
-				if (d.contains("nsubj") && RulesParser.isSynonymOf("reach", lemma1))
+				if (d.contains("nsubj") && concepts.has(i, index1, ConceptTagger.REACH))
 				{
 					if (pos2.charAt(0) == 'N')
 						subjectOfReach = lemma2;
@@ -591,8 +600,7 @@ public class PieceParser
 			(it's okay if it is one of the equivalent names, as those are prone to mistakes, which this method helps correct) */
 			if (isObjectName && previousPieceName != null && !name.equals(previousPieceName))
 			{
-				System.out.print("New previous piece found: " + previousPieceName + " in sentence " + i); //debugging
-				System.out.println(" (transition type: " + name + ")"); //debugging
+				parent.debug("New previous piece found: " + previousPieceName + " in sentence " + i + " (transition type: " + name + ")");
 				Piece previousPiece = new Piece(previousPieceName); 
 
 				//now we add the new type of piece to pieceTypes, but only if it hasn't already been added
@@ -604,7 +612,7 @@ public class PieceParser
 					if (p.isEquivalentType(previousPieceName))
 					{
 						p.removeEquivalentType(previousPieceName);
-						System.out.println(previousPieceName + " removed from equivalent types of " + p.getName());
+						parent.debug(previousPieceName + " removed from equivalent types of " + p.getName());
 					}
 					//check if we've already added the new piece to pieceTypes
 					if (p.equals(previousPiece))
@@ -644,15 +652,14 @@ public class PieceParser
 		Piece previousPiece = transitionPiece.getPreviousType();
 		String name = transitionPiece.getName();
 		ArrayList<Integer> indices = new ArrayList<Integer>(1);
-		for (int i = 0; i < sentences.size(); i++)
+		for (int i = 0; i < features.getSentenceCount(); i++)
 		{
-			if (previousPiece.isTransitionSentence(i, name)) //if it's a transition sentence for this transition piece,
+			deadline.check();
+			if (previousPiece.isTransitionSentence(i, transitionPiece.getId())) //if it's a transition sentence for this transition piece,
 				indices.add(Integer.valueOf(i)); //add it
 			else //otherwise,
 			{
-				CoreMap sentence = sentences.get(i);
-				String[] dependencies = sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class).toString(
-					SemanticGraph.OutputFormat.LIST).split("\n");
+				String[] dependencies = features.getDependencies(i);
 				//iterate over all dependencies
 				for (int j = 1; j < dependencies.length; j++)
 				{
@@ -665,21 +672,21 @@ public class PieceParser
 					String pos2 = partsOfSpeech[i][index2];
 
 					//check for predicate nominatives or passive voice predicates with transitionPiece's name as a predicate
-					if (transitionPiece.isAnyName(lemma1) && (pos1.charAt(0) == 'N' || pos1.equals("VBN")))
+					if (pieceIndex.isName(transitionPiece, i, index1) && (pos1.charAt(0) == 'N' || pos1.equals("VBN")))
 					{
-						if (previousPiece.isAnyName(lemma2))
+						if (pieceIndex.isName(previousPiece, i, index2))
 						{
 							indices.add(Integer.valueOf(i)); 
 							break;
 						}
-						else if (pos2.equals("PRP") && previousPiece.isAnyName(parent.determineAntecedent(i, index2)))
+						else if (pos2.equals("PRP") && pieceIndex.isName(previousPiece, parent.determineAntecedent(i, index2)))
 						{
 							indices.add(Integer.valueOf(i));
 							break;	
 						}
 					}
 					//check for compound nouns compounding a name of transitionPiece and "row"/"rank"
-					else if (transitionPiece.isAnyName(lemma2))
+					else if (pieceIndex.isName(transitionPiece, i, index2))
 					{
 						if (d.contains("compound(") && (lemma1.equals("row") || lemma1.equals("rank")))
 						{
@@ -695,8 +702,6 @@ public class PieceParser
 
 	public void parseTransitionZones(Piece transitionPiece, int sentenceInd)
 	{
-		//semantic dependency graph of sentence with index sentenceInd
-		SemanticGraph graph = sentences.get(sentenceInd).get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
 		ArrayList<Integer> reachPredicates = new ArrayList<Integer>(1); 
 		//indices in sentenceInd of predicates entailing reaching a certain location on the board (which is how we parse transition zones)
 
@@ -709,7 +714,7 @@ public class PieceParser
 			String pos = partsOfSpeech[sentenceInd][i];
 			//check if the word is a verb, and if it is a synonym of reach, a motion type, or "get"
 			if (pos.charAt(0) == 'V' && 
-				(RulesParser.isSynonymOf("reach", lemma) || moveTypes.contains(lemma) || lemma.equals("get")))
+				(concepts.has(sentenceInd, i, ConceptTagger.REACH) || moveTypes.contains(lemma) || lemma.equals("get")))
 			{
 				reachPredicates.add(i); // if so, add its index to reachPredicates
 			}
@@ -720,7 +725,7 @@ public class PieceParser
 		by any of the verbs indexed in reachPredicates */
 		
 		//dependencies for sentenceInd as a String[], each entry containing a single dependency String
-		String[] dependencies = graph.toString(SemanticGraph.OutputFormat.LIST).split("\n");
+		String[] dependencies = features.getDependencies(sentenceInd);
 
 		boolean isTransitionZone = false;
 		boolean isFurthestRow = false;
@@ -752,16 +757,14 @@ public class PieceParser
 						/* The following checks if the modifying adjective is any synonym of any of the following: "furthest",
 						"opposite", "far", or "last", or is the adjective "top". 
 						These all correspond to the furthest row being the transition zone. */
-						if (RulesParser.isSynonymOf("furthest", lemma2) || RulesParser.isSynonymOf("opposite", lemma2) || 
-							RulesParser.isSynonymOf("far", lemma2) || RulesParser.isSynonymOf("last", lemma2) || lemma2.equals("top"))
+						if (concepts.has(sentenceInd, index2, ConceptTagger.ROW_FAR))
 						{
 							isTransitionZone = true;
 							isFurthestRow = true;
 						}
 						/* The following checks if the modifying adjective is any synonym of any of the following: "own",
 						"nearest", or "first". These all correspond to the closest row being the transition zone. */
-						if (RulesParser.isSynonymOf("own", lemma2) || RulesParser.isSynonymOf("nearest", lemma2) || 
-							RulesParser.isSynonymOf("first", lemma2))
+						if (concepts.has(sentenceInd, index2, ConceptTagger.ROW_NEAR))
 						{
 							isTransitionZone = true;
 							isClosestRow = true;
@@ -770,8 +773,8 @@ public class PieceParser
 				}
 				/* The following checks if the modified noun is any synonym of "player", and if the modifying adjective is any 
 				synonym of either "other" or "opposing". This is necessarily for constructions like "the other player's side". */
-				else if (RulesParser.isSynonymOf("player", lemma1) && 
-					(RulesParser.isSynonymOf("other", lemma2) || RulesParser.isSynonymOf("opposing", lemma2)))
+				else if (concepts.has(sentenceInd, index1, ConceptTagger.PLAYER) && 
+					concepts.has(sentenceInd, index2, ConceptTagger.OTHER_SYNONYM))
 					otherPlayer = true;
 			}
 			//The following checks for nouns modified by possessive forms
@@ -788,7 +791,7 @@ public class PieceParser
 					{
 						/* The following checks if the possessing noun is any synonym of "opponent". 
 						This corresponds to the furthest row being the transition zone. */
-						if (RulesParser.isSynonymOf("opponent", lemma2))
+						if (concepts.has(sentenceInd, index2, ConceptTagger.OPPONENT))
 						{
 							isTransitionZone = true;
 							isFurthestRow = true;
@@ -796,7 +799,7 @@ public class PieceParser
 						/* The following checks if the possessing noun is any synonym of "player", and if it is modified by
 						any adjective synonym of "other" (that is, if otherPlayer is true - we checked for this earlier.)
 						This corresponds to the furthest row being the transition zone. */
-						else if (otherPlayer && RulesParser.isSynonymOf("player", lemma2))
+						else if (otherPlayer && concepts.has(sentenceInd, index2, ConceptTagger.PLAYER))
 						{
 							isTransitionZone = true;
 							isFurthestRow = true;
@@ -808,18 +811,12 @@ public class PieceParser
 
 		if (isTransitionZone)
 		{
-			System.out.print("Transition zone for " + transitionPiece.getName() + " parsed:");
 			if (isFurthestRow)
-			{
-				System.out.print(" furthest row");
 				transitionPiece.setIsFurthestRow(true);
-			}
 			if (isClosestRow)
-			{
-				System.out.print(" closest row");
 				transitionPiece.setIsClosestRow(true);
-			}
-			System.out.println(" in sentence " + sentenceInd);
+			parent.debug("Transition zone for " + transitionPiece.getName() + " parsed:" + (isFurthestRow ? " furthest row" : "") +
+				(isClosestRow ? " closest row" : "") + " in sentence " + sentenceInd);
 
 			editTransitionZones(transitionPiece, isFurthestRow, isClosestRow);
 		}
@@ -830,49 +827,17 @@ public class PieceParser
 		/* This entire method is dependent on assuming there are only two players in the game, and that P1 starts 
 		from the top of the board and P2 starts from the bottom of the board (as assumed by ZRFWriter). */
 		String name = transitionPiece.getName();
+		int topRow = 0;
+		int bottomRow = board.getRows()-1;
 		if (isFurthestRow)
 		{  
-			//since P1 starts from the top, the furthest row is the bottom row (transitionZones[transitionZones.length-1])
-			for (int i = 0; i < transitionZones[transitionZones.length-1].length; i++)
-			{
-				String s = transitionZones[transitionZones.length-1][i];
-				if (s == null)
-					transitionZones[transitionZones.length-1][i] = "P1-" + name;
-				else
-					transitionZones[transitionZones.length-1][i] = s + "/" + "P1-" + name;
-			}
-			//since P2 starts from the bottom, the furthest row is the top row (transitionZones[0])
-			for (int i = 0; i < transitionZones[0].length; i++)
-			{
-				String s = transitionZones[0][i];
-				if (s == null)
-					transitionZones[0][i] = "P2-" + name;
-				else
-					transitionZones[0][i] = s + "/" + "P2-" + name;
-			}
+			board.addZoneRow(name, 1, bottomRow); //since P1 starts from the top, the furthest row is the bottom row
+			board.addZoneRow(name, 2, topRow); //since P2 starts from the bottom, the furthest row is the top row
 		}
 		if (isClosestRow)
 		{
-			//since P1 starts from the top, the closest row is the top row (transitionZones[0])
-			for (int i = 0; i < transitionZones[0].length; i++)
-			{
-				String s = transitionZones[0][i];
-				if (s == null)
-					transitionZones[0][i] = "P1-" + name;
-				else
-					transitionZones[0][i] = s + "/" + "P1-" + name;
-			}
-			//since P2 starts from the bottom, the closest row is the bottom row (transitionZones[transitionZones.length-1])
-			for (int i = 0; i < transitionZones[transitionZones.length-1].length; i++)
-			{
-				String s = transitionZones[transitionZones.length-1][i];
-				if (s == null)
-					transitionZones[transitionZones.length-1][i] = "P2-" + name;
-				else
-					transitionZones[transitionZones.length-1][i] = s + "/" + "P2-" + name;
-			}
-
+			board.addZoneRow(name, 1, topRow); //since P1 starts from the top, the closest row is the top row
+			board.addZoneRow(name, 2, bottomRow); //since P2 starts from the bottom, the closest row is the bottom row
 		}
-
 	}
 }
\ No newline at end of file
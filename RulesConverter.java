@@ -0,0 +1,100 @@
+import java.io.*;
+
+/**
+Converts ruleset text into GameModels, for programs that embed the converter (eg: a web service) rather than run Driver.
+
+Nothing here reads or writes files or prints to the console: the text comes from a CharSequence or a Reader, and the result is a
+GameModel, which is immutable and can be shared by any number of threads. Outputs are written by separate ModelWriters
+(ZRFWriter, JSONWriter, BinaryModelWriter) to whatever sink the caller supplies (see ModelWriter.write() and toByteArray()), so
+only the convenience methods that publish files (eg: ZRFWriter.write()) ever touch the file system.
+
+Every converter shares the CoreNLP pipeline and WordNet with every RulesParser, so converters are cheap to create; a converter
+can also be used by many threads at once. The pipeline is loaded by the first conversion, which takes several seconds, unless
+warmUp() was called before.
+*/
+public class RulesConverter
+{
+	private long timeoutMillis; // time limit of each conversion (see Deadline), or 0 for none
+	private SentenceCache sentenceCache; // shared by every conversion, or null
+	private PrintStream debugOutput; // where the parsers print what they find, or null
+
+	public RulesConverter()
+	{
+	}
+
+	/**
+	Loads the shared CoreNLP pipeline, so that the first conversion doesn't have to.
+	*/
+	public static void warmUp()
+	{
+		RulesParser.getPipeline();
+	}
+
+	/**
+	Converts the text of a ruleset. name is the name of the game (any directories and extension are left out, as for a file name).
+	Text that looks like an HTML page (see HtmlText.isHtml()) is reduced to its text first. See RulesParser.parse() for what
+	happens if the conversion runs out of time.
+	*/
+	public GameModel parse(String name, CharSequence text)
+	{
+		String ruleset = text.toString();
+		if (HtmlText.isHtml(name, ruleset))
+		{
+			try
+			{
+				ruleset = HtmlText.extract(new StringReader(ruleset));
+			}
+			catch (IOException e) //a StringReader doesn't throw
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		RulesParser parser = RulesParser.fromText(name, ruleset);
+		parser.setLowMemory(true); //only the model is returned, so the annotations can go as soon as the features are extracted
+		parser.setSentenceCache(sentenceCache);
+		parser.setDebugOutput(debugOutput);
+		if (timeoutMillis > 0)
+			parser.setDeadline(Deadline.after(timeoutMillis));
+		parser.parse();
+		return parser.getGameModel();
+	}
+
+	/**
+	Reads a ruleset to its end and converts it, as parse(String, CharSequence) does. The reader is not closed.
+	*/
+	public GameModel parse(String name, Reader in) throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+		char[] chunk = new char[8192];
+		for (int read = in.read(chunk); read >= 0; read = in.read(chunk))
+			text.append(chunk, 0, read);
+		return parse(name, text);
+	}
+
+	/**
+	Sets the time limit of each conversion, in milliseconds; 0 (the default) is no limit.
+	*/
+	public void setTimeout(long timeoutMillis)
+	{
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	Sets a SentenceCache for every conversion to take the annotations of sentences seen before from (eg: one shared by several
+	converters); null (the default) annotates every sentence.
+	*/
+	public void setSentenceCache(SentenceCache sentenceCache)
+	{
+		this.sentenceCache = sentenceCache;
+	}
+
+	/**
+	Sets where the parsers print what they find in each ruleset (see RulesParser.setDebugOutput()); null (the default) prints
+	nothing.
+	*/
+	public void setDebugOutput(PrintStream debugOutput)
+	{
+		this.debugOutput = debugOutput;
+	}
+}
@@ -11,8 +11,6 @@ import edu.stanford.nlp.dcoref.CorefCoreAnnotations;
 import edu.stanford.nlp.io.*;
 import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.pipeline.*;
-import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.trees.*;
 import edu.stanford.nlp.util.*;
 
@@ -21,118 +19,443 @@ import edu.smu.tspell.wordnet.*;
 public class RulesParser
 {
 	private String fileName;
+	private String text; //the text of the ruleset, if it was supplied directly instead of being read from fileName
+	private String gameName; //the name of the game, if it isn't named after fileName
 	//Stanford CoreNLP tools:
-	private StanfordCoreNLP pipeline;
+	private static StanfordCoreNLP sharedPipeline; //loaded the first time any RulesParser needs it, then shared by all of them
 	private Annotation annotation;
 	private List<CoreMap> sentences;
 	private Map<Integer, CorefChain> corefChains;
 	private String[][] lemmas; //lemmas[i][j] holds the lemma of the jth word in the ith sentence of the text
 	private String[][] partsOfSpeech; //partsOfSpeech[i][j] holds the POS of the jth word in the ith sentence of the text
+	private LemmaTable lemmaTable; //interns every lemma of the text (and every piece name) as an integer id
+	private int[][] lemmaIds; //lemmaIds[i][j] holds the LemmaTable id of lemmas[i][j]
+	private ConceptTagger conceptTagger; //concepts of every word of the text, computed once right after annotation
+	private RulesetFeatures features; //everything the parsers need from the annotations, extracted once right after annotation
+	private boolean lowMemory; //whether to drop the annotations as soon as features has been extracted from them
+	private SentenceCache sentenceCache; //reuses the annotations of sentences seen before, or null to annotate every sentence
+	private IncrementalAnnotator incrementalAnnotator; //reuses the annotations of the last version of the ruleset, or null
 	//WordNet 3.0 implementation using JAWS:
 	private static WordNetDatabase wordnet = WordNetDatabase.getFileInstance();
 
-	private String[][] initialBoard;
-	private String[][] transitionZones;
+	private Board board;
 	private ArrayList<String> moveTypes;
 	private ArrayList<Piece> pieceTypes;
+	private PieceIndex pieceIndex;
 	private ArrayList<EndCondition> endConditions;
+	private GameModel gameModel; //compiled from all of the above the first time it is requested
+
+	private Deadline deadline; //time limit of parse(), checked by every parser at least once per sentence
+	private boolean partial; //whether parse() ran out of time after annotation, leaving only some of the above parsed
+	private PrintStream debugOutput; //where the parsers print what they find, or null (the default) to print nothing
 
 
 	public RulesParser(String fileName)
 	{
 		this.fileName = fileName;
+		this.deadline = Deadline.none();
+	}
 
-		// creates a StanfordCoreNLP object, with sentence splitting, POS tagging, lemmatization, parsing, NER, and coreference resolution
-		Properties annotators = new Properties();
-		annotators.put("annotators", "tokenize, ssplit, pos, lemma, parse, ner, dcoref");
-		pipeline = new StanfordCoreNLP(annotators);
+	/**
+	Creates a parser for ruleset text that is not in a file (eg: text received by ConversionServer). name is used as the name of
+	the game, in place of the name of the file.
+	*/
+	public static RulesParser fromText(String name, String text)
+	{
+		RulesParser parser = new RulesParser(name);
+		parser.text = text;
+		return parser;
+	}
+
+	/**
+	Creates a parser for a ruleset that was annotated before, from the features kept of it (eg: a FeatureStore.Document), so that
+	extract() can run without annotating it again; CoreNLP isn't loaded at all. name is used as the name of the game.
+	*/
+	public static RulesParser fromFeatures(String name, RulesetFeatures features)
+	{
+		RulesParser parser = new RulesParser(name);
+		parser.features = features;
+		parser.lemmas = new String[features.getSentenceCount()][];
+		parser.partsOfSpeech = new String[features.getSentenceCount()][];
+		parser.lemmaTable = new LemmaTable();
+		parser.lemmaIds = new int[features.getSentenceCount()][];
+		for (int i = 0; i < features.getSentenceCount(); i++)
+		{
+			int words = features.getWordCount(i);
+			parser.lemmas[i] = new String[words];
+			parser.partsOfSpeech[i] = new String[words];
+			parser.lemmaIds[i] = new int[words];
+			for (int j = 0; j < words; j++)
+			{
+				parser.lemmas[i][j] = features.getLemma(i, j);
+				parser.partsOfSpeech[i][j] = features.getPartOfSpeech(i, j);
+				parser.lemmaIds[i][j] = parser.lemmaTable.intern(parser.lemmas[i][j]);
+			}
+		}
+		parser.conceptTagger = new ConceptTagger(parser.lemmas, parser.partsOfSpeech);
+		parser.conceptTagger.tag(features);
+		return parser;
+	}
+
+	/**
+	Returns the CoreNLP pipeline shared by every RulesParser, loading its models the first time it is requested. 
+	Loading takes several seconds, so long-running callers can call this up front to have the pipeline warm before any parsing.
+	*/
+	public static synchronized StanfordCoreNLP getPipeline()
+	{
+		if (sharedPipeline == null)
+		{
+			// creates a StanfordCoreNLP object, with sentence splitting, POS tagging, lemmatization, parsing, NER, and coreference resolution
+			Properties annotators = new Properties();
+			annotators.put("annotators", "tokenize, ssplit, pos, lemma, parse, ner, dcoref");
+			sharedPipeline = new StanfordCoreNLP(annotators);
+		}
+		return sharedPipeline;
 	}
 
+	/**
+	Reads and annotates the ruleset: the same as loadText() followed by annotate().
+	*/
 	public void readFile()
 	{
 		try
 		{
-			annotation = new Annotation(IOUtils.slurpFile(fileName));
-			pipeline.annotate(annotation);
+			loadText();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+		annotate();
+	}
 
-			sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
-			corefChains = annotation.get(CorefCoreAnnotations.CorefChainAnnotation.class);
+	/**
+	Reads the text of the ruleset from its file, unless the text was supplied directly (see fromText()).
+	This is the only step of parsing that does any I/O.
+	*/
+	public void loadText() throws IOException
+	{
+		if (text == null)
+		{
+			text = IOUtils.slurpFile(fileName);
+			if (HtmlText.isHtml(fileName, text)) //a saved page of rules
+				text = HtmlText.extract(new StringReader(text));
+		}
+	}
 
-			lemmas = new String[sentences.size()][];
-			partsOfSpeech = new String[sentences.size()][];
+	/**
+	Returns the text of the ruleset, or null if it hasn't been loaded yet.
+	*/
+	public String getText()
+	{
+		return text;
+	}
 
-			//iterate over all sentences
-			for (int i = 0; i < sentences.size(); i++)
+	/**
+	Runs the CoreNLP pipeline over the text loaded by loadText(), and derives the lemmas, parts of speech and concepts of every word
+	from its annotations. This is by far the most CPU- and memory-intensive step of parsing.
+	*/
+	public void annotate()
+	{
+		deadline.check();
+		//annotation can't check the deadline itself, so it is interrupted if it expires
+		Deadline.Interrupter interrupter = deadline.interruptOnExpiry(Thread.currentThread());
+		try
+		{
+			if (incrementalAnnotator != null)
+				annotation = incrementalAnnotator.annotate(fileName, text);
+			else if (sentenceCache != null)
+				annotation = sentenceCache.annotate(text);
+			else
 			{
-				CoreMap sentence = sentences.get(i); //current sentence
+				annotation = new Annotation(text);
+				getPipeline().annotate(annotation);
+			}
+		}
+		catch (RuntimeException e) //CoreNLP throws a RuntimeInterruptedException when interrupted
+		{
+			if (deadline.isExpired())
+				throw new DeadlineExceededException("Conversion deadline exceeded during annotation", e);
+			throw e;
+		}
+		finally
+		{
+			interrupter.close();
+		}
 
-				//initizalize lemmas[i] and partsOfSpeech[i] to be String arrays with length = number of tokens in current sentence
-				lemmas[i] = new String[sentence.get(CoreAnnotations.TokensAnnotation.class).size()];
-				partsOfSpeech[i] = new String[sentence.get(CoreAnnotations.TokensAnnotation.class).size()];
+		sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+		corefChains = annotation.get(CorefCoreAnnotations.CorefChainAnnotation.class);
 
-				int j = 0;
-				for (CoreMap token: sentence.get(CoreAnnotations.TokensAnnotation.class)) //iterate over each word
-				{
-					/* Lemmatization in CoreNLP is bad at dealing with capital letters and, occasionally, plural nouns.
-					(For example: CoreNLP often thinks the lemma of "Checkers" is not "checker", but instead, "Checkers".)
-					To compensate, we set every lemma to lower case and remove the final -s from any noun that ends in it;
-					this is not a perfect solution, but it works for the purposes of parsing piece types. */
-					String lemma = token.get(CoreAnnotations.LemmaAnnotation.class).toLowerCase(); //make all lemmas lower case
-					String pos = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
+		lemmas = new String[sentences.size()][];
+		partsOfSpeech = new String[sentences.size()][];
+		lemmaTable = new LemmaTable();
+		lemmaIds = new int[sentences.size()][];
 
-					lemmas[i][j] = lemma;
-					partsOfSpeech[i][j] = pos;
+		//iterate over all sentences
+		for (int i = 0; i < sentences.size(); i++)
+		{
+			deadline.check();
+			CoreMap sentence = sentences.get(i); //current sentence
 
-					//remove the final s from noun lemmas that end in it
-					if (pos.charAt(0) == 'N' && lemma.charAt(lemma.length()-1) == 's')
-						lemmas[i][j] =  lemma.substring(0, lemma.length()-1);
+			//initizalize lemmas[i] and partsOfSpeech[i] to be String arrays with length = number of tokens in current sentence
+			lemmas[i] = new String[sentence.get(CoreAnnotations.TokensAnnotation.class).size()];
+			partsOfSpeech[i] = new String[sentence.get(CoreAnnotations.TokensAnnotation.class).size()];
+			lemmaIds[i] = new int[sentence.get(CoreAnnotations.TokensAnnotation.class).size()];
 
-					j++;
-				}
+			int j = 0;
+			for (CoreMap token: sentence.get(CoreAnnotations.TokensAnnotation.class)) //iterate over each word
+			{
+				/* Lemmatization in CoreNLP is bad at dealing with capital letters and, occasionally, plural nouns.
+				(For example: CoreNLP often thinks the lemma of "Checkers" is not "checker", but instead, "Checkers".)
+				To compensate, we set every lemma to lower case and remove the final -s from any noun that ends in it;
+				this is not a perfect solution, but it works for the purposes of parsing piece types. */
+				String lemma = token.get(CoreAnnotations.LemmaAnnotation.class).toLowerCase(); //make all lemmas lower case
+				String pos = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
+
+				lemmas[i][j] = lemma;
+				partsOfSpeech[i][j] = pos;
+
+				//remove the final s from noun lemmas that end in it
+				if (pos.charAt(0) == 'N' && lemma.charAt(lemma.length()-1) == 's')
+					lemmas[i][j] =  lemma.substring(0, lemma.length()-1);
 
+				lemmaIds[i][j] = lemmaTable.intern(lemmas[i][j]);
 
+				j++;
 			}
+
+
 		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
-		}
 
+		features = DocumentFeatures.extract(sentences, corefChains, lemmas, partsOfSpeech, deadline);
+		conceptTagger = new ConceptTagger(lemmas, partsOfSpeech);
+		conceptTagger.tag(features);
+		if (lowMemory)
+			dropAnnotations();
+	}
+
+	/**
+	Drops every reference to CoreNLP's annotations of the text, leaving only the DocumentFeatures extracted from them (along with
+	the lemmas, parts of speech and concepts) for the parsers.
+	*/
+	public void dropAnnotations()
+	{
+		annotation = null;
+		sentences = null;
+		corefChains = null;
 	}
 
+	/**
+	Parses the ruleset. If the deadline (see setDeadline()) expires during annotation, throws a DeadlineExceededException, as there
+	is nothing to return. If it expires later, while extracting the board, pieces or end conditions, parsing stops there and
+	the results are marked as partial (see isPartial()), unless not even the board had been parsed, in which case the
+	DeadlineExceededException is thrown.
+	*/
 	public void parse()
 	{
 		readFile();
+		extract();
+	}
+
+	/**
+	Extracts the board, pieces and end conditions from the annotations made by annotate(). See parse() for what happens if the
+	deadline expires.
+	*/
+	public void extract()
+	{
+		if (debugOutput != null)
+		{
+			for (int i = 0; i < features.getSentenceCount(); i++) //prints all sentences w/ numbers
+				debug("" + i + ": " + features.getText(i));
+		}
+
+		BoardParser boardParser = new BoardParser(this, features, lemmas, partsOfSpeech);
+		PieceParser pieceParser = null;
+		EndParser endParser = null;
+		try
+		{
+			boardParser.parseBoard();
+			this.board = boardParser.getBoard();
+
+			pieceParser = new PieceParser(this, features, lemmas, partsOfSpeech, board);
+			pieceParser.parsePieces();
+
+			endParser = new EndParser(this, features, lemmas, partsOfSpeech, pieceParser.getPieceTypes());
+			endParser.parseEndConditions();
+		}
+		catch (DeadlineExceededException e)
+		{
+			if (boardParser.getBoard() == null)
+				throw e;
+			partial = true;
+		}
 
-		for (int i = 0; i < sentences.size(); i++) //debugging - prints all sentences w/ numbers
+		//whatever was parsed before any deadline expired
+		this.board = boardParser.getBoard();
+		this.moveTypes = new ArrayList<String>();
+		this.pieceTypes = new ArrayList<Piece>();
+		this.endConditions = new ArrayList<EndCondition>();
+		if (pieceParser != null)
 		{
-			CoreMap current = sentences.get(i);
-			System.out.println("" + i + ": " + current.get(CoreAnnotations.TextAnnotation.class));
+			if (pieceParser.getMoveTypes() != null)
+				this.moveTypes = pieceParser.getMoveTypes();
+			if (pieceParser.getPieceTypes() != null)
+				this.pieceTypes = pieceParser.getPieceTypes();
+			this.pieceIndex = pieceParser.getPieceIndex();
 		}
+		if (endParser != null)
+			this.endConditions = endParser.getEndConditions();
+	}
 
-		BoardParser boardParser = new BoardParser(this, sentences, lemmas, partsOfSpeech);
-		boardParser.parseBoard();
-		this.initialBoard = boardParser.getInitialBoard();
-		this.transitionZones = boardParser.getTransitionZones();
+	/**
+	Sets the time limit of parse(). By default there is none.
+	*/
+	public void setDeadline(Deadline deadline)
+	{
+		this.deadline = deadline;
+	}
 
-		PieceParser pieceParser = new PieceParser(this, sentences, lemmas, partsOfSpeech, transitionZones);
-		pieceParser.parsePieces();
+	public Deadline getDeadline()
+	{
+		return deadline;
+	}
 
-		this.moveTypes = pieceParser.getMoveTypes();
-		this.pieceTypes = pieceParser.getPieceTypes();
-		this.transitionZones = pieceParser.getTransitionZones();
+	/**
+	Checks if parse() ran out of time before it finished extracting everything from the ruleset.
+	*/
+	public boolean isPartial()
+	{
+		return partial;
+	}
+
+	/**
+	Returns the results of parse() frozen into a GameModel, named as getGameName() says.
+	*/
+	public GameModel getGameModel()
+	{
+		if (gameModel == null)
+			gameModel = GameModel.compile(getGameName(), board, moveTypes, pieceTypes, endConditions, partial);
+		return gameModel;
+	}
+
+	/**
+	Names the game, instead of naming it after the ruleset file; null (the default) names it after the file.
+	*/
+	public void setGameName(String gameName)
+	{
+		this.gameName = gameName;
+	}
 
-		EndParser endParser = new EndParser(this, sentences, lemmas, partsOfSpeech, pieceTypes);
-		endParser.parseEndConditions();
-		this.endConditions = endParser.getEndConditions();
+	/**
+	Returns the name of the game: the name given to setGameName(), or else the name of the ruleset file, without directories or
+	extension.
+	*/
+	public String getGameName()
+	{
+		if (gameName != null)
+			return gameName;
+		String name = fileName.substring(fileName.lastIndexOf("/") + 1); //lastIndexOf() is -1 if there are no directories
+		if (name.contains("."))
+			name = name.substring(0, name.lastIndexOf("."));
+		return name;
 	}
 
 	public ZRFWriter makeZRFWriter()
 	{
-		ZRFWriter writer = new ZRFWriter(fileName, initialBoard, transitionZones, moveTypes, pieceTypes, endConditions);
+		ZRFWriter writer = new ZRFWriter(getGameModel());
 		return writer;
 	}
 
+	/**
+	Returns the lemmas of the text: getLemmas()[i][j] is the lemma of the jth word in the ith sentence.
+	*/
+	public String[][] getLemmas()
+	{
+		return lemmas;
+	}
+
+	/**
+	Returns the parts of speech of the text, indexed like getLemmas().
+	*/
+	public String[][] getPartsOfSpeech()
+	{
+		return partsOfSpeech;
+	}
+
+	public LemmaTable getLemmaTable()
+	{
+		return lemmaTable;
+	}
+
+	public int[][] getLemmaIds()
+	{
+		return lemmaIds;
+	}
+
+	public ConceptTagger getConceptTagger()
+	{
+		return conceptTagger;
+	}
+
+	public RulesetFeatures getFeatures()
+	{
+		return features;
+	}
+
+	/**
+	In low-memory mode, annotate() drops CoreNLP's annotations (parse trees, dependency graphs, coreference chains and every word's
+	CoreLabel) as soon as it has extracted the DocumentFeatures the parsers need from them (see dropAnnotations()), so that a parsed
+	or waiting document only holds on to the features. Nothing the parsers do depends on the mode; see MemoryReport for what it
+	saves.
+	*/
+	public void setLowMemory(boolean lowMemory)
+	{
+		this.lowMemory = lowMemory;
+	}
+
+	public boolean isLowMemory()
+	{
+		return lowMemory;
+	}
+
+	/**
+	Sets a SentenceCache for annotate() to take the annotations of sentences it has seen before from, instead of running the whole
+	pipeline over the text; null (the default) annotates every sentence.
+	*/
+	public void setSentenceCache(SentenceCache sentenceCache)
+	{
+		this.sentenceCache = sentenceCache;
+	}
+
+	/**
+	Sets an IncrementalAnnotator for annotate() to re-annotate only the sentences that changed since the last version of the
+	ruleset it annotated (by file name, or by the name given to fromText()); it takes precedence over any SentenceCache. Extraction
+	is always re-run over the whole ruleset, as a sentence can change what every other sentence means (eg: by naming a piece).
+	*/
+	public void setIncrementalAnnotator(IncrementalAnnotator incrementalAnnotator)
+	{
+		this.incrementalAnnotator = incrementalAnnotator;
+	}
+
+	/**
+	Sets where extract() prints every sentence of the ruleset, and the parsers what they find in each (eg: for debugging the
+	parsers from the command line); null (the default) prints nothing.
+	*/
+	public void setDebugOutput(PrintStream debugOutput)
+	{
+		this.debugOutput = debugOutput;
+	}
+
+	/**
+	Prints a line of what the parsers found to the debug output, if there is one (see setDebugOutput()).
+	*/
+	void debug(String message)
+	{
+		if (debugOutput != null)
+			debugOutput.println(message);
+	}
+
 	/**
 	Uses CoreNLP's dcoref system to determine the antecedent of an anaphor. Necessarily returns a noun - either returns the head word
 	of the NP antecedent, or, if the antecedent is not an NP, returns the first noun in the phrase.
@@ -140,51 +463,8 @@ public class RulesParser
 	*/
 	public String determineAntecedent(int sentenceIndex, int wordIndex)
 	{
-		//sentence indices start at 0 for field "sentences" / for parameter sentenceIndex, but start at 1 for the corefchain
-		// word indices start at 0 for parameter wordIndex, but start at 1 for the corefchain
-		//iterate over all CorefChains
-		for (Map.Entry<Integer, CorefChain> entry: corefChains.entrySet())
-		{
-			//iterate over all CorefMentions in current CorefChain - all the phrases used to refer to a single referent
-			for (CorefChain.CorefMention mention: entry.getValue().getMentionsInTextualOrder())
-			{
-				//We're only interested if mention (the full NP used to denote a referent) occurs in the sentence we want to look at
-				//subtract 1 because the corefchain sentence indices start at 1 and ours start at 0
-				if (mention.sentNum - 1 == sentenceIndex)
-				{
-					//tokens is a list of the words in the current sentence
-					List<CoreLabel> tokens = sentences.get(mention.sentNum - 1).get(CoreAnnotations.TokensAnnotation.class);
-					//if the head of the referring NP is the anaphor we are trying to determine the antecedent of,
-					//subtract 1 because the corefchain word indices start at 1 and ours start at 0
-					if (mention.headIndex - 1 == wordIndex) // (we test this by comparing their indices in the sentence)
-					{
-						/*then we get the "representative mention" phrase - that is, what CoreNLP thinks is the
-						R-expression that refers to the antecedent, as opposed to an anaphor - and return the lemma of its head word */
-						CorefChain.CorefMention antecedentMention = entry.getValue().getRepresentativeMention();
-						//if the head word of the representative mention phrase is a noun, return it
-						if (partsOfSpeech[antecedentMention.sentNum-1][antecedentMention.headIndex-1].charAt(0) == 'N')
-							return lemmas[antecedentMention.sentNum-1][antecedentMention.headIndex-1];
-
-						//if it's not, go sequentially through until a noun is found
-						else
-						{
-							List<CoreLabel> antecedentTokens = sentences.get(antecedentMention.sentNum - 1).get(
-								CoreAnnotations.TokensAnnotation.class);
-							// iterate over the entire "representative mention" phrase by iterating from indices startIndex-1 to endIndex-1
-							for (int i = antecedentMention.startIndex - 1; i < antecedentMention.endIndex - 1; i++)
-							{
-								//TODO: the implementation is great but the logic's not - 
-								// maybe something better than just returning the first noun in the phrase?
-								if (partsOfSpeech[antecedentMention.sentNum-1][i].charAt(0) == 'N')
-									return lemmas[antecedentMention.sentNum-1][i];
-							}
-						}
-
-					}
-				}
-			}
-		}
-		return ""; //dummy value
+		//the antecedents of all anaphors are determined once, by DocumentFeatures, right after annotation
+		return features.getAntecedent(sentenceIndex, wordIndex);
 	}
 
 	/**
@@ -198,18 +478,8 @@ public class RulesParser
 	*/
 	public boolean dominates(int sentenceIndex, int index1, int index2)
 	{
-		SemanticGraph graph = sentences.get(sentenceIndex).get(
-			SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
-
-		/*the words in the SemanticGraph are indexed from 1, but in our system they are indexed from 0 (since we 
-		use lemmas[][]); we must therefore add 1 to index1 and index2 when finding their nodes in the graph. */
-		IndexedWord node1 = graph.getNodeByIndexSafe(index1+1);
-		IndexedWord node2 = graph.getNodeByIndexSafe(index2+1);
-
-		if (node1 != null && node2 != null)
-			return graph.getPathToRoot(node2).contains(node1);
-		else
-			return false;
+		//the path to the root of every word in the graph is recorded by DocumentFeatures, right after annotation
+		return features.dominates(sentenceIndex, index1, index2);
 	}
 
 
@@ -238,15 +508,7 @@ public class RulesParser
 	*/
 	public boolean isSibling(int sentenceIndex, int index1, int index2)
 	{
-		SemanticGraph graph = sentences.get(sentenceIndex).get(
-			SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
-
-		/*the words in the SemanticGraph are indexed from 1, but in our system they are indexed from 0 (since we 
-		use lemmas[][]); we must therefore add 1 to index1 and index2 when finding their nodes in the graph. */
-		IndexedWord node1 = graph.getNodeByIndexSafe(index1+1);
-		IndexedWord node2 = graph.getNodeByIndexSafe(index2+1);
-
-		return graph.getSiblings(node1).contains(node2);
+		return features.isSibling(sentenceIndex, index1, index2);
 	}
 
 	/**
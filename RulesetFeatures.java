@@ -0,0 +1,78 @@
+/**
+Everything the board, piece, motion and end parsers read about a ruleset: its words, their lemmas and parts of speech, the
+dependencies and dependency graph of every sentence, the numbers NER recognized, and the antecedent of every anaphor.
+
+Two kinds of ruleset provide it: one just annotated (DocumentFeatures, extracted from CoreNLP's annotations), and one stored
+earlier in a FeatureStore (FeatureStore.Document, read straight from the store's mapped columns), so a stored corpus can be
+converted again without annotating anything (see RulesParser.fromFeatures()). Sentences and words are indexed from 0.
+*/
+public interface RulesetFeatures
+{
+	int getSentenceCount();
+
+	int getWordCount(int sentenceIndex);
+
+	/**
+	Returns the word as CoreNLP tokenized it (eg: "Kings").
+	*/
+	String getWord(int sentenceIndex, int wordIndex);
+
+	/**
+	Returns the lemma of a word, lower case and, for nouns, without a final s (see RulesParser.annotate()).
+	*/
+	String getLemma(int sentenceIndex, int wordIndex);
+
+	String getPartOfSpeech(int sentenceIndex, int wordIndex);
+
+	String getText(int sentenceIndex);
+
+	/**
+	Returns the dependencies of a sentence as a String[], each entry containing a single dependency String of the form
+	"dependency(word1-index1, word2-index2)" (see RulesParser.isolateIndexFromDependency()). The first entry is the root.
+	*/
+	String[] getDependencies(int sentenceIndex);
+
+	/**
+	Returns the value NER normalized a word to if it recognized it as a number (eg: "8" for "eight"), or null.
+	*/
+	String getNumber(int sentenceIndex, int wordIndex);
+
+	/**
+	Returns the indices of the words that depend on a word in the dependency graph, or none if the word isn't in the graph.
+	*/
+	int[] getChildren(int sentenceIndex, int wordIndex);
+
+	/**
+	Returns the indices of the words that depend on a word by a given relation (eg: "nummod", or
+	UniversalEnglishGrammaticalRelations.NUMERIC_MODIFIER.toString()).
+	*/
+	int[] getChildren(int sentenceIndex, int wordIndex, String relation);
+
+	/**
+	Returns the number of edges governed by a word in the dependency graph; a word may be the dependent of more than one of them
+	if it depends on the governor by more than one relation.
+	*/
+	int getEdgeCount(int sentenceIndex, int wordIndex);
+
+	/**
+	Returns the index of the dependent of the kth edge governed by a word, in the order of the graph's edges.
+	*/
+	int getEdgeTarget(int sentenceIndex, int wordIndex, int k);
+
+	String getEdgeRelation(int sentenceIndex, int wordIndex, int k);
+
+	/**
+	Determines if index1 dominates index2 in the dependency graph of a sentence (see RulesParser.dominates()).
+	*/
+	boolean dominates(int sentenceIndex, int index1, int index2);
+
+	/**
+	Determines if index1 and index2 depend on the same word in the dependency graph of a sentence (see RulesParser.isSibling()).
+	*/
+	boolean isSibling(int sentenceIndex, int index1, int index2);
+
+	/**
+	Returns the antecedent of an anaphor (see RulesParser.determineAntecedent()), or an empty string if it has none.
+	*/
+	String getAntecedent(int sentenceIndex, int wordIndex);
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+Watches a directory of rulesets (*.txt) and regenerates the outputs of each ruleset whenever it is saved, for rules authors
+iterating on their text.
+
+Editors often save a file as a burst of events (truncate, write, rename from a temporary file), so a ruleset is only converted
+once no event has arrived for it for debounceMillis milliseconds, and a burst of saves of the same file converts it once. Every
+ruleset in the directory is converted when watching starts, which loads the pipeline and gives the IncrementalAnnotator the first
+version of each; from then on, a save only re-annotates the sentences that changed (see IncrementalAnnotator), so the outputs are
+usually regenerated well within a second or two. Outputs are published through the manifest, as in a batch, so an edit that
+doesn't change an output (eg: fixing a typo in a comment) leaves it alone.
+*/
+public class RulesetWatcher
+{
+	private Path directory;
+	private long debounceMillis;
+	private boolean json;
+	private OutputManifest manifest;
+	private IncrementalAnnotator annotator;
+	private TextBuffer buffer;
+	private HashMap<Path,Long> pending; // the rulesets waiting to be converted, and when (in nanoTime) their last event arrived
+
+	public RulesetWatcher(String directory, long debounceMillis, boolean json, OutputManifest manifest)
+	{
+		this.directory = Paths.get(directory);
+		this.debounceMillis = debounceMillis;
+		this.json = json;
+		this.manifest = manifest;
+		this.annotator = new IncrementalAnnotator(Integer.MAX_VALUE); //the rulesets in one directory, which an author is editing
+		this.buffer = new TextBuffer();
+		this.pending = new HashMap<Path,Long>();
+	}
+
+	/**
+	Converts every ruleset in the directory, then watches it until the thread is interrupted.
+	*/
+	public void run() throws IOException
+	{
+		try (WatchService watcher = directory.getFileSystem().newWatchService())
+		{
+			//registering first, so that no save is missed while the existing rulesets are converted
+			directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+				StandardWatchEventKinds.ENTRY_DELETE);
+			try (DirectoryStream<Path> rulesets = Files.newDirectoryStream(directory, "*.txt"))
+			{
+				for (Path ruleset: rulesets)
+					convert(ruleset);
+			}
+			saveManifest();
+			System.out.println("Watching " + directory + " for changes");
+
+			while (!Thread.currentThread().isInterrupted())
+			{
+				WatchKey key = watcher.poll(timeToNextConversion(), TimeUnit.MILLISECONDS);
+				if (key != null)
+				{
+					for (WatchEvent<?> event: key.pollEvents())
+						handle(event);
+					if (!key.reset())
+					{
+						System.out.println(directory + " is no longer accessible");
+						return;
+					}
+				}
+				convertDue();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void handle(WatchEvent<?> event)
+	{
+		if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+		{
+			//some events were lost, so any ruleset may have changed; the unchanged ones will cost little to convert again
+			try (DirectoryStream<Path> rulesets = Files.newDirectoryStream(directory, "*.txt"))
+			{
+				for (Path ruleset: rulesets)
+					pending.put(ruleset, System.nanoTime());
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		//deletions are debounced too, as a file saved by renaming a temporary file over it may be deleted and created again within
+		//the same burst; whether it still exists is only checked once the burst is over
+		Path ruleset = directory.resolve((Path) event.context());
+		if (ruleset.toString().endsWith(".txt"))
+			pending.put(ruleset, System.nanoTime());
+	}
+
+	//how long to wait for events before the next pending ruleset is due, in milliseconds
+	private long timeToNextConversion()
+	{
+		long next = Long.MAX_VALUE;
+		for (long lastEvent: pending.values())
+			next = Math.min(next, lastEvent + TimeUnit.MILLISECONDS.toNanos(debounceMillis));
+		if (next == Long.MAX_VALUE)
+			return Long.MAX_VALUE;
+		return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - System.nanoTime()));
+	}
+
+	private void convertDue()
+	{
+		boolean converted = false;
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Path,Long>> entries = pending.entrySet().iterator();
+		while (entries.hasNext())
+		{
+			Map.Entry<Path,Long> entry = entries.next();
+			if (now - entry.getValue() < TimeUnit.MILLISECONDS.toNanos(debounceMillis))
+				continue;
+			entries.remove();
+			if (Files.exists(entry.getKey()))
+			{
+				convert(entry.getKey());
+				converted = true;
+			}
+			else
+				annotator.forget(entry.getKey().toString());
+		}
+		if (converted)
+			saveManifest();
+	}
+
+	private void convert(Path ruleset)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			RulesParser parser = new RulesParser(ruleset.toString());
+			parser.setIncrementalAnnotator(annotator);
+			parser.loadText();
+			parser.annotate();
+			parser.extract();
+			GameModel model = parser.getGameModel();
+
+			int written = 0;
+			for (ModelWriter writer: Driver.makeWriters(model, buffer, json))
+			{
+				if (writer.publish(writer.pathIn(Driver.outputDirectory(writer)), manifest))
+					written++;
+			}
+			System.out.println(ruleset + ": " + (written > 0 ? written + " outputs regenerated" : "outputs unchanged") + " in " +
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms" + (model.isPartial() ? " (partial)" : ""));
+		}
+		catch (Exception e)
+		{
+			//a ruleset saved halfway through an edit may not parse; the next save will try again
+			System.out.println(ruleset + ": " + e);
+		}
+	}
+
+	private void saveManifest()
+	{
+		try
+		{
+			manifest.save();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.ling.*;
+import edu.stanford.nlp.pipeline.*;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.trees.*;
+import edu.stanford.nlp.util.*;
+
+/**
+Annotates rulesets a sentence at a time, remembering the annotations of every sentence it has seen so that a sentence that appears
+again (in the same ruleset or in any other, as rule pages copy each other heavily) is not tagged, lemmatized, parsed or
+recognized again.
+
+A ruleset is first only tokenized and split into sentences. Each sentence is looked up by its normalized text (its words joined by
+single spaces, so line breaks and spacing don't matter): the sentences that are found get a copy of the part of speech, lemma and
+named entity of each word, the parse tree and the dependency graphs they had when they were first annotated, and only the rest go
+through the part of speech tagger, the parser and NER. Coreference is then resolved over the whole ruleset, as it depends on every
+sentence, and is never cached.
+
+The annotations of a sentence alone can differ slightly from those it gets as part of a whole document (the parser and tagger
+only look within the sentence, but NER can look further), so the first annotation of a sentence is the one every later ruleset
+gets. One cache can be shared by any number of parsers on any number of threads.
+*/
+public class SentenceCache
+{
+	private static StanfordCoreNLP splitter; // tokenize and ssplit only
+	private static StanfordCoreNLP sentenceAnnotators; // everything from the pipeline of RulesParser that works within a sentence
+	private static StanfordCoreNLP documentAnnotators; // coreference, which works across sentences
+
+	private LinkedHashMap<String,Entry> entries; // by normalized text, least recently used first; guarded by itself
+	private int capacity;
+	private AtomicLong documents;
+	private AtomicLong hits;
+	private AtomicLong misses;
+
+	/**
+	capacity is the number of sentences kept; once it is reached, the sentence used least recently is forgotten.
+	*/
+	public SentenceCache(int capacity)
+	{
+		this.entries = new LinkedHashMap<String,Entry>(16, 0.75f, true);
+		this.capacity = capacity;
+		this.documents = new AtomicLong();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	private static synchronized void loadPipelines()
+	{
+		if (splitter != null)
+			return;
+		splitter = new StanfordCoreNLP(annotators("tokenize, ssplit"));
+		//the sentences given to these have been tokenized and split already, so requirements can't be checked
+		sentenceAnnotators = new StanfordCoreNLP(annotators("pos, lemma, parse, ner"), false);
+		documentAnnotators = new StanfordCoreNLP(annotators("dcoref"), false);
+	}
+
+	private static Properties annotators(String names)
+	{
+		Properties properties = new Properties();
+		properties.put("annotators", names);
+		return properties;
+	}
+
+	/**
+	Annotates text as RulesParser.getPipeline() would, reusing the annotations of every sentence already in the cache.
+	*/
+	public Annotation annotate(String text)
+	{
+		Annotation document = split(text);
+		documents.incrementAndGet();
+
+		List<CoreMap> unseen = new ArrayList<CoreMap>();
+		List<String> unseenKeys = new ArrayList<String>();
+		for (CoreMap sentence: document.get(CoreAnnotations.SentencesAnnotation.class))
+		{
+			String key = normalize(sentence);
+			Entry entry;
+			synchronized (entries)
+			{
+				entry = entries.get(key);
+			}
+			if (entry != null && entry.applyTo(sentence))
+				hits.incrementAndGet();
+			else
+			{
+				misses.incrementAndGet();
+				unseen.add(sentence);
+				unseenKeys.add(key);
+			}
+		}
+
+		annotateSentences(text, unseen);
+		for (int i = 0; i < unseen.size(); i++)
+			put(unseenKeys.get(i), new Entry(unseen.get(i)));
+		resolveCoreference(document);
+		return document;
+	}
+
+	/**
+	Tokenizes text and splits it into sentences, without annotating anything else.
+	*/
+	static Annotation split(String text)
+	{
+		loadPipelines();
+		Annotation document = new Annotation(text);
+		splitter.annotate(document);
+		return document;
+	}
+
+	/**
+	Tags, lemmatizes, parses and recognizes the named entities of some of the sentences of a document made by split(), in place.
+	*/
+	static void annotateSentences(String text, List<CoreMap> sentences)
+	{
+		if (sentences.isEmpty())
+			return;
+		List<CoreLabel> tokens = new ArrayList<CoreLabel>();
+		for (CoreMap sentence: sentences)
+			tokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+		Annotation batch = new Annotation(text);
+		batch.set(CoreAnnotations.TokensAnnotation.class, tokens);
+		batch.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+		sentenceAnnotators.annotate(batch);
+	}
+
+	/**
+	Resolves the coreferences of a document made by split() once all of its sentences have been annotated.
+	*/
+	static void resolveCoreference(Annotation document)
+	{
+		documentAnnotators.annotate(document);
+	}
+
+	/**
+	Returns the normalized text of a sentence: its words joined by single spaces.
+	*/
+	static String normalize(CoreMap sentence)
+	{
+		StringBuilder key = new StringBuilder();
+		for (CoreLabel token: sentence.get(CoreAnnotations.TokensAnnotation.class))
+		{
+			if (key.length() > 0)
+				key.append(' ');
+			key.append(token.word());
+		}
+		return key.toString();
+	}
+
+	private void put(String key, Entry entry)
+	{
+		synchronized (entries)
+		{
+			entries.putIfAbsent(key, entry);
+			if (entries.size() > capacity)
+				entries.remove(entries.keySet().iterator().next());
+		}
+	}
+
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	Returns a line reporting the number of documents and sentences annotated through the cache, and the share of sentences found in
+	it.
+	*/
+	public String getReport()
+	{
+		long total = hits.get() + misses.get();
+		long percent = total > 0 ? hits.get() * 100 / total : 0;
+		int size;
+		synchronized (entries)
+		{
+			size = entries.size();
+		}
+		return "Sentence cache: " + documents.get() + " documents, " + total + " sentences, " + hits.get() + " found in the cache (" +
+			percent + "%), " + misses.get() + " annotated, " + size + " cached";
+	}
+
+	/**
+	The annotations of one sentence, held on copies of its words so that the document they came from can be collected.
+	*/
+	static class Entry
+	{
+		private List<CoreLabel> tokens;
+		private Tree tree;
+		private SemanticGraph basic;
+		private SemanticGraph collapsed;
+		private SemanticGraph ccProcessed;
+
+		Entry(CoreMap sentence)
+		{
+			tokens = new ArrayList<CoreLabel>();
+			for (CoreLabel token: sentence.get(CoreAnnotations.TokensAnnotation.class))
+				tokens.add(new CoreLabel(token));
+			tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class).deepCopy();
+			basic = copy(sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class), tokens);
+			collapsed = copy(sentence.get(SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class), tokens);
+			ccProcessed = copy(sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class), tokens);
+		}
+
+		/**
+		Gives a sentence with the same words these annotations, returning false (and leaving the sentence as it was) if its words
+		turn out not to be the same after all.
+		*/
+		boolean applyTo(CoreMap sentence)
+		{
+			List<CoreLabel> words = sentence.get(CoreAnnotations.TokensAnnotation.class);
+			if (words.size() != tokens.size())
+				return false;
+			for (int j = 0; j < words.size(); j++)
+			{
+				if (!words.get(j).word().equals(tokens.get(j).word()))
+					return false;
+			}
+
+			for (int j = 0; j < words.size(); j++)
+			{
+				CoreLabel word = words.get(j);
+				CoreLabel cached = tokens.get(j);
+				word.set(CoreAnnotations.PartOfSpeechAnnotation.class, cached.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+				word.set(CoreAnnotations.LemmaAnnotation.class, cached.get(CoreAnnotations.LemmaAnnotation.class));
+				word.set(CoreAnnotations.NamedEntityTagAnnotation.class, cached.get(CoreAnnotations.NamedEntityTagAnnotation.class));
+				word.set(CoreAnnotations.NormalizedNamedEntityTagAnnotation.class,
+					cached.get(CoreAnnotations.NormalizedNamedEntityTagAnnotation.class));
+			}
+			sentence.set(TreeCoreAnnotations.TreeAnnotation.class, tree.deepCopy());
+			sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, copy(basic, words));
+			sentence.set(SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class, copy(collapsed, words));
+			sentence.set(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class, copy(ccProcessed, words));
+			return true;
+		}
+
+		//copies a dependency graph onto a sentence's words, by their indices
+		private static SemanticGraph copy(SemanticGraph graph, List<CoreLabel> words)
+		{
+			SemanticGraph copy = new SemanticGraph();
+			Map<IndexedWord,IndexedWord> vertices = new HashMap<IndexedWord,IndexedWord>();
+			for (IndexedWord vertex: graph.vertexSet())
+			{
+				IndexedWord word = new IndexedWord(words.get(vertex.index() - 1)); //-1 because SemanticGraph nodes are indexed from 1
+				word.setCopyCount(vertex.copyCount());
+				vertices.put(vertex, word);
+				copy.addVertex(word);
+			}
+			for (IndexedWord root: graph.getRoots())
+				copy.addRoot(vertices.get(root));
+			for (SemanticGraphEdge edge: graph.edgeIterable())
+			{
+				copy.addEdge(vertices.get(edge.getGovernor()), vertices.get(edge.getDependent()), edge.getRelation(), edge.getWeight(),
+					edge.isExtra());
+			}
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,397 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.io.IOUtils;
+
+/**
+Converts a batch of rulesets across several worker JVMs on this machine (see ShardWorker), so that the batch can use every core
+without one JVM having to hold every core's worth of CoreNLP annotations in a single, slowly collected heap.
+
+Rather than splitting the batch into fixed shards up front, the coordinator hands each worker one ruleset at a time over its
+standard input and gives it the next once it answers, so faster workers simply take more of the batch. A worker that exits, or
+takes longer than stallMillis over one ruleset, is killed and replaced, and its ruleset is handed to another worker; a ruleset
+that has brought down maxAttempts workers is reported as failed instead of being retried forever.
+
+Outside of archives, workers publish outputs themselves and the coordinator merges the hashes they report into its manifest.
+With an archive, each worker writes its own part (archive.part<n>), which the coordinator merges into the archive at the end;
+as a part is only complete once its worker has closed it, the rulesets converted by a worker that died are converted again.
+*/
+public class ShardCoordinator
+{
+	private int workerCount;
+	private List<String> workerOptions; // Driver options passed on to every worker (eg: --json, --timeout)
+	private String workerHeap; // the -Xmx of each worker, or null for the JVM's default
+	private long stallMillis;
+	private int maxAttempts;
+	private BatchJournal journal; // the record of finished rulesets, or null to convert every ruleset
+
+	private ArrayDeque<String> pending;
+	private HashMap<String,Integer> attempts; // the number of workers each ruleset has been handed to
+	private List<Worker> workers;
+	private int nextWorkerId;
+	private LinkedBlockingQueue<Event> events; // lines from every worker, and their exits, in the order they happened
+
+	private OutputManifest manifest;
+	private String archivePath;
+	private TextBuffer report; // the lines of report.txt, for archives
+	private List<String> problems;
+	private int completed;
+	private int partial;
+	private int failed;
+	private int skipped;
+	private int restarts;
+
+	public ShardCoordinator(int workerCount, List<String> workerOptions, String workerHeap, long stallMillis, int maxAttempts)
+	{
+		this.workerCount = Math.max(1, workerCount);
+		this.workerOptions = workerOptions;
+		this.workerHeap = workerHeap;
+		this.stallMillis = stallMillis;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	Sets a journal to skip the rulesets it records as finished and record the rest once they are converted. Journals only work with
+	outputs published to directories; as archives are only written once the whole batch is done, there is nothing to resume.
+	*/
+	public void setJournal(BatchJournal journal)
+	{
+		this.journal = journal;
+	}
+
+	/**
+	Converts every file, merging the hashes of the outputs into manifest, or the outputs themselves into the archive at archivePath
+	if it isn't null. Returns once every ruleset has been converted or has failed.
+	*/
+	public void run(List<String> fileNames, OutputManifest manifest, String archivePath) throws IOException, InterruptedException
+	{
+		this.pending = new ArrayDeque<String>();
+		this.attempts = new HashMap<String,Integer>();
+		this.workers = new ArrayList<Worker>();
+		this.events = new LinkedBlockingQueue<Event>();
+		this.manifest = manifest;
+		this.archivePath = archivePath;
+		this.report = new TextBuffer();
+		this.problems = new ArrayList<String>();
+		for (String fileName: fileNames)
+		{
+			if (!isFinished(fileName))
+				pending.add(fileName);
+		}
+
+		for (int i = 0; i < Math.min(workerCount, pending.size()); i++)
+			startWorker();
+		dispatch();
+
+		while (!workers.isEmpty())
+		{
+			Event event = events.poll(1, TimeUnit.SECONDS);
+			if (event != null)
+				handle(event);
+			killStalledWorkers();
+		}
+
+		if (archivePath != null)
+			mergeArchive();
+	}
+
+	private boolean isFinished(String fileName)
+	{
+		if (journal == null)
+			return false;
+		try
+		{
+			if (!journal.isFinished(fileName, ContentHash.of(IOUtils.slurpFile(fileName))))
+				return false;
+		}
+		catch (IOException e)
+		{
+			return false; // a worker will report the problem
+		}
+		skipped++;
+		return true;
+	}
+
+	private void startWorker() throws IOException
+	{
+		Worker worker = new Worker(nextWorkerId++);
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if (workerHeap != null)
+			command.add("-Xmx" + workerHeap);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("Driver");
+		command.add("--worker");
+		command.addAll(workerOptions);
+		if (archivePath != null)
+		{
+			command.add("--archive");
+			command.add(worker.partPath);
+		}
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		worker.process = builder.start();
+		worker.input = new BufferedWriter(new OutputStreamWriter(worker.process.getOutputStream(), StandardCharsets.UTF_8));
+
+		Thread listener = new Thread(() -> listen(worker), "shard-listener-" + worker.id);
+		listener.setDaemon(true);
+		listener.start();
+		workers.add(worker);
+	}
+
+	//runs on a listener thread per worker, turning its output into events for the coordinator's thread
+	private void listen(Worker worker)
+	{
+		try (BufferedReader output = new BufferedReader(new InputStreamReader(worker.process.getInputStream(), StandardCharsets.UTF_8)))
+		{
+			for (String line = output.readLine(); line != null; line = output.readLine())
+				events.add(new Event(worker, line));
+		}
+		catch (IOException e)
+		{
+			//the worker was killed; its exit is reported below all the same
+		}
+		events.add(new Event(worker, null));
+	}
+
+	private void handle(Event event) throws IOException, InterruptedException
+	{
+		Worker worker = event.worker;
+		if (event.line == null)
+		{
+			exited(worker);
+			return;
+		}
+
+		String[] fields = event.line.split("\t", 4);
+		if (fields[0].equals("output") && fields.length == 4)
+		{
+			manifest.record(fields[3], fields[2], fields[1].equals("1"));
+			worker.outputs.put(fields[3], fields[2]);
+		}
+		else if (fields[0].equals("report") && fields.length > 1)
+			worker.reportLines.add(event.line.substring("report\t".length()));
+		else if (fields[0].equals("done") && fields.length >= 3)
+		{
+			worker.converted.add(fields[1]);
+			if (fields[2].equals("partial"))
+				worker.partial.add(fields[1]);
+			//outputs published to directories are complete as soon as they're reported; archive parts only when they're closed
+			if (archivePath == null)
+				credit(worker);
+			if (journal != null && fields.length == 4 && !fields[2].equals("partial")) //partial rulesets are converted again
+				journal.record(fields[1], fields[3], worker.outputs);
+			finished(worker);
+		}
+		else if (fields[0].equals("failed") && fields.length >= 3)
+		{
+			failed++;
+			problems.add(fields[1] + ": " + fields[2]);
+			finished(worker);
+		}
+		else if (fields[0].equals("closed"))
+			worker.closed = true;
+	}
+
+	//counts the rulesets a worker has converted as completed
+	private void credit(Worker worker)
+	{
+		completed += worker.converted.size();
+		partial += worker.partial.size();
+		for (String fileName: worker.partial)
+			problems.add(fileName + ": ran out of time, outputs are partial");
+		for (String line: worker.reportLines)
+			report.append(line).newLine();
+		worker.converted.clear();
+		worker.partial.clear();
+		worker.reportLines.clear();
+	}
+
+	private void finished(Worker worker) throws IOException
+	{
+		worker.current = null;
+		worker.outputs.clear();
+		dispatch();
+	}
+
+	/**
+	Hands pending rulesets to idle workers, and closes the input of idle workers once nothing is pending, so that they exit.
+	*/
+	private void dispatch() throws IOException
+	{
+		for (Worker worker: workers)
+		{
+			if (worker.current != null || !worker.accepting)
+				continue;
+			if (!pending.isEmpty())
+			{
+				worker.current = pending.poll();
+				worker.startedAt = System.nanoTime();
+				attempts.merge(worker.current, 1, Integer::sum);
+				try
+				{
+					worker.input.write(worker.current);
+					worker.input.newLine();
+					worker.input.flush();
+				}
+				catch (IOException e)
+				{
+					//the worker is exiting; its ruleset is requeued when its exit is handled
+				}
+			}
+			else
+			{
+				worker.accepting = false;
+				try
+				{
+					worker.input.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+	}
+
+	private void exited(Worker worker) throws IOException, InterruptedException
+	{
+		worker.process.waitFor();
+		workers.remove(worker);
+		boolean clean = worker.current == null && worker.process.exitValue() == 0 && (archivePath == null || worker.closed);
+
+		if (worker.current != null)
+		{
+			if (attempts.get(worker.current) >= maxAttempts)
+			{
+				failed++;
+				problems.add(worker.current + ": failed " + maxAttempts + " times in a worker that died or stalled");
+			}
+			else
+				pending.addFirst(worker.current);
+		}
+
+		if (archivePath != null)
+		{
+			if (clean)
+				credit(worker);
+			else
+			{
+				//the worker's part of the archive was never finished, so everything it converted has to be converted again
+				for (String fileName: worker.converted)
+					pending.addFirst(fileName);
+				Files.deleteIfExists(Paths.get(worker.partPath));
+			}
+		}
+
+		if (!clean)
+			restarts++;
+		int accepting = 0;
+		for (Worker other: workers)
+			accepting += other.accepting ? 1 : 0;
+		for (int i = accepting; i < workerCount && i - accepting < pending.size(); i++)
+			startWorker();
+		dispatch();
+	}
+
+	private void killStalledWorkers()
+	{
+		long now = System.nanoTime();
+		for (Worker worker: workers)
+		{
+			if (worker.current != null && TimeUnit.NANOSECONDS.toMillis(now - worker.startedAt) > stallMillis && !worker.killed)
+			{
+				worker.killed = true;
+				System.err.println("Worker " + worker.id + " stalled on " + worker.current + ", restarting it");
+				worker.process.destroyForcibly(); // its listener then reports its exit, which requeues its ruleset
+			}
+		}
+	}
+
+	private void mergeArchive() throws IOException
+	{
+		ArchiveWriter archive = new ArchiveWriter(archivePath);
+		TextBuffer buffer = new TextBuffer();
+		for (int id = 0; id < nextWorkerId; id++)
+		{
+			Path part = Paths.get(partPath(id));
+			if (!Files.exists(part))
+				continue;
+			try (ArchiveReader reader = new ArchiveReader(part.toString()))
+			{
+				for (String extension: new String[] {"model", "json", "zrf"})
+				{
+					for (String name: reader.getNames(extension))
+					{
+						buffer.clear();
+						reader.extract(name, extension, buffer.asOutputStream());
+						archive.add(ArchiveWriter.entryName(name, extension), buffer);
+					}
+				}
+			}
+			Files.delete(part);
+		}
+		archive.add("report.txt", report);
+		archive.close();
+	}
+
+	private String partPath(int id)
+	{
+		return archivePath + ".part" + id;
+	}
+
+	/**
+	Returns the problems with individual rulesets, one per line, followed by the number of rulesets written, partial, skipped (see
+	setJournal()) and failed, and the number of workers that had to be restarted.
+	*/
+	public String getReport()
+	{
+		StringBuilder text = new StringBuilder();
+		for (String problem: problems)
+			text.append(problem).append('\n');
+		text.append(completed).append(" written (").append(partial).append(" partial), ").append(skipped).append(" already finished, ");
+		text.append(failed).append(" failed, by ");
+		text.append(nextWorkerId).append(" workers (").append(restarts).append(" restarted)\n");
+		return text.toString();
+	}
+
+	private class Worker
+	{
+		private int id;
+		private Process process;
+		private BufferedWriter input;
+		private String partPath;
+		private String current; // the ruleset the worker is converting, or null if it is idle
+		private long startedAt; // System.nanoTime() when current was handed over
+		private boolean accepting = true; // false once the worker's input has been closed
+		private boolean killed;
+		private boolean closed; // whether the worker has finished its part of the archive
+		private List<String> converted = new ArrayList<String>(); // rulesets converted but not yet counted as completed
+		private List<String> partial = new ArrayList<String>(); // those of them that are partial
+		private List<String> reportLines = new ArrayList<String>();
+		private Map<String,String> outputs = new LinkedHashMap<String,String>(); // the outputs of current published so far
+
+		private Worker(int id)
+		{
+			this.id = id;
+			this.partPath = archivePath != null ? partPath(id) : null;
+		}
+	}
+
+	private static class Event
+	{
+		private Worker worker;
+		private String line; // a line from the worker, or null if the worker has exited
+
+		private Event(Worker worker, String line)
+		{
+			this.worker = worker;
+			this.line = line;
+		}
+	}
+}
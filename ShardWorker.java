@@ -0,0 +1,152 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+The worker side of a sharded conversion (see ShardCoordinator), run in its own JVM by Driver --worker.
+
+The coordinator sends the worker the names of rulesets on its standard input, one per line, and closes it when there are no more.
+The worker converts each in turn and answers on its standard output with tab-separated lines:
+  output <1 if written, 0 if unchanged> <hash> <path>   for every output published outside of an archive
+  report <line>                                         for the report of every ruleset added to the worker's archive
+  done <ruleset> <ok|partial> <hash of its text>        once a ruleset's outputs are all published
+  failed <ruleset> <message>                            if a ruleset could not be converted
+  closed                                                once the worker's archive is complete, after its input has ended
+Anything else the parsers print goes to standard error instead, so that it can't be mistaken for these.
+*/
+public class ShardWorker
+{
+	private PrintStream protocol;
+	private boolean json;
+	private long timeoutMillis;
+	private boolean lowMemory;
+	private SentenceCache sentenceCache; // or null
+	private NearDuplicateIndex nearDuplicates; // or null
+	private PrintStream debugOutput; // or null
+	private ArchiveWriter archive; // the worker's part of the archive, or null if outputs are published to directories
+	private OutputManifest manifest; // a read-only copy of the coordinator's manifest, to skip unchanged outputs
+	private TextBuffer buffer;
+	private TextBuffer report;
+
+	public ShardWorker(boolean json, long timeoutMillis, boolean lowMemory, SentenceCache sentenceCache, String archivePath,
+		OutputManifest manifest) throws IOException
+	{
+		this.protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+		System.setOut(System.err);
+		this.json = json;
+		this.timeoutMillis = timeoutMillis;
+		this.lowMemory = lowMemory;
+		this.sentenceCache = sentenceCache;
+		this.archive = archivePath != null ? new ArchiveWriter(archivePath) : null;
+		this.manifest = manifest;
+		this.buffer = new TextBuffer();
+		this.report = new TextBuffer();
+	}
+
+	/**
+	Sets an index of the rulesets the worker has converted, so that a near-duplicate of one of them can reuse its model (see
+	BatchPipeline.setNearDuplicates()).
+	*/
+	public void setNearDuplicates(NearDuplicateIndex nearDuplicates)
+	{
+		this.nearDuplicates = nearDuplicates;
+	}
+
+	/**
+	Sets where the parsers print what they find (see RulesParser.setDebugOutput()); never the standard output, which carries the
+	protocol.
+	*/
+	public void setDebugOutput(PrintStream debugOutput)
+	{
+		this.debugOutput = debugOutput;
+	}
+
+	/**
+	Converts rulesets until the coordinator closes the worker's input.
+	*/
+	public void run() throws IOException
+	{
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		for (String fileName = in.readLine(); fileName != null; fileName = in.readLine())
+		{
+			if (!fileName.isEmpty())
+				convert(fileName);
+		}
+		if (sentenceCache != null)
+			System.err.println(sentenceCache.getReport());
+		if (archive != null)
+		{
+			archive.close();
+			send("closed");
+		}
+	}
+
+	private void convert(String fileName)
+	{
+		try
+		{
+			RulesParser parser = new RulesParser(fileName);
+			parser.setLowMemory(lowMemory);
+			parser.setSentenceCache(sentenceCache);
+			parser.setDebugOutput(debugOutput);
+			if (timeoutMillis > 0)
+				parser.setDeadline(Deadline.after(timeoutMillis));
+			parser.loadText();
+			NearDuplicateIndex.Match match = nearDuplicates != null ? nearDuplicates.add(fileName, parser.getText()) : null;
+			GameModel model;
+			if (match != null && match.getModel() != null)
+			{
+				model = match.getModel().withName(parser.getGameName());
+				System.err.println(fileName + ": near-duplicate of " + match.getOriginal() + ", its model was reused");
+			}
+			else
+			{
+				parser.annotate();
+				parser.extract();
+				model = parser.getGameModel();
+				if (match != null)
+					nearDuplicates.setModel(match, model);
+			}
+
+			for (ModelWriter writer: Driver.makeWriters(model, buffer, json))
+			{
+				if (archive != null)
+					archive.add(writer);
+				else
+				{
+					String path = writer.pathIn(Driver.outputDirectory(writer));
+					boolean changed = writer.publish(path, manifest);
+					send("output", changed ? "1" : "0", manifest.getHash(path), path);
+				}
+			}
+			if (archive != null)
+			{
+				report.clear();
+				Driver.appendReportLine(report, model, fileName, buffer.length());
+				send("report", report.toString().trim());
+			}
+			send("done", fileName, model.isPartial() ? "partial" : "ok", ContentHash.of(parser.getText()));
+		}
+		catch (DeadlineExceededException e)
+		{
+			send("failed", fileName, e.getMessage() + ", skipped");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			send("failed", fileName, e.toString());
+		}
+	}
+
+	private void send(String... fields)
+	{
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < fields.length; i++)
+		{
+			if (i > 0)
+				line.append('\t');
+			//the last field may contain tabs (eg: a report line); only line breaks would confuse the coordinator
+			line.append(fields[i].replace('\n', ' ').replace('\r', ' '));
+		}
+		protocol.println(line);
+	}
+}
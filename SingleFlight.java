@@ -0,0 +1,64 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+Coalesces concurrent calls that would compute the same value: while a computation for a key is running, every other call with that
+key waits for it and gets its result (or its exception) instead of starting the same work again.
+Nothing is cached once a computation finishes - a later call with the same key computes the value again.
+*/
+public class SingleFlight<V>
+{
+	private ConcurrentHashMap<String,CompletableFuture<V>> inFlight; // the computation running for each key, if any
+	private AtomicLong computed; // number of calls that ran their computation
+	private AtomicLong shared; // number of calls that waited for another call's computation instead
+
+	public SingleFlight()
+	{
+		inFlight = new ConcurrentHashMap<String,CompletableFuture<V>>();
+		computed = new AtomicLong();
+		shared = new AtomicLong();
+	}
+
+	/**
+	Returns the result of work, unless a computation for key is already running, in which case its result is returned instead.
+	If the computation throws an exception, every call waiting for it throws an ExecutionException wrapping that exception.
+	*/
+	public V run(String key, Callable<V> work) throws ExecutionException, InterruptedException
+	{
+		CompletableFuture<V> flight = new CompletableFuture<V>();
+		CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+		if (running != null)
+		{
+			shared.incrementAndGet();
+			return running.get();
+		}
+
+		computed.incrementAndGet();
+		try
+		{
+			flight.complete(work.call());
+		}
+		catch (Throwable t)
+		{
+			flight.completeExceptionally(t);
+		}
+		finally
+		{
+			inFlight.remove(key, flight);
+		}
+		return flight.get();
+	}
+
+	public long getComputedCount()
+	{
+		return computed.get();
+	}
+
+	public long getSharedCount()
+	{
+		return shared.get();
+	}
+}
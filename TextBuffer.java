@@ -0,0 +1,301 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+Growable UTF-8 byte buffer that text outputs (such as ZRF files) are assembled in before being written anywhere.
+Characters and numbers are encoded straight into the buffer, so no intermediate Strings are built; a buffer can be clear()ed and
+reused for the next output, so a batch that writes many files only ever grows one array to the size of its largest output.
+*/
+public class TextBuffer
+{
+	private byte[] bytes;
+	private int length; // number of bytes of bytes[] that are in use
+	private int highSurrogateAt = -1; // where the '?' standing in for highSurrogate is, until the low surrogate after it arrives
+	private char highSurrogate;
+
+	public TextBuffer()
+	{
+		this(8192);
+	}
+
+	public TextBuffer(int capacity)
+	{
+		bytes = new byte[Math.max(capacity, 16)];
+		length = 0;
+	}
+
+	/**
+	Appends a character. A character outside the BMP is appended as its surrogate pair, one char at a time (as append(CharSequence)
+	does), and encoded as a single 4-byte sequence once its low surrogate arrives; a surrogate that isn't part of a pair is
+	encoded as '?', as String.getBytes() does.
+	*/
+	public TextBuffer append(char c)
+	{
+		if (c < 0x80)
+		{
+			ensureCapacity(1);
+			bytes[length++] = (byte) c;
+		}
+		else if (c < 0x800)
+		{
+			ensureCapacity(2);
+			bytes[length++] = (byte) (0xC0 | (c >> 6));
+			bytes[length++] = (byte) (0x80 | (c & 0x3F));
+		}
+		else if (Character.isHighSurrogate(c))
+		{
+			//stands in for the pair until the low surrogate arrives, so the buffer is never left holding half of a sequence
+			ensureCapacity(1);
+			highSurrogate = c;
+			highSurrogateAt = length;
+			bytes[length++] = '?';
+		}
+		else if (Character.isLowSurrogate(c))
+		{
+			if (length > 0 && highSurrogateAt == length - 1)
+			{
+				int codePoint = Character.toCodePoint(highSurrogate, c);
+				length--;
+				highSurrogateAt = -1;
+				ensureCapacity(4);
+				bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+				bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+			else
+			{
+				ensureCapacity(1);
+				bytes[length++] = '?';
+			}
+		}
+		else
+		{
+			ensureCapacity(3);
+			bytes[length++] = (byte) (0xE0 | (c >> 12));
+			bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			bytes[length++] = (byte) (0x80 | (c & 0x3F));
+		}
+		return this;
+	}
+
+	/**
+	Appends raw bytes (eg: binary output), which are not encoded in any way.
+	*/
+	public TextBuffer append(byte[] b, int offset, int count)
+	{
+		ensureCapacity(count);
+		System.arraycopy(b, offset, bytes, length, count);
+		length += count;
+		return this;
+	}
+
+	public TextBuffer append(CharSequence s)
+	{
+		for (int i = 0; i < s.length(); i++)
+			append(s.charAt(i));
+		return this;
+	}
+
+	/**
+	Appends s converted to upper case one character at a time, without building the upper case String.
+	*/
+	public TextBuffer appendUpperCase(CharSequence s)
+	{
+		for (int i = 0; i < s.length(); )
+		{
+			int codePoint = Character.codePointAt(s, i);
+			i += Character.charCount(codePoint);
+			codePoint = Character.toUpperCase(codePoint);
+			if (Character.isBmpCodePoint(codePoint))
+				append((char) codePoint);
+			else
+				append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+		}
+		return this;
+	}
+
+	/**
+	Appends the decimal digits of a number.
+	*/
+	public TextBuffer append(int n)
+	{
+		if (n < 0)
+		{
+			if (n == Integer.MIN_VALUE)
+				return append(String.valueOf(n));
+			append('-');
+			n = -n;
+		}
+		int digits = 1;
+		for (int d = n; d >= 10; d /= 10)
+			digits++;
+		ensureCapacity(digits);
+		for (int i = length + digits - 1; i >= length; i--)
+		{
+			bytes[i] = (byte) ('0' + n % 10);
+			n /= 10;
+		}
+		length += digits;
+		return this;
+	}
+
+	public TextBuffer newLine()
+	{
+		return append('\n');
+	}
+
+	/**
+	Appends the same character count times (eg: the tabs indenting a line, or the parentheses closing nested expressions).
+	*/
+	public TextBuffer repeat(char c, int count)
+	{
+		for (int i = 0; i < count; i++)
+			append(c);
+		return this;
+	}
+
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	Empties the buffer, keeping its capacity for reuse.
+	*/
+	public void clear()
+	{
+		length = 0;
+		highSurrogateAt = -1;
+	}
+
+	public byte[] toByteArray()
+	{
+		byte[] copy = new byte[length];
+		System.arraycopy(bytes, 0, copy, 0, length);
+		return copy;
+	}
+
+	/**
+	Returns a read-only view of the contents of the buffer; the view is only valid until the buffer is next modified.
+	*/
+	public ByteBuffer asByteBuffer()
+	{
+		return ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer();
+	}
+
+	/**
+	Returns an OutputStream that appends everything written to it to this buffer, for writers that only know how to write to a stream.
+	*/
+	public OutputStream asOutputStream()
+	{
+		return new OutputStream()
+		{
+			public void write(int b)
+			{
+				ensureCapacity(1);
+				bytes[length++] = (byte) b;
+			}
+
+			public void write(byte[] b, int offset, int count)
+			{
+				append(b, offset, count);
+			}
+		};
+	}
+
+	/**
+	Feeds the contents of the buffer to a digest (eg: to hash an output without copying it).
+	*/
+	public void update(MessageDigest digest)
+	{
+		digest.update(bytes, 0, length);
+	}
+
+	public void writeTo(OutputStream out) throws IOException
+	{
+		out.write(bytes, 0, length);
+	}
+
+	public void writeTo(WritableByteChannel channel) throws IOException
+	{
+		ByteBuffer contents = ByteBuffer.wrap(bytes, 0, length);
+		while (contents.hasRemaining())
+			channel.write(contents);
+	}
+
+	/**
+	Writes the contents of the buffer to a file so that readers of the file only ever see either its old contents or all of
+	the new contents: the buffer is written and synced to a temporary file in the same directory, which is then moved over path.
+	*/
+	public void publish(String path) throws IOException
+	{
+		Path target = Paths.get(path).toAbsolutePath();
+		Files.createDirectories(target.getParent());
+		Path temp = createTempFileNextTo(target);
+		try
+		{
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				writeTo(channel);
+				channel.force(false);
+			}
+			try
+			{
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temp); // only still exists if writing or moving failed
+		}
+	}
+
+	/**
+	Creates an empty temporary file in the directory of target, for a new version of target to be written to and moved over it.
+	Unlike Files.createTempFile(), which makes files only their owner can read, the file gets the permissions of any new file (as
+	the umask allows), so the outputs it becomes are as readable as files written directly.
+	*/
+	static Path createTempFileNextTo(Path target) throws IOException
+	{
+		while (true)
+		{
+			String unique = Long.toHexString(ThreadLocalRandom.current().nextLong());
+			Path temp = target.resolveSibling("." + target.getFileName() + "." + unique + ".tmp");
+			try
+			{
+				Files.newByteChannel(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+				return temp;
+			}
+			catch (FileAlreadyExistsException e)
+			{
+				//another writer picked the same name; pick another
+			}
+		}
+	}
+
+	private void ensureCapacity(int extra)
+	{
+		if (length + extra > bytes.length)
+		{
+			byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+			System.arraycopy(bytes, 0, grown, 0, length);
+			bytes = grown;
+		}
+	}
+
+	public String toString()
+	{
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
@@ -1,400 +1,292 @@
 import java.io.*;
-import java.util.ArrayList;
 
-public class ZRFWriter
+/**
+Writes the ZRF (Zillions of Games rules file) of a GameModel.
+*/
+public class ZRFWriter extends ModelWriter
 {
 
-	private BufferedWriter writer;
 	private String fileName;
 
-	private static final int NUM_PLAYERS = 2; 
+	private static final int NUM_PLAYERS = Board.NUM_PLAYERS; 
 	/* number of players is assumed to be 2, as most zrf games are 2-player (human vs. computer) 
 	and writing the sections for board symmetry depends on having only 2 players */
 
-	private String[][] initialBoard; //as parsed by BoardParser
-	private String[][] transitionZones; //as parsed by BoardParser+PieceParser
-	private ArrayList<String> moveTypes; //as parsed by PieceParser
-	private ArrayList<Piece> pieceTypes; //as parsed by PieceParser+MotionParser
-	private ArrayList<EndCondition> endConditions; //as parsed by EndParser
-
 	private int[] dimensions;
-	private String[][] zrfCoordinates;
-	private boolean[][] boardColors; // true is black, false is white
+	private BoardCoordinates coordinates; // names of the squares of the board, shared by all writers of boards of this size
 
-	public ZRFWriter(String fileName, String[][] initialBoard, String[][] transitionZones, 
-		ArrayList<String> moveTypes, ArrayList<Piece> pieceTypes, ArrayList<EndCondition> endConditions)
+	public ZRFWriter(GameModel model)
 	{
-		if (fileName.contains("/"))
-			this.fileName = fileName.substring(fileName.lastIndexOf("/") + 1, fileName.lastIndexOf("."));
-		else
-			this.fileName = fileName.substring(0, fileName.lastIndexOf("."));
-
-		try
-		{
-			writer = new BufferedWriter(
-				new OutputStreamWriter(
-        		new FileOutputStream("zrf/" + this.fileName + ".zrf"), "utf-8")); //output the file as zrf/fileName.zrf
-		}
-		catch (FileNotFoundException e)
-		{
-			e.printStackTrace();
-		}
-		catch (UnsupportedEncodingException e)
-		{
-			e.printStackTrace();
-		}
+		this(model, new TextBuffer());
+	}
 
-		this.initialBoard = initialBoard;
-		this.transitionZones = transitionZones;
-		this.moveTypes = moveTypes;
-		this.pieceTypes = pieceTypes;
-		this.endConditions = endConditions;
+	/**
+	Creates a writer that assembles the ZRF in buffer, which is cleared first; buffer can be shared by writers used one at a time.
+	*/
+	public ZRFWriter(GameModel model, TextBuffer buffer)
+	{
+		super(model, buffer);
+		this.fileName = model.getName();
 
 		this.dimensions = new int[2];
-		dimensions[0] = initialBoard.length;
-		dimensions[1] = initialBoard[0].length;
-
-		this.zrfCoordinates = new String[dimensions[0]][dimensions[1]];
-		this.boardColors = new boolean[dimensions[0]][dimensions[1]];
+		dimensions[0] = model.getRows();
+		dimensions[1] = model.getColumns();
 
+		this.coordinates = BoardCoordinates.get(dimensions[0], dimensions[1]);
 	}
 
-	public void write()
+	protected void writeModel()
 	{
-		try
-		{
-			writeMoveDefinitions();
+		if (model.isPartial())
+			out.append("; partial: parsing ran out of time, so this only holds what was parsed until then\n\n");
 
-			writer.write("(game \n"); // open (game )
-			writer.write("\t" + "(title \"" + fileName + "\")" + "\n");
+		writeMoveDefinitions();
 
-			writePlayers();
-			writeBoard();
-			writeBoardSetup();
-			writePieces();
-			writeEndConditions();
+		out.append("(game \n"); // open (game )
+		out.append("\t(title \"").append(fileName).append("\")\n");
 
-			writer.write(")"); // close (game )
-		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		writePlayers();
+		writeBoard();
+		writeBoardSetup();
+		writePieces();
+		writeEndConditions();
 
-		// all the ZRF is written, try to close the BufferedWriter and ignore exceptions
-		try
-		{
-			writer.close();
-		}
-		catch (Exception e)
-		{ /* ignore */ }
+		out.append(')'); // close (game )
+	}
+
+	public String getExtension()
+	{
+		return "zrf";
+	}
 
+	/**
+	Writes the ZRF to zrf/fileName.zrf, replacing any previous version of the file atomically.
+	*/
+	public void write() throws IOException
+	{
+		publishTo("zrf");
 	}
 
-	public void writeMoveDefinitions()
+	private void writeMoveDefinitions()
 	{
 		//TODO: all of this is placeholders assuming every move to behave exactly like a regular move!
-		try
+		for (int p = 0; p < model.getPieceCount(); p++)
 		{
-			for (Piece p: pieceTypes)
+			deadline.check();
+			String name = model.getPieceName(p);
+			for (int m = 0; m < model.getMoveTypeCount(); m++)
 			{
-				String name = p.getName().toUpperCase();
-				for (String move: moveTypes)
+				String move = model.getMoveType(m);
+				//open (define ), (name-move )
+				//TODO: this is assuming that you can not move into an occupied space! it already knows!
+				out.append("(define ").appendUpperCase(name).append('-').appendUpperCase(move).append("\t($1 (verify empty?)\n"); 
+				//each piece p can become is only listed once in the model, so each gets exactly one if statement
+				int numIfs = model.getTransitionTypeCount(p); //to know how many if statements have to be closed with a right parenthesis
+				for (int t = 0; t < numIfs; t++)
 				{
-					//open (define ), (name-move )
-					//TODO: this is assuming that you can not move into an occupied space! it already knows!
-					writer.write("(define " + name + "-" + move.toUpperCase() + "\t" + "($1 (verify empty?)" + "\n"); 
-					int numIfs = 0; //to know how many if statements have to be closed with a right parenthesis
-					String alreadyAdded = ""; //so we don't keep adding multiple if statements of the same piece type
-					for (String transitionType: p.getTransitionTypes())
-					{
-						if (!alreadyAdded.contains(transitionType))
-						{
-							writer.write("\t" + "(if (in-zone? " + transitionType.toUpperCase() + "-transition)" + "\n");
-							writer.write("\t\t" + "(add " + transitionType.toUpperCase() + ")" + "\n");
-							writer.write("\t" + "else" + "\n");
-
-							alreadyAdded = alreadyAdded + transitionType + " ";
-							numIfs++;
-						}
-					}
-					writer.write ("\t\t" + "add" + "\n"); 
-					writer.write ("\t");
-					for (int i = 0; i < numIfs; i++)
-						writer.write (")"); // close all the if's detailing transition zones
-					writer.write("\n");
-					writer.write("))" + "\n"); // close (name-move ) and (define ) 
-
-					writer.newLine();
+					String transitionType = model.getPieceName(model.getTransitionType(p, t));
+					out.append("\t(if (in-zone? ").appendUpperCase(transitionType).append("-transition)\n");
+					out.append("\t\t(add ").appendUpperCase(transitionType).append(")\n");
+					out.append("\telse\n");
 				}
+				out.append("\t\tadd\n"); 
+				out.append('\t');
+				out.repeat(')', numIfs); // close all the if's detailing transition zones
+				out.newLine();
+				out.append("))\n"); // close (name-move ) and (define ) 
+
+				out.newLine();
 			}
 		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
-		}
 	}
 
-	public void writePlayers()
+	private void writePlayers()
 	{
-		try
-		{
-			// write player && turn-order info (P1, P2... PNUM_PLAYERS)
-			writer.write("\t" + "(players"); //open (players )
-			for (int i = 1; i <= NUM_PLAYERS; i++)
-				writer.write(" P" + i);
-			writer.write(")" + "\n"); // close (players )
-			writer.write("\t" + "(turn-order"); //open (turn-order )
-			for (int i = 1; i <= NUM_PLAYERS; i++)
-				writer.write(" P" + i);
-			writer.write(")" + "\n"); // close (turn-order )
-			//write move-priorities
-			//TODO: move-priorities is COMPLETELY placeholder
-			writer.write("\t" + "(move-priorities"); // open (move-priorities )
-			for (String moveType: moveTypes)
-				writer.write(" " + moveType.toUpperCase()); 
-			writer.write(")" + "\n"); // close (move-priorities )
-
-			writer.newLine();
-		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		// write player && turn-order info (P1, P2... PNUM_PLAYERS)
+		out.append("\t(players"); //open (players )
+		for (int i = 1; i <= NUM_PLAYERS; i++)
+			out.append(" P").append(i);
+		out.append(")\n"); // close (players )
+		out.append("\t(turn-order"); //open (turn-order )
+		for (int i = 1; i <= NUM_PLAYERS; i++)
+			out.append(" P").append(i);
+		out.append(")\n"); // close (turn-order )
+		//write move-priorities
+		//TODO: move-priorities is COMPLETELY placeholder
+		out.append("\t(move-priorities"); // open (move-priorities )
+		for (int m = 0; m < model.getMoveTypeCount(); m++)
+			out.append(' ').appendUpperCase(model.getMoveType(m)); 
+		out.append(")\n"); // close (move-priorities )
+
+		out.newLine();
 		//TODO: MOVE PRIORITIES
 	}
 
-	public void writeBoard()
+	private void writeBoard()
 	{
-		final String alphabet = "abcdefghijklmnopqrstuvwxyz"; // to delineate columns
-		try
-		{
-			writer.write("\t" + "(board" + "\n"); // open (board )
-			writer.write("\t\t" + "(grid" + "\n"); // open (grid )
-
-			writer.write("\t\t\t" + "(dimensions" + "\n"); // open (dimensions )
-			//write columns to zrf
-			writer.write("\t\t\t\t" + "(\"");
-			for (int j = 0; j < dimensions[1]; j++)
-			{
-				writer.write(alphabet.charAt(j));
-				if (j != dimensions[1] - 1)
-					writer.write("/");
-			}
-			writer.write("\") ; columns" + "\n");
-			//write rows to zrf
-			writer.write("\t\t\t\t" + "(\"");
-			for (int i = dimensions[0]; i > 0; i--) // in the zrf, the rows count downwards to 1
-			{
-				writer.write("" + i);
-				if (i != 1)
-					writer.write("/");
-			}
-			writer.write("\") ; rows" + "\n");
-			writer.write("\t\t\t" + ")" + "\n"); //close (dimensions )
+		out.append("\t(board\n"); // open (board )
+		out.append("\t\t(grid\n"); // open (grid )
 
-			/* initialize zrfCoordinates[][] with the board coordinates used in the zrf, 
-			and boardColors[][] with the associated color values */
-			for (int i = 0; i < dimensions[0]; i++)
-			{
-				for (int j = 0; j < dimensions[1]; j++)
-				{
-					zrfCoordinates[i][j] = String.valueOf(alphabet.charAt(dimensions[1]-j-1)) + (i+1);
-					if ((i+j) % 2 == 0) // alternating black and white pattern on checkerboard
-						boardColors[i][j] = false;
-					else
-						boardColors[i][j] = true;
-				}
-			}
-			/*at this point, zrfCoordinates is a 2d string array containing all the individual coordinates of each square on the
-			checkerboard, and boardColors is a 2d boolean array containing the individual colors of each square on the board
-			(false = white, true = black) */
-
-			//write directions
-			writer.write("\t\t\t" + "(directions" + "\n"); // open (directions )
-			writer.write("\t\t\t\t" + "(n 0 -1) (w -1 0) (s 0 1) (e 1 0)" + "\n"); //TODO: is this necessary or helpful at all?
-			writer.write("\t\t\t\t" + "(ne 1 -1) (nw -1 -1) (se 1 1) (sw -1 1)" + "\n");
-			//writer.write("\t\t\t\t" + "(nn 0 -2) (ww -2 0) (ss 0 2) (ee 2 0)"); 
-			// TODO: this might be assuming the adjacentness of move and jump! look up chess
-
-			writer.write("\t\t\t" + ")" + "\n"); // close (directions )
-			writer.write("\t\t" + ")" + "\n"); //close (grid )
-
-			//write symmetry
-			//all of this block is dependent on NUM_PLAYERS being 2! if NUM_PLAYERS != 2 this no longer works
-			writer.write("\t\t" + "(symmetry P2 (n s) (s n) (ne sw) (sw ne) (nw se) (se nw))" + "\n");
-
-			//write transition zones
-			//iterate over all piece types
-			for (Piece p: pieceTypes)
+		out.append("\t\t\t(dimensions\n"); // open (dimensions )
+		//write columns to zrf
+		out.append("\t\t\t\t(\"");
+		for (int j = 0; j < dimensions[1]; j++)
+		{
+			out.append(coordinates.getColumnName(j));
+			if (j != dimensions[1] - 1)
+				out.append('/');
+		}
+		out.append("\") ; columns\n");
+		//write rows to zrf
+		out.append("\t\t\t\t(\"");
+		for (int i = dimensions[0]; i > 0; i--) // in the zrf, the rows count downwards to 1
+		{
+			out.append(i);
+			if (i != 1)
+				out.append('/');
+		}
+		out.append("\") ; rows\n");
+		out.append("\t\t\t)\n"); //close (dimensions )
+
+		//write directions
+		out.append("\t\t\t(directions\n"); // open (directions )
+		out.append("\t\t\t\t(n 0 -1) (w -1 0) (s 0 1) (e 1 0)\n"); //TODO: is this necessary or helpful at all?
+		out.append("\t\t\t\t(ne 1 -1) (nw -1 -1) (se 1 1) (sw -1 1)\n");
+		//out.append("\t\t\t\t(nn 0 -2) (ww -2 0) (ss 0 2) (ee 2 0)"); 
+		// TODO: this might be assuming the adjacentness of move and jump! look up chess
+
+		out.append("\t\t\t)\n"); // close (directions )
+		out.append("\t\t)\n"); //close (grid )
+
+		//write symmetry
+		//all of this block is dependent on NUM_PLAYERS being 2! if NUM_PLAYERS != 2 this no longer works
+		out.append("\t\t(symmetry P2 (n s) (s n) (ne sw) (sw ne) (nw se) (se nw))\n");
+
+		//write transition zones
+		//iterate over all piece types
+		for (int p = 0; p < model.getPieceCount(); p++)
+		{
+			deadline.check();
+			String name = model.getPieceName(p); //name of piece
+			if (!model.isDefault(p)) //if piece is a transition piece,
 			{
-				String name = p.getName(); //name of piece
-				if (!p.isDefault()) //if piece is a transition piece,
+				//iterate over all players (each player has separate transition zone)
+				for (int playerNum = 1; playerNum <= NUM_PLAYERS; playerNum++)
 				{
-					//iterate over all players (each player has separate transition zone)
-					for (int playerNum = 1; playerNum <= NUM_PLAYERS; playerNum++)
+					out.append("\t\t(zone (name ").appendUpperCase(name).append("-transition)"); //open (zone )
+					out.append(" (players P").append(playerNum).append(")\n"); // open and close (players )
+					out.append("\t\t\t(positions"); //open (positions )
+					//iterate over all squares in the transition zone of player playerNum for the piece called name
+					Bitboard zone = model.getZone(p, playerNum);
+					for (int square = zone.nextSetBit(0); square >= 0; square = zone.nextSetBit(square+1))
 					{
-						writer.write("\t\t" + "(zone (name " + name.toUpperCase() + "-transition" + ")"); //open (zone )
-						writer.write(" (players P" + playerNum + ")" + "\n"); // open and close (players )
-						writer.write("\t\t\t" + "(positions"); //open (positions )
-						String transitionTrigger = "P" + playerNum + "-" + name; 
-						/* eg: "P2-king", meaning a square is part of the transition zone for P2's 
-						piece to become a king - this is how zones are stored in transitionZone */
-						//iterate over all squares in transitionZones, comparing their value to transitionTrigger
-						for (int i = 0; i < transitionZones.length; i++)
-						{
-							for (int j = 0; j < transitionZones[i].length; j++)
-							{
-								String square = transitionZones[i][j];
-								if (square != null && square.contains(transitionTrigger))
-									writer.write(" " + zrfCoordinates[i][j]);
-							}
-						}
-						writer.write(")" + "\n"); // close (positions )
-						writer.write("\t\t" + ")" + "\n"); //close (zone )
+						out.append(' ');
+						coordinates.appendSquare(out, square);
 					}
+					out.append(")\n"); // close (positions )
+					out.append("\t\t)\n"); //close (zone )
 				}
 			}
+		}
 
-			writer.write("\t" + ")" + "\n"); //close (board )
+		out.append("\t)\n"); //close (board )
 
-			writer.newLine();
-		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		out.newLine();
 	}
 
-	public void writeBoardSetup()
+	private void writeBoardSetup()
 	{
-		try
-		{
-			Piece defaultPiece = null; 
-			for (Piece p: pieceTypes)
-			{
-				if (p.isDefault())
-				{
-					defaultPiece = p;
-					break;
-				}
-			}
-			String defaultName = defaultPiece.getName().toUpperCase(); //uppercase b/c we define pieces w/ uppercase names later in the zrf
-			writer.write("\t" + "(board-setup" + "\n"); //open (board-setup )
+		int defaultPiece = model.getDefaultPiece(); 
+		out.append("\t(board-setup\n"); //open (board-setup )
 
-			for (int playerNum = 1; playerNum <= NUM_PLAYERS; playerNum++)
+		//without a default piece (eg: in a partial model) there is nothing to place on the board
+		for (int playerNum = 1; playerNum <= NUM_PLAYERS && defaultPiece >= 0; playerNum++)
+		{
+			String defaultName = model.getPieceName(defaultPiece); //written uppercase b/c we define pieces w/ uppercase names later in the zrf
+			out.append("\t\t(P").append(playerNum).append(" (").appendUpperCase(defaultName);
+			//using the board's occupancy, determine what the zrf-coordinates of the initial positions of each piece are
+			Bitboard occupied = model.getOccupancy(playerNum);
+			for (int square = occupied.nextSetBit(0); square >= 0; square = occupied.nextSetBit(square+1))
 			{
-				writer.write("\t\t" + "(P" + playerNum + " (" + defaultName);
-				//using initialBoard, determine what the zrf-coordinates of the initial positions of each piece are
-
-				for (int i = 0; i < initialBoard.length; i++)
-				{
-					for (int j = 0; j < initialBoard[i].length; j++)
-					{
-						String square = initialBoard[i][j]; // a single square on initialBoard
-						//square will either hold "null" or "P1", "P2," etc - so we extract the number and compare it to playerNum
-						if (square != null)
-						{
-							int squareNumber = Integer.parseInt(square.substring(square.lastIndexOf("P")+1));
-							if (playerNum == squareNumber)
-								writer.write(" " + zrfCoordinates[i][j]);
-						}
-					}
-				}
-
-				writer.write(") )" + "\n");
+				out.append(' ');
+				coordinates.appendSquare(out, square);
 			}
-			writer.write("\t" + ")" + "\n"); // close (board-setup)
 
-			writer.newLine();
-		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
+			out.append(") )\n");
 		}
+		out.append("\t)\n"); // close (board-setup)
+
+		out.newLine();
 	}
 
-	public void writePieces()
+	private void writePieces()
 	{
-		try
+		for (int p = 0; p < model.getPieceCount(); p++)
 		{
-			for (Piece p: pieceTypes)
+			deadline.check();
+			String name = model.getPieceName(p); //written upper case so the zrf engine doesn't confuse the piece name for a zrf keyword
+			out.append("\t(piece\n"); //open (piece )
+			out.append("\t\t(name ").appendUpperCase(name).append(")\n"); //write the piece's name to zrf
+			//write the piece's moves to zrf
+			out.append("\t\t(moves\n"); // open (moves )
+			for (int m = 0; m < model.getMoveTypeCount(); m++)
 			{
-				String name = p.getName().toUpperCase(); //upper case so the zrf engine doesn't confuse the piece name for a zrf keyword
-				writer.write("\t" + "(piece" + "\n"); //open (piece )
-				writer.write("\t\t" + "(name " + name + ")" + "\n"); //write the piece's name to zrf
-				//write the piece's moves to zrf
-				writer.write("\t\t" + "(moves" + "\n"); // open (moves )
-				for (String move: moveTypes)
+				String move = model.getMoveType(m);
+				out.append("\t\t\t(move-type ").appendUpperCase(move).append(")\n");
+				//TODO: this needs to be expanded!! also, MotionParser needs to actually learn that diagonal is exclusive
+				if (model.hasMotionType(p, Direction.DIAGONAL) && model.hasMotionType(p, Direction.FORWARD))
 				{
-					writer.write("\t\t\t" + "(move-type " + move.toUpperCase() + ")" + "\n");
-					ArrayList<Direction> motionTypes = p.getMotionTypes();
-					//TODO: this needs to be expanded!! also, MotionParser needs to actually learn that diagonal is exclusive
-					if (motionTypes.contains(Direction.DIAGONAL) && motionTypes.contains(Direction.FORWARD))
-					{
-						writer.write("\t\t\t" + "(" + name + "-" + move.toUpperCase() + " nw" + ")" + "\n");
-						writer.write("\t\t\t" + "(" + name + "-" + move.toUpperCase() + " ne" + ")" + "\n");
-					}
-					if (motionTypes.contains(Direction.DIAGONAL) && motionTypes.contains(Direction.BACKWARD))
-					{
-						writer.write("\t\t\t" + "(" + name + "-" + move.toUpperCase() + " sw" + ")" + "\n");
-						writer.write("\t\t\t" + "(" + name + "-" + move.toUpperCase() + " se" + ")" + "\n");
-					}
-					writer.newLine(); 
+					out.append("\t\t\t(").appendUpperCase(name).append('-').appendUpperCase(move).append(" nw)\n");
+					out.append("\t\t\t(").appendUpperCase(name).append('-').appendUpperCase(move).append(" ne)\n");
 				}
-				writer.write("\t\t" + ")" + "\n"); // close (moves )
-				writer.write("\t" + ")" + "\n"); // close (piece )
-
+				if (model.hasMotionType(p, Direction.DIAGONAL) && model.hasMotionType(p, Direction.BACKWARD))
+				{
+					out.append("\t\t\t(").appendUpperCase(name).append('-').appendUpperCase(move).append(" sw)\n");
+					out.append("\t\t\t(").appendUpperCase(name).append('-').appendUpperCase(move).append(" se)\n");
+				}
+				out.newLine(); 
 			}
-			writer.newLine();
+			out.append("\t\t)\n"); // close (moves )
+			out.append("\t)\n"); // close (piece )
 
 		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		out.newLine();
 	}
 
 
-	public void writeEndConditions()
+	private void writeEndConditions()
 	{
-		try
+		for (int e = 0; e < model.getEndConditionCount(); e++)
 		{
-			for (EndCondition ec: endConditions)
-			{
-				writer.write("\t" + "("); // open (end-condition )
-				String type = ec.getType(); // have to determine what type of end condition this is (win, lose, draw)
-				if (type.equals(EndCondition.WIN)) // type is win
-					writer.write("win");
-				else if (type.equals(EndCondition.LOSE)) // type is lose
-					writer.write("loss");
-				else // type is draw
-					writer.write("draw");
-				writer.write("-condition ("); // open (P1 P2 )
-
-				// The following assumes the end conditions are the same for all players; that is a limitation of this system
-				for (int i = 1; i <= NUM_PLAYERS; i++)
-					writer.write("P" + i + " "); 
-				writer.write(") "); // close (P1 P2 )
-
-				if (ec.hasQuantifier()) // if this end condition has a quantifier (like pieces-remaining 0)
-				{
-					writer.write("(" + ec.getCondition() + " "); // write the condition within parentheses
-					writer.write(String.valueOf(ec.getQuantifier()) + ") "); // write the quantifier, close the condition parentheses
-				}
-				else 
-					writer.write(ec.getCondition() + " "); // write the condition, not within parentheses
+			EndCondition ec = model.getEndCondition(e);
+			out.append("\t("); // open (end-condition )
+			String type = ec.getType(); // have to determine what type of end condition this is (win, lose, draw)
+			if (type.equals(EndCondition.WIN)) // type is win
+				out.append("win");
+			else if (type.equals(EndCondition.LOSE)) // type is lose
+				out.append("loss");
+			else // type is draw
+				out.append("draw");
+			out.append("-condition ("); // open (P1 P2 )
+
+			// The following assumes the end conditions are the same for all players; that is a limitation of this system
+			for (int i = 1; i <= NUM_PLAYERS; i++)
+				out.append('P').append(i).append(' '); 
+			out.append(") "); // close (P1 P2 )
 
-				writer.write(")" + "\n"); // close (end-condition )
+			if (ec.hasQuantifier()) // if this end condition has a quantifier (like pieces-remaining 0)
+			{
+				out.append('(').append(ec.getCondition()).append(' '); // write the condition within parentheses
+				out.append(ec.getQuantifier()).append(") "); // write the quantifier, close the condition parentheses
 			}
+			else 
+				out.append(ec.getCondition()).append(' '); // write the condition, not within parentheses
 
-			writer.newLine();
-		}
-		catch (IOException e)
-		{
-			e.printStackTrace();
+			out.append(")\n"); // close (end-condition )
 		}
+
+		out.newLine();
 	}
 
 
-}
\ No newline at end of file
+}